@@ -0,0 +1,49 @@
+package com.dementiatracker.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Creates the indexes declared on @Document classes (@Indexed,
+ * @CompoundIndex) at startup. Spring Boot leaves automatic index creation
+ * off, so without this the declarations are documentation only. Creating an
+ * index that already exists is a no-op.
+ */
+@Configuration
+@Slf4j
+public class MongoIndexConfig {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @PostConstruct
+    public void ensureIndexes() {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+
+        int count = 0;
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(Document.class)) {
+                continue;
+            }
+            IndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+            for (IndexDefinition index : resolver.resolveIndexFor(entity.getType())) {
+                indexOps.ensureIndex(index);
+                count++;
+            }
+        }
+        log.info("Ensured {} declared MongoDB indexes", count);
+    }
+}
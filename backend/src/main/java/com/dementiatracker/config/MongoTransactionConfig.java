@@ -0,0 +1,22 @@
+package com.dementiatracker.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+/**
+ * Multi-document transactions, used to write alerts and their outbox
+ * entries atomically. Needs a replica set (Atlas clusters are), so it is
+ * opt-in for standalone development servers.
+ */
+@Configuration
+@ConditionalOnProperty(name = "alert.outbox.transactions", havingValue = "true")
+public class MongoTransactionConfig {
+
+    @Bean
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        return new MongoTransactionManager(databaseFactory);
+    }
+}
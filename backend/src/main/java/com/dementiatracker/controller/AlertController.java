@@ -1,5 +1,9 @@
 package com.dementiatracker.controller;
 
+import com.dementiatracker.dto.AlertAcknowledgeRequest;
+import com.dementiatracker.dto.AlertCounts;
+import com.dementiatracker.dto.AlertSummary;
+import com.dementiatracker.dto.AlertsAcknowledged;
 import com.dementiatracker.model.Alert;
 import com.dementiatracker.service.AlertService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +35,34 @@ public class AlertController {
         return ResponseEntity.ok(alerts);
     }
 
+    @GetMapping("/patient/{patientId}/summary")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<List<AlertSummary>> getPatientAlertSummaries(@PathVariable String patientId) {
+        List<AlertSummary> alerts = alertService.getPatientAlertSummaries(patientId);
+        return ResponseEntity.ok(alerts);
+    }
+
+    @GetMapping("/patient/{patientId}/unacknowledged/summary")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<List<AlertSummary>> getUnacknowledgedAlertSummaries(@PathVariable String patientId) {
+        List<AlertSummary> alerts = alertService.getUnacknowledgedAlertSummaries(patientId);
+        return ResponseEntity.ok(alerts);
+    }
+
+    @GetMapping("/patient/{patientId}/counts")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<AlertCounts> getPatientAlertCounts(@PathVariable String patientId) {
+        AlertCounts counts = alertService.getPatientAlertCounts(patientId);
+        return ResponseEntity.ok(counts);
+    }
+
+    @GetMapping("/caretaker/{caretakerId}/counts")
+    @PreAuthorize("hasRole('CARETAKER')")
+    public ResponseEntity<AlertCounts> getCaretakerAlertCounts(@PathVariable String caretakerId) {
+        AlertCounts counts = alertService.getCaretakerAlertCounts(caretakerId);
+        return ResponseEntity.ok(counts);
+    }
+
     @PutMapping("/{alertId}/acknowledge")
     @PreAuthorize("hasRole('CARETAKER')")
     public ResponseEntity<?> acknowledgeAlert(@PathVariable String alertId, @RequestParam String caretakerId) {
@@ -42,6 +74,22 @@ public class AlertController {
         }
     }
 
+    @PutMapping("/patient/{patientId}/acknowledge")
+    @PreAuthorize("hasRole('CARETAKER')")
+    public ResponseEntity<?> acknowledgeAlerts(@PathVariable String patientId,
+            @RequestBody AlertAcknowledgeRequest request) {
+        try {
+            AlertsAcknowledged result = alertService.acknowledgeAlerts(
+                    patientId,
+                    request.getAlertIds(),
+                    request.getTypes(),
+                    request.getCaretakerId());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/emergency/{patientId}")
     @PreAuthorize("hasRole('PATIENT')")
     public ResponseEntity<?> triggerEmergencyAlert(@PathVariable String patientId) {
@@ -1,25 +1,56 @@
 package com.dementiatracker.controller;
 
+import com.dementiatracker.dto.EncodedTrack;
+import com.dementiatracker.dto.LocationBatchRequest;
+import com.dementiatracker.dto.LocationPage;
 import com.dementiatracker.dto.LocationUpdateRequest;
+import com.dementiatracker.dto.TrackPoint;
+import com.dementiatracker.geo.BinaryTrackEncoder;
+import com.dementiatracker.geo.FixVisitor;
+import com.dementiatracker.geo.PolylineEncoder;
 import com.dementiatracker.model.Location;
+import com.dementiatracker.service.HistoryDownsampler;
+import com.dementiatracker.service.LocationIngestService;
 import com.dementiatracker.service.LocationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/locations")
 @CrossOrigin
 public class LocationController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     @Autowired
     private LocationService locationService;
 
+    @Autowired
+    private LocationIngestService locationIngestService;
+
+    @Autowired
+    private HistoryDownsampler historyDownsampler;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping
     @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
     public ResponseEntity<?> updateLocation(@RequestBody LocationUpdateRequest request) {
@@ -28,6 +59,8 @@ public class LocationController {
                     request.getPatientId(),
                     request.getLatitude(),
                     request.getLongitude(),
+                    request.getAccuracy(),
+                    request.getTimestamp(),
                     "MANUAL");
             return ResponseEntity.ok(location);
         } catch (Exception e) {
@@ -35,6 +68,42 @@ public class LocationController {
         }
     }
 
+    @PostMapping("/async")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<?> updateLocationAsync(@RequestBody LocationUpdateRequest request) {
+        try {
+            boolean accepted = locationIngestService.submit(
+                    request.getPatientId(),
+                    request.getLatitude(),
+                    request.getLongitude(),
+                    request.getAccuracy(),
+                    request.getTimestamp(),
+                    "MANUAL");
+            if (!accepted) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body("Location ingest queue is full");
+            }
+            return ResponseEntity.accepted().build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<?> updateLocations(@RequestBody LocationBatchRequest request) {
+        try {
+            List<Location> locations = locationService.updateLocations(
+                    request.getPatientId(),
+                    request.getLocations(),
+                    "MANUAL");
+            return ResponseEntity.ok(locations);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/shipday")
     @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
     public ResponseEntity<?> updateLocationFromShipday(@RequestBody LocationUpdateRequest request) {
@@ -56,6 +125,13 @@ public class LocationController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/current")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<Map<String, Location>> getCurrentLocations(@RequestParam List<String> patientIds) {
+        Map<String, Location> locations = locationService.getCurrentLocations(patientIds);
+        return ResponseEntity.ok(locations);
+    }
+
     @GetMapping("/patient/{patientId}/history")
     @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
     public ResponseEntity<List<Location>> getLocationHistory(@PathVariable String patientId) {
@@ -72,4 +148,160 @@ public class LocationController {
         List<Location> history = locationService.getLocationHistory(patientId, start, end);
         return ResponseEntity.ok(history);
     }
+
+    @GetMapping("/patient/{patientId}/history/page")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<?> getLocationHistoryPage(
+            @PathVariable String patientId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            LocationPage page = locationService.getLocationHistoryPage(patientId, cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/patient/{patientId}/history/range/page")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<?> getLocationHistoryRangePage(
+            @PathVariable String patientId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            LocationPage page = locationService.getLocationHistoryPage(patientId, start, end, cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Map points within time range: coordinates and time only
+     */
+    @GetMapping("/patient/{patientId}/history/points")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<List<TrackPoint>> getHistoryPoints(
+            @PathVariable String patientId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        List<TrackPoint> points = locationService.getHistoryPoints(patientId, start, end);
+        return ResponseEntity.ok(points);
+    }
+
+    /**
+     * Location history within time range reduced for map rendering, sized by
+     * points or by map zoom level (points wins when both are given)
+     */
+    @GetMapping("/patient/{patientId}/history/downsampled")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<?> getDownsampledHistory(
+            @PathVariable String patientId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) Integer points,
+            @RequestParam(required = false) Integer zoom) {
+        try {
+            int targetPoints = points != null ? points
+                    : zoom != null ? HistoryDownsampler.pointsForZoom(zoom) : 500;
+            return ResponseEntity.ok(historyDownsampler.downsample(patientId, start, end, targetPoints));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Same history as a stream of newline-delimited JSON, one fix per line,
+     * written as it is read from the database
+     */
+    @GetMapping(value = "/patient/{patientId}/history", produces = NDJSON)
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<StreamingResponseBody> streamLocationHistory(@PathVariable String patientId) {
+        return ndjson(out -> locationService.streamLocationHistory(patientId, out));
+    }
+
+    @GetMapping(value = "/patient/{patientId}/history/range", produces = NDJSON)
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<StreamingResponseBody> streamLocationHistoryRange(
+            @PathVariable String patientId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        return ndjson(out -> locationService.streamLocationHistory(patientId, start, end, out));
+    }
+
+    /**
+     * Same history as an encoded polyline plus encoded times, a small
+     * fraction of the JSON size
+     */
+    @GetMapping(value = "/patient/{patientId}/history", produces = PolylineEncoder.MEDIA_TYPE)
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<EncodedTrack> getEncodedLocationHistory(@PathVariable String patientId) {
+        return polyline(visitor -> locationService.visitLocationHistory(patientId, visitor));
+    }
+
+    @GetMapping(value = "/patient/{patientId}/history/range", produces = PolylineEncoder.MEDIA_TYPE)
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<EncodedTrack> getEncodedLocationHistoryRange(
+            @PathVariable String patientId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        return polyline(visitor -> locationService.visitLocationHistory(patientId, start, end, visitor));
+    }
+
+    /**
+     * Same history as delta-encoded varints (see BinaryTrackEncoder), streamed
+     * as it is read from the database
+     */
+    @GetMapping(value = "/patient/{patientId}/history", produces = BinaryTrackEncoder.MEDIA_TYPE)
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<StreamingResponseBody> getBinaryLocationHistory(@PathVariable String patientId) {
+        return binary(visitor -> locationService.visitLocationHistory(patientId, visitor));
+    }
+
+    @GetMapping(value = "/patient/{patientId}/history/range", produces = BinaryTrackEncoder.MEDIA_TYPE)
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<StreamingResponseBody> getBinaryLocationHistoryRange(
+            @PathVariable String patientId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        return binary(visitor -> locationService.visitLocationHistory(patientId, start, end, visitor));
+    }
+
+    private ResponseEntity<EncodedTrack> polyline(Consumer<FixVisitor> source) {
+        PolylineEncoder encoder = new PolylineEncoder();
+        source.accept(encoder);
+        EncodedTrack track = new EncodedTrack(PolylineEncoder.PRECISION, encoder.getCount(),
+                encoder.getPolyline(), encoder.getTimes());
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(PolylineEncoder.MEDIA_TYPE)).body(track);
+    }
+
+    private ResponseEntity<StreamingResponseBody> binary(Consumer<FixVisitor> source) {
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            source.accept(new BinaryTrackEncoder(out));
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(BinaryTrackEncoder.MEDIA_TYPE)).body(body);
+    }
+
+    private ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<Location>> source) {
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            source.accept(location -> writeLine(out, location));
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private void writeLine(OutputStream out, Location location) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(location));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
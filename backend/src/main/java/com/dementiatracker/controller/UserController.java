@@ -1,5 +1,6 @@
 package com.dementiatracker.controller;
 
+import com.dementiatracker.dto.InactivitySettings;
 import com.dementiatracker.model.User;
 import com.dementiatracker.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +8,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Set;
+
 @RestController
 @RequestMapping("/api/users")
 @CrossOrigin
@@ -34,6 +37,30 @@ public class UserController {
         }
     }
 
+    @PutMapping("/patient/{patientId}/inactivity")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<?> updateInactivitySettings(@PathVariable String patientId,
+            @RequestBody InactivitySettings settings) {
+        try {
+            User updated = userService.updateInactivitySettings(patientId, settings);
+            return ResponseEntity.ok(updated);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PutMapping("/patient/{patientId}/secondary-caretakers")
+    @PreAuthorize("hasAnyRole('PATIENT', 'CARETAKER')")
+    public ResponseEntity<?> updateSecondaryCaretakers(@PathVariable String patientId,
+            @RequestBody Set<String> caretakerIds) {
+        try {
+            User updated = userService.updateSecondaryCaretakers(patientId, caretakerIds);
+            return ResponseEntity.ok(updated);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/link")
     @PreAuthorize("hasRole('CARETAKER')")
     public ResponseEntity<?> linkCaretakerToPatient(
@@ -0,0 +1,17 @@
+package com.dementiatracker.dto;
+
+import com.dementiatracker.model.Alert;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertAcknowledgeRequest {
+    private String caretakerId;
+    private List<String> alertIds; // Optional: only these alerts
+    private List<Alert.AlertType> types; // Optional: only alerts of these types
+}
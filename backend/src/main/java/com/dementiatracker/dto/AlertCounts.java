@@ -0,0 +1,23 @@
+package com.dementiatracker.dto;
+
+import com.dementiatracker.model.Alert;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Unacknowledged alert counts; byPatient is only filled for caretaker
+ * roll-ups. Types without open alerts are left out.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertCounts {
+    private int total;
+    private Map<Alert.AlertType, Integer> byType = new EnumMap<>(Alert.AlertType.class);
+    private Map<String, AlertCounts> byPatient = new LinkedHashMap<>();
+}
@@ -0,0 +1,27 @@
+package com.dementiatracker.dto;
+
+import com.dementiatracker.model.Alert;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reminder for an alert nobody has acknowledged; event is always
+ * "ESCALATED". Carries enough of the alert for secondary caretakers, who
+ * never received the original, to list it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertEscalation {
+    private String event = "ESCALATED";
+    private String id;
+    private String patientId;
+    private Alert.AlertType type;
+    private String message;
+    private LocalDateTime triggeredAt;
+    private int escalationStep; // 1 for the first rung of the ladder
+    private boolean secondary; // Secondary caretakers were notified too
+}
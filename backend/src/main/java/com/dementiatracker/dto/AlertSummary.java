@@ -0,0 +1,25 @@
+package com.dementiatracker.dto;
+
+import com.dementiatracker.model.Alert;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Alert fields needed by alert lists and badges, read as a projection
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertSummary {
+    private String id;
+    private String patientId;
+    private Alert.AlertType type;
+    private String message;
+    private LocalDateTime triggeredAt;
+    private boolean acknowledged;
+    private int occurrenceCount;
+    private LocalDateTime lastSeenAt;
+}
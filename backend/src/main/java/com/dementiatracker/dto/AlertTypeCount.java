@@ -0,0 +1,15 @@
+package com.dementiatracker.dto;
+
+import com.dementiatracker.model.Alert;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertTypeCount {
+    private String patientId;
+    private Alert.AlertType type;
+    private int count;
+}
@@ -0,0 +1,32 @@
+package com.dementiatracker.dto;
+
+import com.dementiatracker.model.Alert;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Broadcast when an event is coalesced into an alert clients already have.
+ * Carries only the fields that change; event is always "UPDATED".
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertUpdate {
+    private String event = "UPDATED";
+    private String id;
+    private String patientId;
+    private Alert.AlertType type;
+    private int occurrenceCount;
+    private LocalDateTime lastSeenAt;
+    private double patientLatitude;
+    private double patientLongitude;
+
+    public static AlertUpdate of(Alert alert) {
+        return new AlertUpdate("UPDATED", alert.getId(), alert.getPatientId(), alert.getType(),
+                alert.getOccurrenceCount(), alert.getLastSeenAt(), alert.getPatientLatitude(),
+                alert.getPatientLongitude());
+    }
+}
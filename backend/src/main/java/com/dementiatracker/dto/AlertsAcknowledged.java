@@ -0,0 +1,24 @@
+package com.dementiatracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Result of an acknowledgement, broadcast once per request however many
+ * alerts it closed; event is always "ACKNOWLEDGED"
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertsAcknowledged {
+    private String event = "ACKNOWLEDGED";
+    private String patientId;
+    private List<String> alertIds;
+    private long acknowledgedCount; // Alerts this request closed; the rest were closed concurrently
+    private String acknowledgedBy;
+    private LocalDateTime acknowledgedAt;
+}
@@ -0,0 +1,16 @@
+package com.dementiatracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DownsampledHistory {
+    private List<TrackPoint> points = new ArrayList<>(); // Oldest first
+    private int sourceCount; // Number of stored fixes in the range
+}
@@ -0,0 +1,15 @@
+package com.dementiatracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EncodedTrack {
+    private int precision; // Decimal digits kept in the polyline coordinates
+    private int count;
+    private String polyline; // Encoded polyline of the coordinates
+    private String times; // Same encoding of epoch-second deltas, one value per point
+}
@@ -0,0 +1,14 @@
+package com.dementiatracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InactivitySettings {
+    private Integer thresholdMinutes; // null = server default
+    private String quietHoursStart; // "HH:mm"; both null = server default quiet hours
+    private String quietHoursEnd;
+}
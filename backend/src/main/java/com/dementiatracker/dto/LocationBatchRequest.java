@@ -0,0 +1,16 @@
+package com.dementiatracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationBatchRequest {
+    private String patientId;
+    private List<LocationUpdateRequest> locations = new ArrayList<>(); // Buffered fixes, any order
+}
@@ -0,0 +1,17 @@
+package com.dementiatracker.dto;
+
+import com.dementiatracker.model.Location;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationPage {
+    private List<Location> locations = new ArrayList<>();
+    private String nextCursor; // Pass as cursor to get the next page; null on the last page
+}
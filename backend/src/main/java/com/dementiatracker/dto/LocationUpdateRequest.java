@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -11,5 +13,7 @@ public class LocationUpdateRequest {
     private String patientId;
     private double latitude;
     private double longitude;
+    private double accuracy; // Optional: GPS accuracy in meters
+    private LocalDateTime timestamp; // Optional: device fix time, defaults to server time
     private String trackingId; // Optional: Shipday tracking ID
 }
@@ -0,0 +1,16 @@
+package com.dementiatracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrackPoint {
+    private double latitude;
+    private double longitude;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,78 @@
+package com.dementiatracker.geo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Streams a track in a compact binary form:
+ *
+ * <pre>
+ * header: 'D' 'T' 'K' version(1)
+ * point:  varint(zigzag(dLat)) varint(zigzag(dLon)) varint(zigzag(dTime))
+ * </pre>
+ *
+ * Coordinates are in microdegrees (about 11 cm), time in epoch
+ * milliseconds; each value is the delta from the previous point, starting
+ * from 0. Varints are little-endian base-128 as in protobuf. The stream ends
+ * after the last point, so it can be written while fixes are still being read.
+ */
+public class BinaryTrackEncoder implements FixVisitor {
+
+    public static final String MEDIA_TYPE = "application/vnd.dementiatracker.track";
+
+    private static final byte[] HEADER = {'D', 'T', 'K', 1};
+
+    private static final double SCALE = 1e6;
+
+    private final OutputStream out;
+
+    private long lastLatitude;
+
+    private long lastLongitude;
+
+    private long lastTime;
+
+    public BinaryTrackEncoder(OutputStream out) {
+        this.out = out;
+        write(HEADER);
+    }
+
+    @Override
+    public void visit(double latitude, double longitude, long time) {
+        long lat = Math.round(latitude * SCALE);
+        long lon = Math.round(longitude * SCALE);
+
+        writeVarint(zigzag(lat - lastLatitude));
+        writeVarint(zigzag(lon - lastLongitude));
+        writeVarint(zigzag(time - lastTime));
+
+        lastLatitude = lat;
+        lastLongitude = lon;
+        lastTime = time;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeVarint(long value) {
+        try {
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(byte[] bytes) {
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.dementiatracker.geo;
+
+import com.dementiatracker.model.SafeZone;
+
+/**
+ * Circular safe zone with a cheap containment kernel. Points outside the
+ * bounding box are rejected outright; otherwise an equirectangular squared
+ * distance (no trig per call) decides points that are clearly inside or
+ * outside, and only points in a thin band around the edge fall back to the
+ * exact haversine distance. Decisions are identical to a pure haversine check.
+ */
+public class CircleZone implements ZoneShape {
+
+    private static final double METERS_PER_DEGREE = GeoMath.EARTH_RADIUS * Math.PI / 180;
+
+    // Above this relative error the approximation saves nothing; always use haversine
+    private static final double MAX_TOLERANCE = 0.25;
+
+    // About 320 km; beyond this the flat approximation's second-order error outgrows the band
+    private static final double MAX_FAST_ANGULAR_RADIUS = 0.05;
+
+    private final SafeZone zone;
+
+    private final GeoBounds bounds;
+
+    private final double centerLatitude;
+
+    private final double centerLongitude;
+
+    private final double radius;
+
+    private final double metersPerDegreeLongitude;
+
+    private final double innerRadiusSquared;
+
+    private final double outerRadiusSquared;
+
+    private final boolean exactOnly;
+
+    public CircleZone(SafeZone zone) {
+        this.zone = zone;
+        this.centerLatitude = zone.getCenterLatitude();
+        this.centerLongitude = zone.getCenterLongitude();
+        this.radius = zone.getRadiusInMeters();
+        this.bounds = GeoBounds.aroundCircle(centerLatitude, centerLongitude, radius);
+        this.metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLatitude));
+
+        // Using the center's longitude scale is off by about tan(lat) * angular radius inside the box,
+        // so the band is twice that plus a fixed 0.1% for second-order terms and rounding
+        double tolerance = 2 * Math.abs(Math.tan(Math.toRadians(centerLatitude))) * (radius / GeoMath.EARTH_RADIUS)
+                + 0.001;
+        // Circles reaching a pole have no meaningful longitude scale
+        boolean reachesPole = bounds.getMinLatitude() <= -90 || bounds.getMaxLatitude() >= 90;
+        this.exactOnly = tolerance > MAX_TOLERANCE || reachesPole
+                || radius / GeoMath.EARTH_RADIUS > MAX_FAST_ANGULAR_RADIUS;
+        this.innerRadiusSquared = square(radius * (1 - tolerance));
+        this.outerRadiusSquared = square(radius * (1 + tolerance));
+    }
+
+    @Override
+    public SafeZone getZone() {
+        return zone;
+    }
+
+    @Override
+    public GeoBounds getBounds() {
+        return bounds;
+    }
+
+    @Override
+    public boolean contains(double latitude, double longitude) {
+        if (!bounds.contains(latitude, longitude)) {
+            return false;
+        }
+
+        if (!exactOnly) {
+            double dy = (latitude - centerLatitude) * METERS_PER_DEGREE;
+            double dx = wrapLongitude(longitude - centerLongitude) * metersPerDegreeLongitude;
+            double distanceSquared = dx * dx + dy * dy;
+
+            if (distanceSquared <= innerRadiusSquared) {
+                return true;
+            }
+            if (distanceSquared >= outerRadiusSquared) {
+                return false;
+            }
+        }
+
+        return GeoMath.distance(latitude, longitude, centerLatitude, centerLongitude) <= radius;
+    }
+
+    @Override
+    public double distanceToBoundary(double latitude, double longitude) {
+        return Math.abs(GeoMath.distance(latitude, longitude, centerLatitude, centerLongitude) - radius);
+    }
+
+    /**
+     * Shortest signed longitude difference, so zones across the antimeridian
+     * measure a point at -179.9 as 0.2 degrees from a center at 179.9
+     */
+    private static double wrapLongitude(double degrees) {
+        if (degrees > 180) {
+            return degrees - 360;
+        }
+        if (degrees < -180) {
+            return degrees + 360;
+        }
+        return degrees;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+}
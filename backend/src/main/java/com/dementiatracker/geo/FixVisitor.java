@@ -0,0 +1,35 @@
+package com.dementiatracker.geo;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Receives stored fixes as bare coordinates and a time, for readers that
+ * encode or reduce long histories without building a Location per fix
+ */
+@FunctionalInterface
+public interface FixVisitor {
+
+    /**
+     * @param time fix timestamp in epoch milliseconds, see {@link #toTime(LocalDateTime)}
+     */
+    void visit(double latitude, double longitude, long time);
+
+    /**
+     * Fix timestamps are zone-less server-local LocalDateTimes; tracks and
+     * exports carry them as epoch milliseconds reading the wall-clock value as
+     * UTC. This is only an encoding: a fix's day is still the timestamp's own
+     * date.
+     */
+    static long toTime(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Inverse of {@link #toTime(LocalDateTime)}
+     */
+    static LocalDateTime fromTime(long time) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(time, 1000), Math.floorMod(time, 1000) * 1_000_000,
+                ZoneOffset.UTC);
+    }
+}
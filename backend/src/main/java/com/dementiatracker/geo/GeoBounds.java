@@ -0,0 +1,61 @@
+package com.dementiatracker.geo;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Latitude/longitude bounding box in degrees
+ */
+@Getter
+@AllArgsConstructor
+public class GeoBounds {
+
+    public static final GeoBounds WORLD = new GeoBounds(-90, 90, -180, 180);
+
+    private final double minLatitude;
+
+    private final double maxLatitude;
+
+    private final double minLongitude;
+
+    private final double maxLongitude;
+
+    /**
+     * Smallest box containing every point within radiusInMeters of the center.
+     * Circles touching a pole or the antimeridian get the full longitude range.
+     */
+    public static GeoBounds aroundCircle(double centerLatitude, double centerLongitude, double radiusInMeters) {
+        double angularRadius = radiusInMeters / GeoMath.EARTH_RADIUS;
+        double latRad = Math.toRadians(centerLatitude);
+
+        double minLatRad = latRad - angularRadius;
+        double maxLatRad = latRad + angularRadius;
+        if (minLatRad <= -Math.PI / 2 || maxLatRad >= Math.PI / 2) {
+            return new GeoBounds(Math.max(-90, Math.toDegrees(minLatRad)), Math.min(90, Math.toDegrees(maxLatRad)),
+                    -180, 180);
+        }
+
+        double deltaLon = Math.toDegrees(Math.asin(Math.sin(angularRadius) / Math.cos(latRad)));
+        double minLon = centerLongitude - deltaLon;
+        double maxLon = centerLongitude + deltaLon;
+        if (minLon < -180 || maxLon > 180) {
+            minLon = -180;
+            maxLon = 180;
+        }
+
+        return new GeoBounds(Math.toDegrees(minLatRad), Math.toDegrees(maxLatRad), minLon, maxLon);
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    public double getLatitudeSpan() {
+        return maxLatitude - minLatitude;
+    }
+
+    public double getLongitudeSpan() {
+        return maxLongitude - minLongitude;
+    }
+}
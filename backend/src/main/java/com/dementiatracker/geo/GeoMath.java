@@ -0,0 +1,30 @@
+package com.dementiatracker.geo;
+
+/**
+ * Spherical earth helpers shared by geofencing and zone indexing
+ */
+public final class GeoMath {
+
+    public static final int EARTH_RADIUS = 6371000; // Earth's radius in meters
+
+    private GeoMath() {
+    }
+
+    /**
+     * Calculate distance between two points using Haversine formula
+     *
+     * @return Distance in meters
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return EARTH_RADIUS * c; // Distance in meters
+    }
+}
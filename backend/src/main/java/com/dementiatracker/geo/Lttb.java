@@ -0,0 +1,82 @@
+package com.dementiatracker.geo;
+
+/**
+ * Largest-Triangle-Three-Buckets reduction of a track to a target number of
+ * points. The track is split into equal runs of consecutive points; from each
+ * run the point forming the largest triangle with the previously kept point
+ * and the average of the next run is kept. Turns and excursions survive
+ * while straight or stationary stretches collapse. Areas are measured in a
+ * local equirectangular projection so east-west and north-south moves weigh
+ * the same.
+ */
+public final class Lttb {
+
+    private Lttb() {
+    }
+
+    /**
+     * Indices of the points to keep, ascending. The first and last points are
+     * always kept; a track no longer than the target is kept whole.
+     */
+    public static int[] downsample(Track track, int targetPoints) {
+        int n = track.size();
+        if (targetPoints >= n || n <= 2) {
+            return identity(n);
+        }
+        if (targetPoints < 3) {
+            return new int[]{0, n - 1};
+        }
+
+        double scale = Math.cos(Math.toRadians(track.getLatitude(0)));
+        int[] kept = new int[targetPoints];
+        int count = 0;
+        kept[count++] = 0;
+
+        double every = (double) (n - 2) / (targetPoints - 2);
+        int a = 0;
+        for (int bucket = 0; bucket < targetPoints - 2; bucket++) {
+            // Average of the next run, the fixed third corner of the triangle
+            int nextStart = (int) Math.floor((bucket + 1) * every) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * every) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += track.getLongitude(i) * scale;
+                avgY += track.getLatitude(i);
+            }
+            int nextCount = nextEnd - nextStart;
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = (int) Math.floor(bucket * every) + 1;
+            int end = (int) Math.floor((bucket + 1) * every) + 1;
+            double ax = track.getLongitude(a) * scale;
+            double ay = track.getLatitude(a);
+
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((ax - avgX) * (track.getLatitude(i) - ay)
+                        - (ax - track.getLongitude(i) * scale) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+
+            kept[count++] = chosen;
+            a = chosen;
+        }
+
+        kept[count] = n - 1;
+        return kept;
+    }
+
+    private static int[] identity(int n) {
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+}
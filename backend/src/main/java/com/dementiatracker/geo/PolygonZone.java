@@ -0,0 +1,216 @@
+package com.dementiatracker.geo;
+
+import com.dementiatracker.model.SafeZone;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Polygon safe zone compiled into a slab decomposition. The distinct vertex
+ * latitudes split the polygon into horizontal slabs, and each slab keeps the
+ * edges crossing it sorted by longitude. Containment is a bounding-box
+ * reject, a binary search for the slab, and a binary search counting the
+ * edges to the east of the point (even-odd rule), so a check is
+ * O(log n) even for polygons with hundreds of vertices.
+ *
+ * Coordinates are treated as planar lat/lon, which is accurate for
+ * property-sized boundaries that do not cross the antimeridian.
+ */
+public class PolygonZone implements ZoneShape {
+
+    private final SafeZone zone;
+
+    private final GeoBounds bounds;
+
+    private final double[] vertexLat;
+
+    private final double[] vertexLon;
+
+    // Edge e runs from (edgeLat[e], edgeLon[e]) with edgeSlope[e] degrees of longitude per degree of latitude
+    private final double[] edgeLat;
+
+    private final double[] edgeLon;
+
+    private final double[] edgeSlope;
+
+    // slabLatitudes[k] .. slabLatitudes[k + 1] bounds slab k, whose edges are slabEdges[k]
+    private final double[] slabLatitudes;
+
+    private final int[][] slabEdges;
+
+    public PolygonZone(SafeZone zone) {
+        this.zone = zone;
+
+        List<SafeZone.Vertex> ring = new ArrayList<>(zone.getVertices());
+        if (ring.size() > 1 && ring.get(0).equals(ring.get(ring.size() - 1))) {
+            ring.remove(ring.size() - 1);
+        }
+        if (ring.size() < 3) {
+            throw new IllegalArgumentException("A polygon safe zone needs at least 3 vertices");
+        }
+
+        int n = ring.size();
+        if (isSelfIntersecting(ring)) {
+            throw new IllegalArgumentException("Polygon edges must not cross each other");
+        }
+
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (SafeZone.Vertex vertex : ring) {
+            minLat = Math.min(minLat, vertex.getLatitude());
+            maxLat = Math.max(maxLat, vertex.getLatitude());
+            minLon = Math.min(minLon, vertex.getLongitude());
+            maxLon = Math.max(maxLon, vertex.getLongitude());
+        }
+        this.bounds = new GeoBounds(minLat, maxLat, minLon, maxLon);
+
+        this.vertexLat = ring.stream().mapToDouble(SafeZone.Vertex::getLatitude).toArray();
+        this.vertexLon = ring.stream().mapToDouble(SafeZone.Vertex::getLongitude).toArray();
+
+        // Horizontal edges never cross a slab and are dropped
+        List<Integer> edges = new ArrayList<>();
+        double[] lowLat = new double[n];
+        double[] highLat = new double[n];
+        this.edgeLat = new double[n];
+        this.edgeLon = new double[n];
+        this.edgeSlope = new double[n];
+        for (int i = 0; i < n; i++) {
+            SafeZone.Vertex a = ring.get(i);
+            SafeZone.Vertex b = ring.get((i + 1) % n);
+            if (a.getLatitude() == b.getLatitude()) {
+                continue;
+            }
+            edgeLat[i] = a.getLatitude();
+            edgeLon[i] = a.getLongitude();
+            edgeSlope[i] = (b.getLongitude() - a.getLongitude()) / (b.getLatitude() - a.getLatitude());
+            lowLat[i] = Math.min(a.getLatitude(), b.getLatitude());
+            highLat[i] = Math.max(a.getLatitude(), b.getLatitude());
+            edges.add(i);
+        }
+
+        this.slabLatitudes = ring.stream().mapToDouble(SafeZone.Vertex::getLatitude).distinct().sorted().toArray();
+        this.slabEdges = new int[Math.max(0, slabLatitudes.length - 1)][];
+        for (int k = 0; k < slabEdges.length; k++) {
+            double bottom = slabLatitudes[k];
+            double top = slabLatitudes[k + 1];
+            double middle = (bottom + top) / 2;
+            slabEdges[k] = edges.stream()
+                    .filter(e -> lowLat[e] <= bottom && highLat[e] >= top)
+                    .sorted(Comparator.comparingDouble(e -> longitudeAt(e, middle)))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+    }
+
+    @Override
+    public SafeZone getZone() {
+        return zone;
+    }
+
+    @Override
+    public GeoBounds getBounds() {
+        return bounds;
+    }
+
+    @Override
+    public boolean contains(double latitude, double longitude) {
+        if (!bounds.contains(latitude, longitude)) {
+            return false;
+        }
+
+        // Slab k covers [slabLatitudes[k], slabLatitudes[k + 1]), matching the half-open even-odd rule
+        int slot = Arrays.binarySearch(slabLatitudes, latitude);
+        int slab = slot >= 0 ? slot : -slot - 2;
+        if (slab < 0 || slab >= slabEdges.length) {
+            return false;
+        }
+
+        int[] crossing = slabEdges[slab];
+        int low = 0;
+        int high = crossing.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (longitudeAt(crossing[mid], latitude) > longitude) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        // Edges from low onwards lie east of the point
+        return ((crossing.length - low) & 1) == 1;
+    }
+
+    /**
+     * Minimum distance to any edge, measured in a local equirectangular
+     * projection around the point. Linear in the number of vertices, so
+     * callers only use it for hysteresis margins near the boundary.
+     */
+    @Override
+    public double distanceToBoundary(double latitude, double longitude) {
+        double metersPerDegree = GeoMath.EARTH_RADIUS * Math.PI / 180;
+        double metersPerDegreeLongitude = metersPerDegree * Math.cos(Math.toRadians(latitude));
+
+        int n = vertexLat.length;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            double ax = (vertexLon[i] - longitude) * metersPerDegreeLongitude;
+            double ay = (vertexLat[i] - latitude) * metersPerDegree;
+            double bx = (vertexLon[j] - longitude) * metersPerDegreeLongitude;
+            double by = (vertexLat[j] - latitude) * metersPerDegree;
+
+            // Closest point on segment a-b to the origin
+            double dx = bx - ax;
+            double dy = by - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+            double px = ax + t * dx;
+            double py = ay + t * dy;
+            best = Math.min(best, px * px + py * py);
+        }
+        return Math.sqrt(best);
+    }
+
+    private double longitudeAt(int edge, double latitude) {
+        return edgeLon[edge] + (latitude - edgeLat[edge]) * edgeSlope[edge];
+    }
+
+    /**
+     * Slabs rely on edges never crossing; checked once at compile time
+     */
+    private static boolean isSelfIntersecting(List<SafeZone.Vertex> ring) {
+        int n = ring.size();
+        for (int i = 0; i < n; i++) {
+            SafeZone.Vertex a = ring.get(i);
+            SafeZone.Vertex b = ring.get((i + 1) % n);
+            for (int j = i + 2; j < n; j++) {
+                if (i == 0 && j == n - 1) {
+                    continue; // Adjacent through the closing edge
+                }
+                if (segmentsCross(a, b, ring.get(j), ring.get((j + 1) % n))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean segmentsCross(SafeZone.Vertex a, SafeZone.Vertex b, SafeZone.Vertex c,
+            SafeZone.Vertex d) {
+        double d1 = orientation(c, d, a);
+        double d2 = orientation(c, d, b);
+        double d3 = orientation(a, b, c);
+        double d4 = orientation(a, b, d);
+        return ((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0));
+    }
+
+    private static double orientation(SafeZone.Vertex origin, SafeZone.Vertex a, SafeZone.Vertex b) {
+        return (a.getLongitude() - origin.getLongitude()) * (b.getLatitude() - origin.getLatitude())
+                - (a.getLatitude() - origin.getLatitude()) * (b.getLongitude() - origin.getLongitude());
+    }
+}
@@ -0,0 +1,68 @@
+package com.dementiatracker.geo;
+
+/**
+ * Encodes a track in the encoded polyline format (precision 5, as used by
+ * Google Maps and Leaflet plugins). Timestamps are encoded the same way
+ * into a second string as deltas of epoch seconds, starting from 0.
+ */
+public class PolylineEncoder implements FixVisitor {
+
+    public static final String MEDIA_TYPE = "application/vnd.dementiatracker.polyline+json";
+
+    public static final int PRECISION = 5;
+
+    private static final double SCALE = 1e5;
+
+    private final StringBuilder polyline = new StringBuilder();
+
+    private final StringBuilder times = new StringBuilder();
+
+    private long lastLatitude;
+
+    private long lastLongitude;
+
+    private long lastSecond;
+
+    private int count;
+
+    @Override
+    public void visit(double latitude, double longitude, long time) {
+        long lat = Math.round(latitude * SCALE);
+        long lon = Math.round(longitude * SCALE);
+        long second = Math.floorDiv(time, 1000);
+
+        encode(lat - lastLatitude, polyline);
+        encode(lon - lastLongitude, polyline);
+        encode(second - lastSecond, times);
+
+        lastLatitude = lat;
+        lastLongitude = lon;
+        lastSecond = second;
+        count++;
+    }
+
+    public String getPolyline() {
+        return polyline.toString();
+    }
+
+    public String getTimes() {
+        return times.toString();
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Zigzag the signed value, then emit 5-bit groups low first as
+     * printable characters, with 0x20 marking that another group follows
+     */
+    private static void encode(long value, StringBuilder out) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+}
@@ -0,0 +1,79 @@
+package com.dementiatracker.geo;
+
+import java.util.Arrays;
+
+/**
+ * Time-ordered sequence of positions held in primitive arrays, so long
+ * tracks can be reduced or encoded without one object per fix.
+ * Timestamps are epoch milliseconds (UTC).
+ */
+public class Track {
+
+    private double[] latitudes;
+
+    private double[] longitudes;
+
+    private long[] times;
+
+    private int size;
+
+    public Track() {
+        this(64);
+    }
+
+    public Track(int capacity) {
+        int initial = Math.max(capacity, 1);
+        latitudes = new double[initial];
+        longitudes = new double[initial];
+        times = new long[initial];
+    }
+
+    public void add(double latitude, double longitude, long time) {
+        if (size == latitudes.length) {
+            int grown = size * 2;
+            latitudes = Arrays.copyOf(latitudes, grown);
+            longitudes = Arrays.copyOf(longitudes, grown);
+            times = Arrays.copyOf(times, grown);
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        times[size] = time;
+        size++;
+    }
+
+    /**
+     * Append every point of another track
+     */
+    public void addAll(Track other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.latitudes[i], other.longitudes[i], other.times[i]);
+        }
+    }
+
+    /**
+     * New track holding the points at the given indices, in that order
+     */
+    public Track select(int[] indices) {
+        Track selected = new Track(indices.length);
+        for (int i : indices) {
+            selected.add(latitudes[i], longitudes[i], times[i]);
+        }
+        return selected;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getLatitude(int i) {
+        return latitudes[i];
+    }
+
+    public double getLongitude(int i) {
+        return longitudes[i];
+    }
+
+    public long getTime(int i) {
+        return times[i];
+    }
+}
@@ -0,0 +1,223 @@
+package com.dementiatracker.geo;
+
+import com.dementiatracker.model.SafeZone;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grid bucket index over the bounding boxes of one patient's safe zones
+ * (circles and polygons).
+ * A fix only tests the zones whose box covers its grid cell, so evaluation
+ * cost depends on how many zones overlap the fix rather than on how many
+ * zones the patient has. Zones spanning too many cells are kept in a short
+ * list that is always checked.
+ */
+public class ZoneIndex {
+
+    private static final int MAX_CELLS_PER_ZONE = 64;
+
+    private static final double MIN_CELL_SIZE = 0.0005; // Degrees, roughly 55 m of latitude
+
+    private static final int[] NO_ZONES = new int[0];
+
+    private static final double METERS_PER_DEGREE = GeoMath.EARTH_RADIUS * Math.PI / 180;
+
+    private final List<SafeZone> zones;
+
+    private final ZoneShape[] shapes;
+
+    private final double cellSize;
+
+    private final Map<Long, int[]> cells;
+
+    private final int[] oversized;
+
+    private ZoneIndex(List<SafeZone> zones, ZoneShape[] shapes, double cellSize, Map<Long, int[]> cells,
+            int[] oversized) {
+        this.zones = zones;
+        this.shapes = shapes;
+        this.cellSize = cellSize;
+        this.cells = cells;
+        this.oversized = oversized;
+    }
+
+    /**
+     * Compile safe zones and build an index over them
+     */
+    public static ZoneIndex build(List<SafeZone> zones) {
+        int count = zones.size();
+        ZoneShape[] shapes = new ZoneShape[count];
+        double[] spans = new double[count];
+        for (int i = 0; i < count; i++) {
+            shapes[i] = ZoneShape.compile(zones.get(i));
+            GeoBounds box = shapes[i].getBounds();
+            spans[i] = Math.max(box.getLatitudeSpan(), box.getLongitudeSpan());
+        }
+
+        // Cells about the size of a typical zone keep each zone in a handful of cells
+        double cellSize = MIN_CELL_SIZE;
+        if (count > 0) {
+            Arrays.sort(spans);
+            cellSize = Math.max(MIN_CELL_SIZE, spans[count / 2]);
+        }
+
+        Map<Long, List<Integer>> buckets = new HashMap<>();
+        List<Integer> oversizedZones = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            GeoBounds box = shapes[i].getBounds();
+            long minRow = cell(box.getMinLatitude(), cellSize);
+            long maxRow = cell(box.getMaxLatitude(), cellSize);
+            long minCol = cell(box.getMinLongitude(), cellSize);
+            long maxCol = cell(box.getMaxLongitude(), cellSize);
+
+            if ((maxRow - minRow + 1) * (maxCol - minCol + 1) > MAX_CELLS_PER_ZONE) {
+                oversizedZones.add(i);
+                continue;
+            }
+            for (long row = minRow; row <= maxRow; row++) {
+                for (long col = minCol; col <= maxCol; col++) {
+                    buckets.computeIfAbsent(key(row, col), k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+
+        Map<Long, int[]> cells = new HashMap<>();
+        buckets.forEach((key, members) -> cells.put(key, toArray(members)));
+
+        return new ZoneIndex(Collections.unmodifiableList(new ArrayList<>(zones)), shapes, cellSize, cells,
+                toArray(oversizedZones));
+    }
+
+    public List<SafeZone> getZones() {
+        return zones;
+    }
+
+    public boolean isEmpty() {
+        return zones.isEmpty();
+    }
+
+    /**
+     * Check whether the point is inside at least one zone
+     */
+    public boolean anyContains(double latitude, double longitude) {
+        for (int i : candidates(latitude, longitude)) {
+            if (shapes[i].contains(latitude, longitude)) {
+                return true;
+            }
+        }
+        for (int i : oversized) {
+            if (shapes[i].contains(latitude, longitude)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get every zone containing the point
+     */
+    public List<SafeZone> findContaining(double latitude, double longitude) {
+        List<SafeZone> containing = new ArrayList<>();
+        for (int i : candidates(latitude, longitude)) {
+            if (shapes[i].contains(latitude, longitude)) {
+                containing.add(shapes[i].getZone());
+            }
+        }
+        for (int i : oversized) {
+            if (shapes[i].contains(latitude, longitude)) {
+                containing.add(shapes[i].getZone());
+            }
+        }
+        return containing;
+    }
+
+    /**
+     * Depth of the point inside the zones containing it: the largest distance
+     * to the boundary among those zones, or 0 if no zone contains the point
+     */
+    public double maxDepthInside(double latitude, double longitude) {
+        double depth = 0;
+        for (int i : candidates(latitude, longitude)) {
+            if (shapes[i].contains(latitude, longitude)) {
+                depth = Math.max(depth, shapes[i].distanceToBoundary(latitude, longitude));
+            }
+        }
+        for (int i : oversized) {
+            if (shapes[i].contains(latitude, longitude)) {
+                depth = Math.max(depth, shapes[i].distanceToBoundary(latitude, longitude));
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Distance from a point outside every zone to the nearest zone boundary.
+     * Only zones within reach meters are measured; if there are none the
+     * result is positive infinity.
+     */
+    public double minDistanceOutside(double latitude, double longitude, double reach) {
+        double reachLat = reach / METERS_PER_DEGREE;
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        double reachLon = cosLat > 0.01 ? reachLat / cosLat : 360;
+
+        double distance = Double.POSITIVE_INFINITY;
+        long minRow = cell(latitude - reachLat, cellSize);
+        long maxRow = cell(latitude + reachLat, cellSize);
+        long minCol = cell(longitude - reachLon, cellSize);
+        long maxCol = cell(longitude + reachLon, cellSize);
+
+        if ((maxRow - minRow + 1) * (maxCol - minCol + 1) > MAX_CELLS_PER_ZONE) {
+            for (ZoneShape shape : shapes) {
+                distance = Math.min(distance, distanceIfNear(shape, latitude, longitude, reachLat, reachLon));
+            }
+            return distance;
+        }
+
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long col = minCol; col <= maxCol; col++) {
+                for (int i : cells.getOrDefault(key(row, col), NO_ZONES)) {
+                    distance = Math.min(distance, distanceIfNear(shapes[i], latitude, longitude, reachLat, reachLon));
+                }
+            }
+        }
+        for (int i : oversized) {
+            distance = Math.min(distance, distanceIfNear(shapes[i], latitude, longitude, reachLat, reachLon));
+        }
+        return distance;
+    }
+
+    private static double distanceIfNear(ZoneShape shape, double latitude, double longitude, double reachLat,
+            double reachLon) {
+        GeoBounds box = shape.getBounds();
+        if (latitude < box.getMinLatitude() - reachLat || latitude > box.getMaxLatitude() + reachLat
+                || longitude < box.getMinLongitude() - reachLon || longitude > box.getMaxLongitude() + reachLon) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return shape.distanceToBoundary(latitude, longitude);
+    }
+
+    private int[] candidates(double latitude, double longitude) {
+        return cells.getOrDefault(key(cell(latitude, cellSize), cell(longitude, cellSize)), NO_ZONES);
+    }
+
+    private static long cell(double degrees, double cellSize) {
+        return (long) Math.floor(degrees / cellSize);
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) ^ (col & 0xffffffffL);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,30 @@
+package com.dementiatracker.geo;
+
+import com.dementiatracker.model.SafeZone;
+
+/**
+ * A safe zone compiled for fast containment checks
+ */
+public interface ZoneShape {
+
+    SafeZone getZone();
+
+    GeoBounds getBounds();
+
+    boolean contains(double latitude, double longitude);
+
+    /**
+     * Distance in meters from the point to the zone boundary, whether the point is inside or outside
+     */
+    double distanceToBoundary(double latitude, double longitude);
+
+    /**
+     * Compile a safe zone into its containment structure
+     */
+    static ZoneShape compile(SafeZone zone) {
+        if (zone.getType() == SafeZone.ZoneType.POLYGON) {
+            return new PolygonZone(zone);
+        }
+        return new CircleZone(zone);
+    }
+}
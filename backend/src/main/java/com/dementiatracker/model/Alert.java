@@ -4,6 +4,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -12,6 +15,12 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "alerts")
+@CompoundIndexes({
+        @CompoundIndex(name = "patient_triggered", def = "{'patientId': 1, 'triggeredAt': -1}"),
+        @CompoundIndex(name = "patient_open_triggered", def = "{'patientId': 1, 'acknowledged': 1, 'triggeredAt': -1}"),
+        @CompoundIndex(name = "type_open", def = "{'type': 1, 'acknowledged': 1}"),
+        @CompoundIndex(name = "acknowledged_triggered", def = "{'acknowledged': 1, 'triggeredAt': 1}")
+})
 public class Alert {
     @Id
     private String id;
@@ -30,6 +39,11 @@ public class Alert {
 
     private LocalDateTime triggeredAt;
 
+    private int occurrenceCount = 1; // Events coalesced into this alert
+
+    @Indexed(name = "last_seen") // Coalescing registry rebuild: recently active alerts
+    private LocalDateTime lastSeenAt; // Time of the latest coalesced event
+
     private boolean acknowledged = false;
 
     private LocalDateTime acknowledgedAt;
@@ -41,6 +55,6 @@ public class Alert {
         ZONE_ENTRY, // Patient re-entered safe zone
         EMERGENCY, // Patient triggered emergency alert
         LOW_BATTERY, // Device battery low (future feature)
-        NO_MOVEMENT // No movement detected (future feature)
+        NO_MOVEMENT // No movement for the patient's inactivity threshold
     }
 }
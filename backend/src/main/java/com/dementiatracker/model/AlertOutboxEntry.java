@@ -0,0 +1,33 @@
+package com.dementiatracker.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * An alert event written together with the alert change it reports and
+ * deleted once it has been published
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "alert_outbox")
+public class AlertOutboxEntry {
+    @Id
+    private String id; // ObjectId assigned on enqueue; _id order is publish order
+
+    private String patientId;
+
+    private String payload; // Event as JSON, exactly as sent to clients
+
+    private LocalDateTime createdAt;
+
+    private int attempts; // Failed publish attempts so far
+
+    private List<String> recipientIds; // Only these users' alert queues; null for the patient's destinations
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -12,6 +14,8 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "locations")
+// History, range, latest and keyset page reads; descending sorts walk it backwards
+@CompoundIndex(name = "patient_time", def = "{'patientId': 1, 'timestamp': 1, '_id': 1}")
 public class Location {
     @Id
     private String id;
@@ -24,6 +28,7 @@ public class Location {
     
     private double accuracy; // GPS accuracy in meters
     
+    @Indexed(name = "timestamp") // Retention sweep: oldest fixes across patients
     private LocalDateTime timestamp;
     
     private String source; // "SHIPDAY_API" or "MANUAL"
@@ -0,0 +1,56 @@
+package com.dementiatracker.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All fixes of one patient within one time window (bucketed storage mode)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "location_buckets")
+@CompoundIndex(name = "patient_bucket", def = "{'patientId': 1, 'bucketStart': 1}", unique = true)
+public class LocationBucket {
+    @Id
+    private String id;
+
+    private String patientId;
+
+    @Indexed(name = "bucket_start") // Retention sweep: oldest buckets across patients
+    private LocalDateTime bucketStart; // Start of the time window
+
+    private LocalDateTime firstTimestamp;
+
+    private LocalDateTime lastTimestamp;
+
+    private List<Fix> fixes = new ArrayList<>(); // In append order
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Fix {
+        private String id; // Same id the fix had as a Location
+
+        private double latitude;
+
+        private double longitude;
+
+        private double accuracy;
+
+        private LocalDateTime timestamp;
+
+        private String source;
+
+        private String deviceId;
+    }
+}
@@ -4,14 +4,18 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "safe_zones")
+@CompoundIndex(name = "patient_active", def = "{'patientId': 1, 'active': 1}")
 public class SafeZone {
     @Id
     private String id;
@@ -20,11 +24,15 @@ public class SafeZone {
 
     private String name; // e.g., "Home", "Park", "Community Center"
 
-    private double centerLatitude;
+    private ZoneType type = ZoneType.CIRCLE;
+
+    private double centerLatitude; // For polygons: centroid of the vertices
 
     private double centerLongitude;
 
-    private double radiusInMeters; // Radius of the safe zone
+    private double radiusInMeters; // Radius of the safe zone. For polygons: distance to the farthest vertex
+
+    private List<Vertex> vertices = new ArrayList<>(); // Polygon boundary in order, for POLYGON zones only
 
     private boolean active = true; // Can be disabled without deleting
 
@@ -33,4 +41,18 @@ public class SafeZone {
     private LocalDateTime updatedAt;
 
     private String createdByCaretakerId;
+
+    public enum ZoneType {
+        CIRCLE, // Center plus radius
+        POLYGON // Closed boundary through the vertices
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Vertex {
+        private double latitude;
+
+        private double longitude;
+    }
 }
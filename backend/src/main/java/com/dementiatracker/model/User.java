@@ -24,19 +24,30 @@ public class User {
     
     private String password; // Will be hashed
     
+    @Indexed
     private String email;
     
     private String fullName;
     
     private String phoneNumber;
     
+    @Indexed // Link index and inactivity rebuilds read patients only
     private Role role; // PATIENT or CARETAKER
     
+    @Indexed
     private String patientId; // For patients: their own ID, For caretakers: null
     
     private Set<String> linkedPatientIds = new HashSet<>(); // For caretakers: list of patient IDs they monitor
     
     private Set<String> linkedCaretakerIds = new HashSet<>(); // For patients: list of caretaker IDs
+
+    private Set<String> secondaryCaretakerIds = new HashSet<>(); // For patients: caretakers alerted only on escalation
+
+    private Integer inactivityThresholdMinutes; // For patients: NO_MOVEMENT threshold, null = default
+
+    private String quietHoursStart; // For patients: "HH:mm", no NO_MOVEMENT alerts from here...
+
+    private String quietHoursEnd; // ...until here; null = default quiet hours
     
     private LocalDateTime createdAt;
     
@@ -0,0 +1,17 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.model.AlertOutboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AlertOutboxRepository extends MongoRepository<AlertOutboxEntry, String> {
+    List<AlertOutboxEntry> findAllByOrderByIdAsc(Pageable pageable);
+
+    // Relay: pending entries of every patient not currently held back by a failed send
+    List<AlertOutboxEntry> findByPatientIdNotInOrderByIdAsc(Collection<String> patientIds, Pageable pageable);
+}
@@ -1,14 +1,30 @@
 package com.dementiatracker.repository;
 
 import com.dementiatracker.model.Alert;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface AlertRepository extends MongoRepository<Alert, String> {
+public interface AlertRepository extends MongoRepository<Alert, String>, AlertRepositoryCustom {
     List<Alert> findByPatientIdOrderByTriggeredAtDesc(String patientId);
 
     List<Alert> findByPatientIdAndAcknowledgedFalseOrderByTriggeredAtDesc(String patientId);
+
+    // Projections: only the fields of the given type are read and mapped
+    <T> List<T> findByPatientIdOrderByTriggeredAtDesc(String patientId, Class<T> type);
+
+    <T> List<T> findByPatientIdAndAcknowledgedFalseOrderByTriggeredAtDesc(String patientId, Class<T> type);
+
+    List<Alert> findByTypeAndAcknowledgedFalse(Alert.AlertType type);
+
+    <T> List<T> findByTypeInAndAcknowledgedFalse(Collection<Alert.AlertType> types, Class<T> type);
+
+    List<Alert> findByTypeNotAndLastSeenAtAfter(Alert.AlertType type, LocalDateTime since);
+
+    List<Alert> findByAcknowledgedTrueAndTriggeredAtBefore(LocalDateTime cutoff, Pageable pageable);
 }
@@ -0,0 +1,49 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.dto.AlertTypeCount;
+import com.dementiatracker.model.Alert;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Alert writes that need atomic field updates rather than whole-document saves
+ */
+public interface AlertRepositoryCustom {
+
+    /**
+     * Fold one more event into an existing alert: bump its occurrence count
+     * and move its last-seen time and position. The alert must still be
+     * unacknowledged, or acknowledged by reopenableBy, in which case it is
+     * reopened.
+     *
+     * @return the alert as it was before the update, with only acknowledged
+     *         read, or null if it is closed or gone
+     */
+    Alert recordOccurrence(String alertId, LocalDateTime seenAt, double latitude, double longitude,
+            String reopenableBy);
+
+    /**
+     * Acknowledge one alert if it is still unacknowledged
+     *
+     * @return the acknowledged alert, or null if it is missing or was already acknowledged
+     */
+    Alert acknowledge(String alertId, String acknowledgedBy, LocalDateTime acknowledgedAt);
+
+    /**
+     * Acknowledge one unacknowledged alert of a patient, optionally
+     * restricted to ids and types. Call until it returns null to close
+     * them all, each exactly once however many callers race.
+     *
+     * @return the alert this call acknowledged, with only id, patientId and
+     *         type read, or null if none is left
+     */
+    Alert acknowledgeNext(String patientId, Collection<String> alertIds, Collection<Alert.AlertType> types,
+            String acknowledgedBy, LocalDateTime acknowledgedAt);
+
+    /**
+     * Number of unacknowledged alerts per patient and type
+     */
+    List<AlertTypeCount> countUnacknowledged();
+}
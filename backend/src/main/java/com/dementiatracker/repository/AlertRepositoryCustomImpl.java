@@ -0,0 +1,79 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.dto.AlertTypeCount;
+import com.dementiatracker.model.Alert;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public class AlertRepositoryCustomImpl implements AlertRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public Alert recordOccurrence(String alertId, LocalDateTime seenAt, double latitude, double longitude,
+            String reopenableBy) {
+        Query query = new Query(Criteria.where("id").is(alertId).orOperator(
+                Criteria.where("acknowledged").is(false),
+                Criteria.where("acknowledgedByCaretakerId").is(reopenableBy)));
+        query.fields().include("acknowledged");
+
+        Update update = new Update()
+                .inc("occurrenceCount", 1)
+                .max("lastSeenAt", seenAt)
+                .set("patientLatitude", latitude)
+                .set("patientLongitude", longitude)
+                .set("acknowledged", false)
+                .unset("acknowledgedAt")
+                .unset("acknowledgedByCaretakerId");
+
+        return mongoTemplate.findAndModify(query, update, Alert.class);
+    }
+
+    @Override
+    public Alert acknowledge(String alertId, String acknowledgedBy, LocalDateTime acknowledgedAt) {
+        Query query = new Query(Criteria.where("id").is(alertId).and("acknowledged").is(false));
+        return mongoTemplate.findAndModify(query, acknowledgeUpdate(acknowledgedBy, acknowledgedAt),
+                FindAndModifyOptions.options().returnNew(true), Alert.class);
+    }
+
+    @Override
+    public Alert acknowledgeNext(String patientId, Collection<String> alertIds, Collection<Alert.AlertType> types,
+            String acknowledgedBy, LocalDateTime acknowledgedAt) {
+        Criteria criteria = Criteria.where("patientId").is(patientId).and("acknowledged").is(false);
+        if (alertIds != null && !alertIds.isEmpty()) {
+            criteria.and("id").in(alertIds);
+        }
+        if (types != null && !types.isEmpty()) {
+            criteria.and("type").in(types);
+        }
+        Query query = new Query(criteria);
+        query.fields().include("patientId", "type");
+        return mongoTemplate.findAndModify(query, acknowledgeUpdate(acknowledgedBy, acknowledgedAt), Alert.class);
+    }
+
+    @Override
+    public List<AlertTypeCount> countUnacknowledged() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("acknowledged").is(false)),
+                Aggregation.group("patientId", "type").count().as("count"),
+                Aggregation.project("count", "patientId", "type").andExclude("_id"));
+        return mongoTemplate.aggregate(aggregation, Alert.class, AlertTypeCount.class).getMappedResults();
+    }
+
+    private static Update acknowledgeUpdate(String acknowledgedBy, LocalDateTime acknowledgedAt) {
+        return new Update()
+                .set("acknowledged", true)
+                .set("acknowledgedAt", acknowledgedAt)
+                .set("acknowledgedByCaretakerId", acknowledgedBy);
+    }
+}
@@ -0,0 +1,32 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.model.Location;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Append-only cold storage for data aged out of MongoDB, organised per
+ * patient and day (the calendar date of the fix or alert timestamp, which
+ * is server-local time like every stored LocalDateTime). Appends
+ * must be durable when they return, since the caller deletes the hot copy
+ * next; an append repeated after a crash may store duplicates, which reads
+ * drop.
+ */
+public interface ArchiveStore {
+
+    void appendLocations(List<Location> locations);
+
+    /**
+     * Days with archived fixes for the patient, ascending
+     */
+    List<LocalDate> getLocationDays(String patientId);
+
+    /**
+     * Archived fixes of one patient-day in TIME_ORDER
+     */
+    List<Location> readLocationDay(String patientId, LocalDate day);
+
+    void appendAlerts(List<Alert> alerts);
+}
@@ -0,0 +1,372 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.geo.FixVisitor;
+import com.dementiatracker.model.Location;
+import com.dementiatracker.model.LocationBucket;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Fixes grouped into one document per patient and time window in the
+ * "location_buckets" collection. Appends are a single upsert with $push per
+ * touched bucket, and range reads fetch whole buckets through the
+ * (patientId, bucketStart) index, so index entries and documents scanned
+ * shrink by roughly the number of fixes per window.
+ */
+@Repository
+@Qualifier("hot")
+@ConditionalOnProperty(name = "location.storage.mode", havingValue = "BUCKETED")
+public class BucketedLocationStore implements LocationStore {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${location.storage.bucket-minutes:60}")
+    private long bucketMinutes;
+
+    @Value("${location.storage.bucket-cursor-batch-size:16}")
+    private int cursorBatchSize;
+
+    @Override
+    public List<Location> insert(List<Location> locations) {
+        append(locations, false);
+        return locations;
+    }
+
+    @Override
+    public void save(List<Location> locations) {
+        append(locations, true);
+    }
+
+    /**
+     * Append fixes with one upsert per touched bucket, sent as a single bulk write.
+     * Idempotent appends use $addToSet so a retried fix is not stored twice.
+     */
+    private void append(List<Location> locations, boolean idempotent) {
+        if (locations.isEmpty()) {
+            return;
+        }
+
+        Map<String, Map<LocalDateTime, List<Location>>> byBucket = new LinkedHashMap<>();
+        for (Location location : locations) {
+            if (location.getId() == null) {
+                location.setId(new ObjectId().toHexString());
+            }
+            byBucket.computeIfAbsent(location.getPatientId(), id -> new LinkedHashMap<>())
+                    .computeIfAbsent(bucketStart(location.getTimestamp()), start -> new ArrayList<>())
+                    .add(location);
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LocationBucket.class);
+        byBucket.forEach((patientId, buckets) -> buckets.forEach((start, fixes) -> {
+            Object[] entries = fixes.stream().map(this::toFix).toArray();
+            Update update = new Update()
+                    .min("firstTimestamp", fixes.stream().map(Location::getTimestamp).min(Comparator.naturalOrder()).get())
+                    .max("lastTimestamp", fixes.stream().map(Location::getTimestamp).max(Comparator.naturalOrder()).get());
+            if (idempotent) {
+                update.addToSet("fixes").each(entries);
+            } else {
+                update.push("fixes").each(entries);
+            }
+            bulk.upsert(bucketQuery(patientId, start), update);
+        }));
+        bulk.execute();
+    }
+
+    @Override
+    public Optional<Location> findLatest(String patientId) {
+        Query query = new Query(Criteria.where("patientId").is(patientId))
+                .with(Sort.by(Sort.Direction.DESC, "bucketStart"))
+                .limit(1);
+        return Optional.ofNullable(mongoTemplate.findOne(query, LocationBucket.class))
+                .flatMap(this::newestFix);
+    }
+
+    @Override
+    public List<Location> findLatestPerPatient() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                // Both descending so the (patientId, bucketStart) index is walked backwards instead of sorting
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "patientId", "bucketStart")),
+                Aggregation.group("patientId").first(Aggregation.ROOT).as("latest"),
+                Aggregation.replaceRoot("latest"))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        return mongoTemplate.aggregate(aggregation, LocationBucket.class, LocationBucket.class).getMappedResults()
+                .stream()
+                .map(this::newestFix)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Location> findHistory(String patientId) {
+        List<Location> history = new ArrayList<>();
+        scan(historyQuery(patientId, null), true, location -> true, history::add);
+        return history;
+    }
+
+    @Override
+    public List<Location> findRange(String patientId, LocalDateTime start, LocalDateTime end) {
+        List<Location> range = new ArrayList<>();
+        scan(rangeQuery(patientId, start, end, null), false, inRange(start, end), range::add);
+        return range;
+    }
+
+    @Override
+    public List<Location> findHistoryPage(String patientId, LocalDateTime afterTimestamp, String afterId, int limit) {
+        List<Location> page = new ArrayList<>();
+        scan(historyQuery(patientId, afterTimestamp), true, after(afterTimestamp, afterId, true),
+                location -> page.add(location) && page.size() < limit);
+        return page;
+    }
+
+    @Override
+    public List<Location> findRangePage(String patientId, LocalDateTime start, LocalDateTime end,
+            LocalDateTime afterTimestamp, String afterId, int limit) {
+        List<Location> page = new ArrayList<>();
+        scan(rangeQuery(patientId, start, end, afterTimestamp), false,
+                inRange(start, end).and(after(afterTimestamp, afterId, false)),
+                location -> page.add(location) && page.size() < limit);
+        return page;
+    }
+
+    @Override
+    public void streamHistory(String patientId, Consumer<Location> consumer) {
+        scan(historyQuery(patientId, null), true, location -> true, location -> {
+            consumer.accept(location);
+            return true;
+        });
+    }
+
+    @Override
+    public void streamRange(String patientId, LocalDateTime start, LocalDateTime end, Consumer<Location> consumer) {
+        scan(rangeQuery(patientId, start, end, null), false, inRange(start, end), location -> {
+            consumer.accept(location);
+            return true;
+        });
+    }
+
+    @Override
+    public void visitHistory(String patientId, FixVisitor visitor) {
+        visit(historyQuery(patientId, null), true, null, null, visitor);
+    }
+
+    @Override
+    public void visitRange(String patientId, LocalDateTime start, LocalDateTime end, FixVisitor visitor) {
+        visit(rangeQuery(patientId, start, end, null), false, start, end, visitor);
+    }
+
+    @Override
+    public List<Location> findOlderThan(LocalDateTime cutoff, int limit) {
+        Query query = new Query(Criteria.where("bucketStart").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "bucketStart"));
+
+        List<Location> older = new ArrayList<>();
+        scan(query, false, location -> location.getTimestamp().isBefore(cutoff),
+                location -> older.add(location) && older.size() < limit);
+        return older;
+    }
+
+    /**
+     * Pull the fixes out of their buckets, then drop buckets left empty
+     */
+    @Override
+    public void delete(List<Location> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+
+        Map<String, Map<LocalDateTime, List<String>>> byBucket = new LinkedHashMap<>();
+        for (Location location : locations) {
+            byBucket.computeIfAbsent(location.getPatientId(), id -> new LinkedHashMap<>())
+                    .computeIfAbsent(bucketStart(location.getTimestamp()), start -> new ArrayList<>())
+                    .add(location.getId());
+        }
+
+        // Ordered, so each bucket is checked for emptiness after its pull
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, LocationBucket.class);
+        byBucket.forEach((patientId, buckets) -> buckets.forEach((start, ids) -> {
+            bulk.updateOne(bucketQuery(patientId, start),
+                    new Update().pull("fixes", Query.query(Criteria.where("_id").in(storedIds(ids)))));
+            bulk.remove(bucketQuery(patientId, start).addCriteria(Criteria.where("fixes").size(0)));
+        }));
+        bulk.execute();
+    }
+
+    // Fix ids are written as ObjectIds, like document ids, but pull conditions are not mapped
+    private static List<Object> storedIds(List<String> ids) {
+        return ids.stream()
+                .map(id -> ObjectId.isValid(id) ? new ObjectId(id) : id)
+                .collect(Collectors.toList());
+    }
+
+    private Query historyQuery(String patientId, LocalDateTime afterTimestamp) {
+        Criteria criteria = Criteria.where("patientId").is(patientId);
+        if (afterTimestamp != null) {
+            criteria.and("bucketStart").lte(bucketStart(afterTimestamp));
+        }
+        return new Query(criteria).with(Sort.by(Sort.Direction.DESC, "bucketStart"));
+    }
+
+    private Query rangeQuery(String patientId, LocalDateTime start, LocalDateTime end, LocalDateTime afterTimestamp) {
+        LocalDateTime from = afterTimestamp != null && afterTimestamp.isAfter(start) ? afterTimestamp : start;
+        Criteria criteria = Criteria.where("patientId").is(patientId)
+                .and("bucketStart").gte(bucketStart(from)).lt(end);
+        return new Query(criteria).with(Sort.by(Sort.Direction.ASC, "bucketStart"));
+    }
+
+    /**
+     * Walk the matching buckets one at a time from a database cursor, handing
+     * their fixes to the sink in (timestamp, id) order until it returns false.
+     * Only one bucket is held in memory at a time.
+     */
+    private void scan(Query bucketQuery, boolean descending, Predicate<Location> filter, Predicate<Location> sink) {
+        Comparator<Location> order = TIME_ORDER;
+        if (descending) {
+            order = order.reversed();
+        }
+
+        bucketQuery.cursorBatchSize(cursorBatchSize);
+        try (CloseableIterator<LocationBucket> cursor = mongoTemplate.stream(bucketQuery, LocationBucket.class)) {
+            while (cursor.hasNext()) {
+                List<Location> fixes = toLocations(cursor.next()).stream()
+                        .filter(filter)
+                        .sorted(order)
+                        .collect(Collectors.toList());
+                for (Location fix : fixes) {
+                    if (!sink.test(fix)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Walk raw bucket documents with only the fixes' coordinates and
+     * timestamps, keeping fixes strictly between start and end (null for no
+     * bound). Fixes are appended in arrival order, so a bucket is re-sorted
+     * only when a late fix left it out of order.
+     */
+    private void visit(Query bucketQuery, boolean descending, LocalDateTime start, LocalDateTime end,
+            FixVisitor visitor) {
+        bucketQuery.fields().include("fixes.latitude", "fixes.longitude", "fixes.timestamp");
+        bucketQuery.cursorBatchSize(cursorBatchSize);
+        String collection = mongoTemplate.getCollectionName(LocationBucket.class);
+        ZoneId zone = ZoneId.systemDefault();
+        long from = start == null ? Long.MIN_VALUE : FixVisitor.toTime(start);
+        long to = end == null ? Long.MAX_VALUE : FixVisitor.toTime(end);
+
+        try (CloseableIterator<Document> cursor = mongoTemplate.stream(bucketQuery, Document.class, collection)) {
+            while (cursor.hasNext()) {
+                List<Document> fixes = cursor.next().getList("fixes", Document.class);
+                int n = fixes.size();
+                double[] latitudes = new double[n];
+                double[] longitudes = new double[n];
+                long[] times = new long[n];
+                boolean sorted = true;
+                for (int i = 0; i < n; i++) {
+                    Document fix = fixes.get(i);
+                    latitudes[i] = fix.getDouble("latitude");
+                    longitudes[i] = fix.getDouble("longitude");
+                    times[i] = FixVisitor.toTime(LocalDateTime.ofInstant(fix.getDate("timestamp").toInstant(), zone));
+                    sorted &= i == 0 || times[i - 1] <= times[i];
+                }
+
+                int[] order = null;
+                if (!sorted) {
+                    order = IntStream.range(0, n).boxed()
+                            .sorted(Comparator.comparingLong(i -> times[i]))
+                            .mapToInt(Integer::intValue)
+                            .toArray();
+                }
+                for (int k = 0; k < n; k++) {
+                    int position = descending ? n - 1 - k : k;
+                    int i = order == null ? position : order[position];
+                    if (times[i] > from && times[i] < to) {
+                        visitor.visit(latitudes[i], longitudes[i], times[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Predicate<Location> inRange(LocalDateTime start, LocalDateTime end) {
+        return location -> location.getTimestamp().isAfter(start) && location.getTimestamp().isBefore(end);
+    }
+
+    /**
+     * Fixes strictly past the cursor (afterTimestamp, afterId) in the scan direction
+     */
+    private static Predicate<Location> after(LocalDateTime afterTimestamp, String afterId, boolean descending) {
+        if (afterTimestamp == null) {
+            return location -> true;
+        }
+        Location cursor = new Location();
+        cursor.setTimestamp(afterTimestamp);
+        cursor.setId(afterId);
+        return location -> {
+            int comparison = TIME_ORDER.compare(location, cursor);
+            return descending ? comparison < 0 : comparison > 0;
+        };
+    }
+
+    /**
+     * Start of the window containing the timestamp
+     */
+    public LocalDateTime bucketStart(LocalDateTime timestamp) {
+        long windowSeconds = bucketMinutes * 60;
+        long epochSecond = timestamp.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochSecond, windowSeconds) * windowSeconds, 0,
+                ZoneOffset.UTC);
+    }
+
+    private Query bucketQuery(String patientId, LocalDateTime start) {
+        return new Query(Criteria.where("patientId").is(patientId).and("bucketStart").is(start));
+    }
+
+    private Optional<Location> newestFix(LocationBucket bucket) {
+        return toLocations(bucket).stream().max(Comparator.comparing(Location::getTimestamp));
+    }
+
+    private List<Location> toLocations(LocationBucket bucket) {
+        return bucket.getFixes().stream()
+                .map(fix -> new Location(fix.getId(), bucket.getPatientId(), fix.getLatitude(), fix.getLongitude(),
+                        fix.getAccuracy(), fix.getTimestamp(), fix.getSource(), fix.getDeviceId()))
+                .collect(Collectors.toList());
+    }
+
+    private LocationBucket.Fix toFix(Location location) {
+        return new LocationBucket.Fix(location.getId(), location.getLatitude(), location.getLongitude(),
+                location.getAccuracy(), location.getTimestamp(), location.getSource(), location.getDeviceId());
+    }
+}
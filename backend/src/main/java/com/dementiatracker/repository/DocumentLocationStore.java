@@ -0,0 +1,183 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.geo.FixVisitor;
+import com.dementiatracker.model.Location;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * One document per fix in the "locations" collection
+ */
+@Repository
+@Qualifier("hot")
+@ConditionalOnProperty(name = "location.storage.mode", havingValue = "DOCUMENT", matchIfMissing = true)
+public class DocumentLocationStore implements LocationStore {
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${location.history.cursor-batch-size:500}")
+    private int cursorBatchSize;
+
+    @Override
+    public List<Location> insert(List<Location> locations) {
+        return locationRepository.insert(locations);
+    }
+
+    @Override
+    public void save(List<Location> locations) {
+        locationRepository.saveAll(locations);
+    }
+
+    @Override
+    public Optional<Location> findLatest(String patientId) {
+        return locationRepository.findFirstByPatientIdOrderByTimestampDesc(patientId);
+    }
+
+    @Override
+    public List<Location> findLatestPerPatient() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                // Both descending so the patient_time index is walked backwards instead of sorting
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "patientId", "timestamp")),
+                Aggregation.group("patientId").first(Aggregation.ROOT).as("latest"),
+                Aggregation.replaceRoot("latest"))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        return mongoTemplate.aggregate(aggregation, Location.class, Location.class).getMappedResults();
+    }
+
+    @Override
+    public List<Location> findHistory(String patientId) {
+        return locationRepository.findByPatientIdOrderByTimestampDesc(patientId);
+    }
+
+    @Override
+    public List<Location> findRange(String patientId, LocalDateTime start, LocalDateTime end) {
+        return locationRepository.findByPatientIdAndTimestampBetween(patientId, start, end).stream()
+                .sorted(Comparator.comparing(Location::getTimestamp))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Location> findHistoryPage(String patientId, LocalDateTime afterTimestamp, String afterId, int limit) {
+        Criteria criteria = Criteria.where("patientId").is(patientId);
+        return mongoTemplate.find(keysetQuery(criteria, afterTimestamp, afterId, Sort.Direction.DESC).limit(limit),
+                Location.class);
+    }
+
+    @Override
+    public List<Location> findRangePage(String patientId, LocalDateTime start, LocalDateTime end,
+            LocalDateTime afterTimestamp, String afterId, int limit) {
+        Criteria criteria = Criteria.where("patientId").is(patientId).and("timestamp").gt(start).lt(end);
+        return mongoTemplate.find(keysetQuery(criteria, afterTimestamp, afterId, Sort.Direction.ASC).limit(limit),
+                Location.class);
+    }
+
+    @Override
+    public void streamHistory(String patientId, Consumer<Location> consumer) {
+        Criteria criteria = Criteria.where("patientId").is(patientId);
+        stream(keysetQuery(criteria, null, null, Sort.Direction.DESC), consumer);
+    }
+
+    @Override
+    public void streamRange(String patientId, LocalDateTime start, LocalDateTime end, Consumer<Location> consumer) {
+        Criteria criteria = Criteria.where("patientId").is(patientId).and("timestamp").gt(start).lt(end);
+        stream(keysetQuery(criteria, null, null, Sort.Direction.ASC), consumer);
+    }
+
+    @Override
+    public void visitHistory(String patientId, FixVisitor visitor) {
+        Criteria criteria = Criteria.where("patientId").is(patientId);
+        visit(new Query(criteria).with(Sort.by(Sort.Direction.DESC, "timestamp", "_id")), visitor);
+    }
+
+    @Override
+    public void visitRange(String patientId, LocalDateTime start, LocalDateTime end, FixVisitor visitor) {
+        Criteria criteria = Criteria.where("patientId").is(patientId).and("timestamp").gt(start).lt(end);
+        visit(new Query(criteria).with(Sort.by(Sort.Direction.ASC, "timestamp", "_id")), visitor);
+    }
+
+    @Override
+    public List<Location> findOlderThan(LocalDateTime cutoff, int limit) {
+        Query query = new Query(Criteria.where("timestamp").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp"))
+                .limit(limit);
+        return mongoTemplate.find(query, Location.class);
+    }
+
+    @Override
+    public void delete(List<Location> locations) {
+        List<String> ids = locations.stream().map(Location::getId).collect(Collectors.toList());
+        mongoTemplate.remove(new Query(Criteria.where("id").in(ids)), Location.class);
+    }
+
+    /**
+     * Order by (timestamp, id) and, when a cursor is given, keep only fixes past it.
+     * The id tiebreak keeps pages stable when several fixes share a timestamp.
+     */
+    private Query keysetQuery(Criteria criteria, LocalDateTime afterTimestamp, String afterId,
+            Sort.Direction direction) {
+        if (afterTimestamp != null) {
+            boolean descending = direction == Sort.Direction.DESC;
+            // Range conditions on id are not mapped, and an ObjectId never compares to a string
+            Object storedId = ObjectId.isValid(afterId) ? new ObjectId(afterId) : afterId;
+            Criteria beyond = descending
+                    ? Criteria.where("timestamp").lt(afterTimestamp)
+                    : Criteria.where("timestamp").gt(afterTimestamp);
+            Criteria tie = descending
+                    ? Criteria.where("timestamp").is(afterTimestamp).and("id").lt(storedId)
+                    : Criteria.where("timestamp").is(afterTimestamp).and("id").gt(storedId);
+            criteria.orOperator(beyond, tie);
+        }
+        return new Query(criteria).with(Sort.by(direction, "timestamp", "id"));
+    }
+
+    private void stream(Query query, Consumer<Location> consumer) {
+        query.cursorBatchSize(cursorBatchSize);
+        try (CloseableIterator<Location> cursor = mongoTemplate.stream(query, Location.class)) {
+            cursor.forEachRemaining(consumer);
+        }
+    }
+
+    /**
+     * Read raw documents with only the coordinate and timestamp fields. Stored
+     * dates are converted back the way the mapping layer writes LocalDateTime
+     * (system zone), so times match the JSON history.
+     */
+    private void visit(Query query, FixVisitor visitor) {
+        query.fields().include("latitude", "longitude", "timestamp");
+        query.cursorBatchSize(cursorBatchSize);
+        String collection = mongoTemplate.getCollectionName(Location.class);
+        ZoneId zone = ZoneId.systemDefault();
+        try (CloseableIterator<Document> cursor = mongoTemplate.stream(query, Document.class, collection)) {
+            while (cursor.hasNext()) {
+                Document fix = cursor.next();
+                LocalDateTime timestamp = LocalDateTime.ofInstant(fix.getDate("timestamp").toInstant(), zone);
+                visitor.visit(fix.getDouble("latitude"), fix.getDouble("longitude"), FixVisitor.toTime(timestamp));
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.model.Location;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Archive on local disk: one gzip-compressed NDJSON file per patient-day,
+ * e.g. locations/{patientId}/2024-05-01.ndjson.gz. Every append adds a new
+ * gzip member to the end of the file and syncs it; readers decompress the
+ * concatenated members as one stream. A member cut short by a crash is
+ * skipped with a warning; the next append to that file rewrites it from
+ * the readable records first, and the sweep archives the lost records
+ * again since their hot copies were never deleted. A file's tail is only
+ * checked the first time this process appends to it and after a failed
+ * append; files appended cleanly since are trusted.
+ */
+@Repository
+@Slf4j
+@ConditionalOnProperty(name = "retention.archive.store", havingValue = "FILE", matchIfMissing = true)
+public class FileArchiveStore implements ArchiveStore {
+
+    private static final String SUFFIX = ".ndjson.gz";
+
+    private static final int MAX_VERIFIED_FILES = 1024;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${retention.archive.directory:archive}")
+    private String directory;
+
+    // Files whose last append completed in this process, most recently appended last
+    private final Set<Path> verified = Collections.newSetFromMap(new LinkedHashMap<Path, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Boolean> eldest) {
+            return size() > MAX_VERIFIED_FILES;
+        }
+    });
+
+    @Override
+    public synchronized void appendLocations(List<Location> locations) {
+        append("locations", locations, Location::getPatientId, location -> location.getTimestamp().toLocalDate());
+    }
+
+    @Override
+    public synchronized void appendAlerts(List<Alert> alerts) {
+        append("alerts", alerts, Alert::getPatientId, alert -> alert.getTriggeredAt().toLocalDate());
+    }
+
+    @Override
+    public List<LocalDate> getLocationDays(String patientId) {
+        Path dir = patientDir("locations", patientId);
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> parseDay(name.substring(0, name.length() - SUFFIX.length())))
+                    .filter(day -> day != null)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public List<Location> readLocationDay(String patientId, LocalDate day) {
+        Path file = patientDir("locations", patientId).resolve(day + SUFFIX);
+        if (!Files.exists(file)) {
+            return Collections.emptyList();
+        }
+
+        // Keyed by id so records appended twice (crash between archive and delete) appear once
+        Map<String, Location> locations = new LinkedHashMap<>();
+        try {
+            for (String line : readLines(file).lines) {
+                Location location = objectMapper.readValue(line, Location.class);
+                locations.put(location.getId(), location);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<Location> sorted = new ArrayList<>(locations.values());
+        sorted.sort(LocationStore.TIME_ORDER);
+        return sorted;
+    }
+
+    private <T> void append(String kind, List<T> records, Function<T, String> patientOf,
+            Function<T, LocalDate> dayOf) {
+        Map<Path, List<T>> byFile = new LinkedHashMap<>();
+        for (T record : records) {
+            Path file = patientDir(kind, patientOf.apply(record)).resolve(dayOf.apply(record) + SUFFIX);
+            byFile.computeIfAbsent(file, f -> new ArrayList<>()).add(record);
+        }
+
+        try {
+            for (Map.Entry<Path, List<T>> entry : byFile.entrySet()) {
+                Path file = entry.getKey();
+                Files.createDirectories(file.getParent());
+                if (!verified.contains(file)) {
+                    repairIfTruncated(file);
+                }
+                verified.remove(file);
+                try (FileOutputStream fileOut = new FileOutputStream(file.toFile(), true)) {
+                    GZIPOutputStream gzip = new GZIPOutputStream(fileOut, 64 * 1024);
+                    writeLines(gzip, entry.getValue());
+                    gzip.finish();
+                    gzip.flush();
+                    fileOut.getFD().sync();
+                }
+                verified.add(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decompress a file line by line, stopping at a truncated or corrupt tail
+     */
+    private ArchiveLines readLines(Path file) throws IOException {
+        ArchiveLines result = new ArchiveLines();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.lines.add(line);
+            }
+        } catch (EOFException | ZipException e) {
+            log.warn("Archive file {} ends with a truncated append, read {} records", file, result.lines.size());
+            result.complete = false;
+        }
+        return result;
+    }
+
+    /**
+     * A new member appended after a cut-short one would be unreadable, so a
+     * damaged file is first rewritten from its readable records
+     */
+    private void repairIfTruncated(Path file) throws IOException {
+        if (!Files.exists(file) || isComplete(file)) {
+            return;
+        }
+        ArchiveLines existing = readLines(file);
+
+        Path repaired = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(repaired.toFile())) {
+            GZIPOutputStream gzip = new GZIPOutputStream(fileOut, 64 * 1024);
+            for (String line : existing.lines) {
+                gzip.write(line.getBytes(StandardCharsets.UTF_8));
+                gzip.write('\n');
+            }
+            gzip.finish();
+            gzip.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(repaired, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Repaired archive file {} with {} records", file, existing.lines.size());
+    }
+
+    /**
+     * Decompress a file without keeping its contents, to check its last member
+     */
+    private boolean isComplete(Path file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            while (in.read(buffer) >= 0) {
+                // Discard
+            }
+            return true;
+        } catch (EOFException | ZipException e) {
+            return false;
+        }
+    }
+
+    private <T> void writeLines(OutputStream out, List<T> records) throws IOException {
+        for (T record : records) {
+            out.write(objectMapper.writeValueAsBytes(record));
+            out.write('\n');
+        }
+    }
+
+    private Path patientDir(String kind, String patientId) {
+        // Patient ids are ObjectId hex; anything else is made safe for a file name
+        return Paths.get(directory, kind, patientId.replaceAll("[^A-Za-z0-9_-]", "_"));
+    }
+
+    private static LocalDate parseDay(String name) {
+        try {
+            return LocalDate.parse(name);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static class ArchiveLines {
+
+        private final List<String> lines = new ArrayList<>();
+
+        private boolean complete = true;
+    }
+}
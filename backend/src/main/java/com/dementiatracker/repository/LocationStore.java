@@ -0,0 +1,96 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.geo.FixVisitor;
+import com.dementiatracker.model.Location;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Persistence for location fixes. The layout is selected with
+ * location.storage.mode: DOCUMENT stores one document per fix in
+ * "locations", BUCKETED appends fixes to per-patient time-window documents
+ * in "location_buckets". With retention enabled, TieredLocationStore wraps
+ * the selected layout (qualified "hot") and adds archived fixes to reads.
+ */
+public interface LocationStore {
+
+    /**
+     * Order of history reads: by timestamp, then id. Ids are ObjectId hex
+     * strings, which sort like the ObjectIds themselves.
+     */
+    Comparator<Location> TIME_ORDER = Comparator.comparing(Location::getTimestamp).thenComparing(Location::getId);
+
+    /**
+     * Store new fixes (any patients, any order). Ids are assigned when missing.
+     */
+    List<Location> insert(List<Location> locations);
+
+    /**
+     * Store fixes that may already be partly stored, without creating duplicates
+     */
+    void save(List<Location> locations);
+
+    Optional<Location> findLatest(String patientId);
+
+    /**
+     * Newest fix of every patient, used to warm in-memory state at startup
+     */
+    List<Location> findLatestPerPatient();
+
+    /**
+     * Full history of a patient, newest first
+     */
+    List<Location> findHistory(String patientId);
+
+    /**
+     * Fixes strictly between start and end, oldest first
+     */
+    List<Location> findRange(String patientId, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Up to limit fixes of a patient's history, newest first, continuing after
+     * the fix identified by (afterTimestamp, afterId). Pass nulls for the first page.
+     */
+    List<Location> findHistoryPage(String patientId, LocalDateTime afterTimestamp, String afterId, int limit);
+
+    /**
+     * Up to limit fixes strictly between start and end, oldest first, continuing
+     * after the fix identified by (afterTimestamp, afterId). Pass nulls for the first page.
+     */
+    List<Location> findRangePage(String patientId, LocalDateTime start, LocalDateTime end,
+            LocalDateTime afterTimestamp, String afterId, int limit);
+
+    /**
+     * Feed a patient's history to the consumer, newest first, straight from a database cursor
+     */
+    void streamHistory(String patientId, Consumer<Location> consumer);
+
+    /**
+     * Feed fixes strictly between start and end to the consumer, oldest first, straight from a database cursor
+     */
+    void streamRange(String patientId, LocalDateTime start, LocalDateTime end, Consumer<Location> consumer);
+
+    /**
+     * Like streamHistory, but reads only coordinates and timestamps and maps no Location objects
+     */
+    void visitHistory(String patientId, FixVisitor visitor);
+
+    /**
+     * Like streamRange, but reads only coordinates and timestamps and maps no Location objects
+     */
+    void visitRange(String patientId, LocalDateTime start, LocalDateTime end, FixVisitor visitor);
+
+    /**
+     * Up to limit of the oldest fixes (any patient) with a timestamp before cutoff, oldest first
+     */
+    List<Location> findOlderThan(LocalDateTime cutoff, int limit);
+
+    /**
+     * Remove stored fixes by id
+     */
+    void delete(List<Location> locations);
+}
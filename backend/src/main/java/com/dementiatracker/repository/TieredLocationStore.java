@@ -0,0 +1,349 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.geo.FixVisitor;
+import com.dementiatracker.model.Location;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Hot MongoDB storage plus the archive, read as one history. Writes and
+ * retention queries go to the hot store. Reads touching days that have
+ * archive files merge both sources in TIME_ORDER: archived days are read
+ * one file at a time and hot fixes are paged by keyset, so memory stays
+ * bounded. Reads with no archived day in range go straight to the hot store.
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "retention.enabled", havingValue = "true")
+public class TieredLocationStore implements LocationStore {
+
+    @Autowired
+    @Qualifier("hot")
+    private LocationStore hot;
+
+    @Autowired
+    private ArchiveStore archive;
+
+    @Value("${retention.merge-page-size:500}")
+    private int pageSize;
+
+    @Override
+    public List<Location> insert(List<Location> locations) {
+        return hot.insert(locations);
+    }
+
+    @Override
+    public void save(List<Location> locations) {
+        hot.save(locations);
+    }
+
+    @Override
+    public Optional<Location> findLatest(String patientId) {
+        Optional<Location> latest = hot.findLatest(patientId);
+        if (latest.isPresent()) {
+            return latest;
+        }
+        List<LocalDate> days = archive.getLocationDays(patientId);
+        if (days.isEmpty()) {
+            return Optional.empty();
+        }
+        List<Location> lastDay = archive.readLocationDay(patientId, days.get(days.size() - 1));
+        return lastDay.isEmpty() ? Optional.empty() : Optional.of(lastDay.get(lastDay.size() - 1));
+    }
+
+    @Override
+    public List<Location> findLatestPerPatient() {
+        return hot.findLatestPerPatient();
+    }
+
+    @Override
+    public List<Location> findHistory(String patientId) {
+        List<LocalDate> days = archivedDays(patientId, null, null, null, true);
+        if (days.isEmpty()) {
+            return hot.findHistory(patientId);
+        }
+        return collect(history(patientId, days, null), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Location> findRange(String patientId, LocalDateTime start, LocalDateTime end) {
+        List<LocalDate> days = archivedDays(patientId, start, end, null, false);
+        if (days.isEmpty()) {
+            return hot.findRange(patientId, start, end);
+        }
+        return collect(range(patientId, start, end, days, null), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Location> findHistoryPage(String patientId, LocalDateTime afterTimestamp, String afterId, int limit) {
+        Location after = cursor(afterTimestamp, afterId);
+        List<LocalDate> days = archivedDays(patientId, null, null, after, true);
+        if (days.isEmpty()) {
+            return hot.findHistoryPage(patientId, afterTimestamp, afterId, limit);
+        }
+        return collect(history(patientId, days, after), limit);
+    }
+
+    @Override
+    public List<Location> findRangePage(String patientId, LocalDateTime start, LocalDateTime end,
+            LocalDateTime afterTimestamp, String afterId, int limit) {
+        Location after = cursor(afterTimestamp, afterId);
+        List<LocalDate> days = archivedDays(patientId, start, end, after, false);
+        if (days.isEmpty()) {
+            return hot.findRangePage(patientId, start, end, afterTimestamp, afterId, limit);
+        }
+        return collect(range(patientId, start, end, days, after), limit);
+    }
+
+    @Override
+    public void streamHistory(String patientId, Consumer<Location> consumer) {
+        List<LocalDate> days = archivedDays(patientId, null, null, null, true);
+        if (days.isEmpty()) {
+            hot.streamHistory(patientId, consumer);
+            return;
+        }
+        history(patientId, days, null).forEachRemaining(consumer);
+    }
+
+    @Override
+    public void streamRange(String patientId, LocalDateTime start, LocalDateTime end, Consumer<Location> consumer) {
+        List<LocalDate> days = archivedDays(patientId, start, end, null, false);
+        if (days.isEmpty()) {
+            hot.streamRange(patientId, start, end, consumer);
+            return;
+        }
+        range(patientId, start, end, days, null).forEachRemaining(consumer);
+    }
+
+    @Override
+    public void visitHistory(String patientId, FixVisitor visitor) {
+        List<LocalDate> days = archivedDays(patientId, null, null, null, true);
+        if (days.isEmpty()) {
+            hot.visitHistory(patientId, visitor);
+            return;
+        }
+        history(patientId, days, null).forEachRemaining(location -> visit(location, visitor));
+    }
+
+    @Override
+    public void visitRange(String patientId, LocalDateTime start, LocalDateTime end, FixVisitor visitor) {
+        List<LocalDate> days = archivedDays(patientId, start, end, null, false);
+        if (days.isEmpty()) {
+            hot.visitRange(patientId, start, end, visitor);
+            return;
+        }
+        range(patientId, start, end, days, null).forEachRemaining(location -> visit(location, visitor));
+    }
+
+    @Override
+    public List<Location> findOlderThan(LocalDateTime cutoff, int limit) {
+        return hot.findOlderThan(cutoff, limit);
+    }
+
+    @Override
+    public void delete(List<Location> locations) {
+        hot.delete(locations);
+    }
+
+    /**
+     * Newest first: hot pages and archived days (newest day first), past the cursor if given
+     */
+    private Iterator<Location> history(String patientId, List<LocalDate> days, Location after) {
+        Comparator<Location> order = TIME_ORDER.reversed();
+        Iterator<Location> hotFixes = new PageIterator(after, last -> hot.findHistoryPage(patientId,
+                last == null ? null : last.getTimestamp(), last == null ? null : last.getId(), pageSize));
+        Iterator<Location> archivedFixes = archived(patientId, days, location ->
+                after == null || order.compare(location, after) > 0, true);
+        return new MergeIterator(hotFixes, archivedFixes, order);
+    }
+
+    /**
+     * Oldest first: hot pages and archived days strictly between start and end, past the cursor if given
+     */
+    private Iterator<Location> range(String patientId, LocalDateTime start, LocalDateTime end, List<LocalDate> days,
+            Location after) {
+        Iterator<Location> hotFixes = new PageIterator(after, last -> hot.findRangePage(patientId, start, end,
+                last == null ? null : last.getTimestamp(), last == null ? null : last.getId(), pageSize));
+        Iterator<Location> archivedFixes = archived(patientId, days, location ->
+                location.getTimestamp().isAfter(start) && location.getTimestamp().isBefore(end)
+                        && (after == null || TIME_ORDER.compare(location, after) > 0), false);
+        return new MergeIterator(hotFixes, archivedFixes, TIME_ORDER);
+    }
+
+    /**
+     * Archived fixes of the given days, loading one day file at a time
+     */
+    private Iterator<Location> archived(String patientId, List<LocalDate> days,
+            Predicate<Location> filter, boolean descending) {
+        return days.stream()
+                .flatMap(day -> {
+                    List<Location> fixes = archive.readLocationDay(patientId, day).stream()
+                            .filter(filter)
+                            .collect(Collectors.toList());
+                    if (descending) {
+                        Collections.reverse(fixes);
+                    }
+                    return fixes.stream();
+                })
+                .iterator();
+    }
+
+    /**
+     * Archived days overlapping the range and not before the cursor, in read order
+     */
+    private List<LocalDate> archivedDays(String patientId, LocalDateTime start, LocalDateTime end, Location after,
+            boolean descending) {
+        List<LocalDate> days = archive.getLocationDays(patientId).stream()
+                .filter(day -> start == null || !day.isBefore(start.toLocalDate()))
+                .filter(day -> end == null || !day.isAfter(end.toLocalDate()))
+                .filter(day -> after == null || (descending
+                        ? !day.isAfter(after.getTimestamp().toLocalDate())
+                        : !day.isBefore(after.getTimestamp().toLocalDate())))
+                .collect(Collectors.toList());
+        if (descending) {
+            Collections.reverse(days);
+        }
+        return days;
+    }
+
+    private static Location cursor(LocalDateTime afterTimestamp, String afterId) {
+        if (afterTimestamp == null) {
+            return null;
+        }
+        Location cursor = new Location();
+        cursor.setTimestamp(afterTimestamp);
+        cursor.setId(afterId);
+        return cursor;
+    }
+
+    private static List<Location> collect(Iterator<Location> fixes, int limit) {
+        List<Location> result = new ArrayList<>();
+        while (result.size() < limit && fixes.hasNext()) {
+            result.add(fixes.next());
+        }
+        return result;
+    }
+
+    private static void visit(Location location, FixVisitor visitor) {
+        visitor.visit(location.getLatitude(), location.getLongitude(), FixVisitor.toTime(location.getTimestamp()));
+    }
+
+    /**
+     * Walks a keyset-paged query, fetching the next page after the last fix returned
+     */
+    private class PageIterator implements Iterator<Location> {
+
+        private final Function<Location, List<Location>> fetch;
+
+        private Location last;
+
+        private List<Location> page = Collections.emptyList();
+
+        private int index;
+
+        private boolean exhausted;
+
+        PageIterator(Location after, Function<Location, List<Location>> fetch) {
+            this.last = after;
+            this.fetch = fetch;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < page.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            page = fetch.apply(last);
+            index = 0;
+            exhausted = page.size() < pageSize;
+            return !page.isEmpty();
+        }
+
+        @Override
+        public Location next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = page.get(index++);
+            return last;
+        }
+    }
+
+    /**
+     * Merges two iterators sorted in the same order. A fix present in both
+     * (archived, but the hot copy not yet deleted) is returned once.
+     */
+    private static class MergeIterator implements Iterator<Location> {
+
+        private final Iterator<Location> first;
+
+        private final Iterator<Location> second;
+
+        private final Comparator<Location> order;
+
+        private Location nextFirst;
+
+        private Location nextSecond;
+
+        private Location previous;
+
+        MergeIterator(Iterator<Location> first, Iterator<Location> second, Comparator<Location> order) {
+            this.first = first;
+            this.second = second;
+            this.order = order;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextFirst == null && first.hasNext()) {
+                nextFirst = first.next();
+            }
+            if (nextSecond == null && second.hasNext()) {
+                nextSecond = second.next();
+            }
+            while (previous != null && nextFirst != null && order.compare(nextFirst, previous) == 0) {
+                nextFirst = first.hasNext() ? first.next() : null;
+            }
+            while (previous != null && nextSecond != null && order.compare(nextSecond, previous) == 0) {
+                nextSecond = second.hasNext() ? second.next() : null;
+            }
+            return nextFirst != null || nextSecond != null;
+        }
+
+        @Override
+        public Location next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextSecond == null || (nextFirst != null && order.compare(nextFirst, nextSecond) <= 0)) {
+                previous = nextFirst;
+                nextFirst = null;
+            } else {
+                previous = nextSecond;
+                nextSecond = null;
+            }
+            return previous;
+        }
+    }
+}
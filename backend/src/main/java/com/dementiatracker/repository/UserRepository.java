@@ -2,8 +2,10 @@ package com.dementiatracker.repository;
 
 import com.dementiatracker.model.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,4 +19,14 @@ public interface UserRepository extends MongoRepository<User, String> {
     boolean existsByUsername(String username);
 
     boolean existsByEmail(String email);
+
+    // Caretaker link index rebuild: linked patients with only their link fields
+    @Query(value = "{ 'role': 'PATIENT', '$or': [ { 'linkedCaretakerIds.0': { '$exists': true } }, { 'secondaryCaretakerIds.0': { '$exists': true } } ] }",
+            fields = "{ 'patientId': 1, 'linkedCaretakerIds': 1, 'secondaryCaretakerIds': 1 }")
+    List<User> findPatientLinks();
+
+    // Inactivity monitor startup: patients with their own threshold or quiet hours
+    @Query(value = "{ 'role': 'PATIENT', '$or': [ { 'inactivityThresholdMinutes': { '$ne': null } }, { 'quietHoursStart': { '$ne': null } } ] }",
+            fields = "{ 'patientId': 1, 'inactivityThresholdMinutes': 1, 'quietHoursStart': 1, 'quietHoursEnd': 1 }")
+    List<User> findInactivitySettings();
 }
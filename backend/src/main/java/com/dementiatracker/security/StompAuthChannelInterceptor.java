@@ -0,0 +1,51 @@
+package com.dementiatracker.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+
+/**
+ * Authenticates STOMP sessions from the JWT sent in the CONNECT frame's
+ * Authorization header. The session principal is named by the user ID, so
+ * /user destinations address users by ID. Sessions without a valid token
+ * stay anonymous and only receive topic messages.
+ */
+@Component
+@Slf4j
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        String authorizationHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
+            String jwt = authorizationHeader.substring(7);
+            try {
+                String userId = jwtUtil.extractUserId(jwt);
+                String role = jwtUtil.extractRole(jwt);
+                accessor.setUser(new UsernamePasswordAuthenticationToken(userId, null,
+                        Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role))));
+            } catch (Exception e) {
+                log.warn("Rejected STOMP token: {}", e.getMessage());
+            }
+        }
+        return message;
+    }
+}
@@ -0,0 +1,220 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.repository.AlertRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory registry of the open alert per patient and alert type. An event
+ * arriving within window-seconds of the last event folded into the open
+ * alert bumps that alert's occurrence count and last-seen position instead
+ * of inserting a new document. Emergency alerts are never coalesced.
+ *
+ * An exit alert acknowledged by a re-entry stays in the registry, so a
+ * patient walking in and out of a zone reopens one alert rather than
+ * raising a new one on every exit.
+ *
+ * When coalesce() runs inside an outbox transaction, its registry change
+ * is applied only after the transaction commits, and the entry stays locked
+ * until then, so an aborted or retried transaction leaves the registry as
+ * it was.
+ */
+@Component
+@Slf4j
+public class AlertCoalescer {
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Value("${alert.coalesce.enabled:true}")
+    private boolean enabled;
+
+    @Value("${alert.coalesce.window-seconds:600}")
+    private long windowSeconds;
+
+    public enum Outcome {
+        INSERTED, // No open alert in the window, stored as a new alert
+        FOLDED, // Counted on an alert that is still open
+        REOPENED // Counted on an alert closed by a re-entry, which is open again
+    }
+
+    private final ConcurrentHashMap<String, OpenAlert> openAlerts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime since = LocalDateTime.now().minusSeconds(windowSeconds);
+        List<Alert> recent = alertRepository.findByTypeNotAndLastSeenAtAfter(Alert.AlertType.EMERGENCY, since);
+        for (Alert alert : recent) {
+            if (alert.isAcknowledged() && !AlertService.REENTRY_ACKNOWLEDGER.equals(alert.getAcknowledgedByCaretakerId())) {
+                continue;
+            }
+            OpenAlert open = openAlerts.computeIfAbsent(key(alert.getPatientId(), alert.getType()), k -> new OpenAlert());
+            if (open.lastSeenAt == null || alert.getLastSeenAt().isAfter(open.lastSeenAt)) {
+                open.track(alert);
+            }
+        }
+        log.info("Rebuilt alert coalescing registry: {} open alerts", openAlerts.size());
+    }
+
+    /**
+     * Whether alerts of this type go through coalescing
+     */
+    public boolean applies(Alert.AlertType type) {
+        return enabled && type != Alert.AlertType.EMERGENCY;
+    }
+
+    /**
+     * Fold the event into the open alert of its patient and type, or insert
+     * it as a new alert when there is none within the window. Either way the
+     * event afterwards holds the stored alert's id, triggeredAt, occurrence
+     * count and last-seen time.
+     */
+    public Outcome coalesce(Alert event) {
+        LocalDateTime seenAt = event.getTriggeredAt();
+        String key = key(event.getPatientId(), event.getType());
+
+        while (true) {
+            OpenAlert open = openAlerts.computeIfAbsent(key, k -> new OpenAlert());
+            open.lock.lock();
+            boolean lockedUntilCompletion = false;
+            try {
+                if (open.retired) {
+                    continue; // Swept while we waited, start over with a fresh entry
+                }
+
+                Alert previous = null;
+                if (open.alertId != null && !seenAt.isAfter(open.lastSeenAt.plusSeconds(windowSeconds))) {
+                    previous = alertRepository.recordOccurrence(open.alertId, seenAt, event.getPatientLatitude(),
+                            event.getPatientLongitude(), AlertService.REENTRY_ACKNOWLEDGER);
+                }
+
+                if (previous != null) {
+                    int occurrenceCount = open.occurrenceCount + 1;
+                    LocalDateTime lastSeenAt = seenAt.isAfter(open.lastSeenAt) ? seenAt : open.lastSeenAt;
+                    event.setId(open.alertId);
+                    event.setTriggeredAt(open.triggeredAt);
+                    event.setOccurrenceCount(occurrenceCount);
+                    event.setLastSeenAt(lastSeenAt);
+                    event.setAcknowledged(false);
+                    lockedUntilCompletion = afterCommit(open, () -> {
+                        open.occurrenceCount = occurrenceCount;
+                        open.lastSeenAt = lastSeenAt;
+                    });
+                    return previous.isAcknowledged() ? Outcome.REOPENED : Outcome.FOLDED;
+                }
+
+                event.setOccurrenceCount(1);
+                event.setLastSeenAt(seenAt);
+                Alert saved = alertRepository.save(event);
+                lockedUntilCompletion = afterCommit(open, () -> open.track(saved));
+                return Outcome.INSERTED;
+            } finally {
+                if (!lockedUntilCompletion) {
+                    open.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply a registry change now, or once the surrounding transaction
+     * commits. In a transaction the entry stays locked until it completes,
+     * so no other event reads the entry while its change is pending.
+     *
+     * @return true if the lock is released when the transaction completes
+     */
+    private boolean afterCommit(OpenAlert open, Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                open.lock.unlock();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Close the open alert once a caretaker acknowledges it. Re-entry
+     * acknowledgements keep it open for coalescing.
+     */
+    public void onAcknowledged(Alert alert) {
+        if (AlertService.REENTRY_ACKNOWLEDGER.equals(alert.getAcknowledgedByCaretakerId())) {
+            return;
+        }
+        OpenAlert open = openAlerts.get(key(alert.getPatientId(), alert.getType()));
+        if (open != null) {
+            open.lock.lock();
+            try {
+                if (alert.getId().equals(open.alertId)) {
+                    open.alertId = null;
+                }
+            } finally {
+                open.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drop entries whose window has passed so the registry only holds
+     * recently active alerts
+     */
+    @Scheduled(fixedDelayString = "${alert.coalesce.sweep-interval-ms:60000}")
+    public void sweep() {
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(windowSeconds);
+        openAlerts.forEach((key, open) -> {
+            open.lock.lock();
+            try {
+                if (open.alertId == null || open.lastSeenAt.isBefore(cutoff)) {
+                    open.retired = true;
+                    openAlerts.remove(key, open);
+                }
+            } finally {
+                open.lock.unlock();
+            }
+        });
+    }
+
+    private static String key(String patientId, Alert.AlertType type) {
+        return patientId + ':' + type;
+    }
+
+    private static class OpenAlert {
+        private final ReentrantLock lock = new ReentrantLock(); // Held across the transaction, see afterCommit
+        private String alertId;
+        private LocalDateTime triggeredAt;
+        private LocalDateTime lastSeenAt;
+        private int occurrenceCount;
+        private boolean retired;
+
+        private void track(Alert alert) {
+            alertId = alert.getId();
+            triggeredAt = alert.getTriggeredAt();
+            lastSeenAt = alert.getLastSeenAt();
+            occurrenceCount = alert.getOccurrenceCount();
+        }
+    }
+}
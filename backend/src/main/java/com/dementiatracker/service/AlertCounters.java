@@ -0,0 +1,93 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.dto.AlertCounts;
+import com.dementiatracker.dto.AlertTypeCount;
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.repository.AlertRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Unacknowledged alert counts per patient and type, kept in memory so
+ * badge refreshes need no query. Rebuilt from MongoDB at startup, then
+ * moved by AlertService after each committed create, reopen and
+ * acknowledgement, using the number of documents the conditional update
+ * actually changed. Caretaker totals are summed over the linked patients
+ * when read.
+ */
+@Component
+@Slf4j
+public class AlertCounters {
+
+    private static final Alert.AlertType[] TYPES = Alert.AlertType.values();
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private CaretakerLinkIndex caretakerLinkIndex;
+
+    // Patient ID -> open alert count, indexed by AlertType ordinal
+    private final ConcurrentHashMap<String, AtomicIntegerArray> counts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        List<AlertTypeCount> openCounts = alertRepository.countUnacknowledged();
+        for (AlertTypeCount count : openCounts) {
+            if (count.getPatientId() != null && count.getType() != null) {
+                countsOf(count.getPatientId()).addAndGet(count.getType().ordinal(), count.getCount());
+            }
+        }
+        log.info("Rebuilt unacknowledged alert counts for {} patients", counts.size());
+    }
+
+    public void opened(String patientId, Alert.AlertType type) {
+        countsOf(patientId).incrementAndGet(type.ordinal());
+    }
+
+    public void closed(String patientId, Alert.AlertType type, int closed) {
+        if (closed > 0) {
+            countsOf(patientId).updateAndGet(type.ordinal(), value -> Math.max(0, value - closed));
+        }
+    }
+
+    public AlertCounts getPatientCounts(String patientId) {
+        AlertCounts result = new AlertCounts();
+        addTo(result, counts.get(patientId));
+        return result;
+    }
+
+    public AlertCounts getCaretakerCounts(String caretakerId) {
+        AlertCounts result = new AlertCounts();
+        for (String patientId : caretakerLinkIndex.getPatientIds(caretakerId)) {
+            AlertCounts patientCounts = getPatientCounts(patientId);
+            result.getByPatient().put(patientId, patientCounts);
+            result.setTotal(result.getTotal() + patientCounts.getTotal());
+            patientCounts.getByType().forEach((type, count) -> result.getByType().merge(type, count, Integer::sum));
+        }
+        return result;
+    }
+
+    private AtomicIntegerArray countsOf(String patientId) {
+        return counts.computeIfAbsent(patientId, id -> new AtomicIntegerArray(TYPES.length));
+    }
+
+    private static void addTo(AlertCounts result, AtomicIntegerArray patientCounts) {
+        if (patientCounts == null) {
+            return;
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            int count = patientCounts.get(i);
+            if (count > 0) {
+                result.getByType().put(TYPES[i], count);
+                result.setTotal(result.getTotal() + count);
+            }
+        }
+    }
+}
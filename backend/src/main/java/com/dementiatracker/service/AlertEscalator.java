@@ -0,0 +1,300 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.dto.AlertEscalation;
+import com.dementiatracker.dto.AlertSummary;
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.repository.AlertRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Escalates open alerts nobody acknowledges. Every open alert of an
+ * escalated type holds one timeout on a timing wheel for the next rung of
+ * the ladder (minutes after the alert was raised or reopened). Each rung
+ * re-notifies the linked caretakers; from secondary-from-step on, the
+ * patient's secondary caretakers are notified as well. Notifications go
+ * through the alert outbox, in order with the patient's other events.
+ * Acknowledging cancels the pending timeout in O(1).
+ *
+ * The ladder counts from when the server raised the alert, not from the
+ * fix time, so an alert from a backdated offline upload does not fire all
+ * its rungs at once.
+ *
+ * An alert that reached the secondary caretakers stays tracked after its
+ * last rung, so its later UPDATED and ACKNOWLEDGED events reach them too
+ * (see getSecondaryRecipients), until follow-up-minutes after its ladder
+ * started.
+ *
+ * Open alerts are loaded once at startup and resume at their next future
+ * rung; the alerts collection is never polled.
+ */
+@Component
+@Slf4j
+public class AlertEscalator {
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private AlertOutbox alertOutbox;
+
+    @Autowired
+    private CaretakerLinkIndex caretakerLinkIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${alert.escalation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${alert.escalation.types:EMERGENCY,ZONE_EXIT}")
+    private Alert.AlertType[] types;
+
+    @Value("${alert.escalation.ladder-minutes:5,15,30}")
+    private int[] ladderMinutes;
+
+    @Value("${alert.escalation.secondary-from-step:2}")
+    private int secondaryFromStep;
+
+    @Value("${alert.escalation.follow-up-minutes:1440}")
+    private long followUpMinutes;
+
+    @Value("${alert.escalation.wheel.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${alert.escalation.wheel.size:512}")
+    private int wheelSize;
+
+    private final ConcurrentHashMap<String, Escalation> escalations = new ConcurrentHashMap<>();
+
+    private Set<Alert.AlertType> escalatedTypes;
+
+    private ExecutorService notifyExecutor;
+
+    private TimingWheel wheel;
+
+    private Counter escalatedCounter;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled || ladderMinutes.length == 0) {
+            enabled = false;
+            return;
+        }
+        escalatedTypes = new LinkedHashSet<>(Arrays.asList(types));
+        escalatedCounter = meterRegistry.counter("alert.escalation.notifications");
+        Gauge.builder("alert.escalation.open", escalations, ConcurrentHashMap::size).register(meterRegistry);
+
+        notifyExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "alert-escalation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        wheel = new TimingWheel("alert-escalation-timer", tickMillis, wheelSize, notifyExecutor);
+        wheel.start();
+
+        long now = System.currentTimeMillis();
+        List<AlertSummary> open = alertRepository.findByTypeInAndAcknowledgedFalse(escalatedTypes, AlertSummary.class);
+        for (AlertSummary alert : open) {
+            LocalDateTime since = alert.getLastSeenAt() != null ? alert.getLastSeenAt() : alert.getTriggeredAt();
+            Escalation escalation = new Escalation(alert.getId(), alert.getPatientId(), alert.getType(),
+                    alert.getMessage(), alert.getTriggeredAt(), toMillis(since));
+            while (escalation.step < ladderMinutes.length && escalation.deadline() <= now) {
+                escalation.step++; // Rungs that passed while we were down are not replayed
+            }
+            if (escalation.step < ladderMinutes.length) {
+                escalations.put(alert.getId(), escalation);
+                schedule(escalation);
+            } else if (escalation.reachedSecondary() && escalation.expiresAt() > now) {
+                escalations.put(alert.getId(), escalation);
+                scheduleExpiry(escalation);
+            }
+        }
+        log.info("Alert escalation tracking {} open alerts, ladder {} minutes", escalations.size(),
+                Arrays.toString(ladderMinutes));
+    }
+
+    /**
+     * Start the ladder for a newly raised or reopened alert, counting from now
+     */
+    public void track(Alert alert) {
+        if (!enabled || !escalatedTypes.contains(alert.getType())) {
+            return;
+        }
+        Escalation escalation = new Escalation(alert.getId(), alert.getPatientId(), alert.getType(),
+                alert.getMessage(), alert.getTriggeredAt(), System.currentTimeMillis());
+
+        Escalation previous = escalations.put(alert.getId(), escalation);
+        if (previous != null) {
+            previous.cancel();
+        }
+        schedule(escalation);
+    }
+
+    /**
+     * Stop escalating an acknowledged alert
+     */
+    public void onAcknowledged(String alertId) {
+        if (!enabled) {
+            return;
+        }
+        Escalation escalation = escalations.remove(alertId);
+        if (escalation != null) {
+            escalation.cancel();
+        }
+    }
+
+    /**
+     * Secondary caretakers of the patient who were escalated to on any of
+     * the alerts and are not linked to the patient, so the patient's own
+     * destinations do not reach them. Empty if none of the alerts got that
+     * far.
+     */
+    public Set<String> getSecondaryRecipients(String patientId, Collection<String> alertIds) {
+        if (!enabled) {
+            return Collections.emptySet();
+        }
+        boolean reached = false;
+        for (String alertId : alertIds) {
+            Escalation escalation = escalations.get(alertId);
+            if (escalation != null && escalation.reachedSecondary()) {
+                reached = true;
+                break;
+            }
+        }
+        if (!reached) {
+            return Collections.emptySet();
+        }
+        Set<String> recipients = new LinkedHashSet<>(caretakerLinkIndex.getSecondaryCaretakerIds(patientId));
+        recipients.removeAll(caretakerLinkIndex.getCaretakerIds(patientId));
+        return recipients;
+    }
+
+    private void schedule(Escalation escalation) {
+        synchronized (escalation) {
+            if (!escalation.cancelled) {
+                escalation.timeout = wheel.schedule(() -> escalate(escalation), escalation.deadline());
+            }
+        }
+    }
+
+    /**
+     * Stop following up with secondary caretakers once the alert is old
+     */
+    private void scheduleExpiry(Escalation escalation) {
+        synchronized (escalation) {
+            if (!escalation.cancelled) {
+                escalation.timeout = wheel.schedule(() -> escalations.remove(escalation.alertId, escalation),
+                        escalation.expiresAt());
+            }
+        }
+    }
+
+    private void escalate(Escalation escalation) {
+        int step;
+        synchronized (escalation) {
+            if (escalation.cancelled || escalations.get(escalation.alertId) != escalation) {
+                return;
+            }
+            step = ++escalation.step;
+        }
+
+        boolean secondary = step >= secondaryFromStep;
+        Set<String> recipients = new LinkedHashSet<>(caretakerLinkIndex.getCaretakerIds(escalation.patientId));
+        if (secondary) {
+            recipients.addAll(caretakerLinkIndex.getSecondaryCaretakerIds(escalation.patientId));
+        }
+
+        try {
+            AlertEscalation event = new AlertEscalation("ESCALATED", escalation.alertId, escalation.patientId,
+                    escalation.type, escalation.message, escalation.triggeredAt, step, secondary);
+            alertOutbox.write(() -> {
+                alertOutbox.enqueue(escalation.patientId, recipients, event);
+                return null;
+            });
+            escalatedCounter.increment();
+        } catch (Exception e) {
+            log.error("Failed to escalate alert {}: {}", escalation.alertId, e.getMessage());
+        }
+
+        if (step < ladderMinutes.length) {
+            schedule(escalation);
+        } else if (secondary) {
+            scheduleExpiry(escalation);
+        } else {
+            escalations.remove(escalation.alertId, escalation);
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (wheel != null) {
+            wheel.stop();
+            notifyExecutor.shutdownNow();
+        }
+    }
+
+    private class Escalation {
+        private final String alertId;
+        private final String patientId;
+        private final Alert.AlertType type;
+        private final String message;
+        private final LocalDateTime triggeredAt;
+        private final long since; // Epoch millis the ladder counts from
+        private int step; // Rungs already notified
+        private boolean cancelled;
+        private TimingWheel.Timeout timeout;
+
+        private Escalation(String alertId, String patientId, Alert.AlertType type, String message,
+                LocalDateTime triggeredAt, long since) {
+            this.alertId = alertId;
+            this.patientId = patientId;
+            this.type = type;
+            this.message = message;
+            this.triggeredAt = triggeredAt;
+            this.since = since;
+        }
+
+        private long deadline() {
+            return since + ladderMinutes[step] * 60_000L;
+        }
+
+        private long expiresAt() {
+            return since + followUpMinutes * 60_000L;
+        }
+
+        private synchronized boolean reachedSecondary() {
+            return step >= secondaryFromStep;
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.AlertOutboxEntry;
+import com.dementiatracker.repository.AlertOutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Write side of the alert outbox. Alert changes run through write(), which
+ * stores them and their events in one MongoDB transaction when
+ * alert.outbox.transactions is on, then wakes the relay. With transactions
+ * off, the events are inserted right after the change, so a crash between
+ * the two writes can still lose a notification.
+ *
+ * A transaction aborted with a TransientTransactionError, such as a write
+ * conflict with a concurrent acknowledgement, is run again up to
+ * TRANSACTION_ATTEMPTS times, so changes must be safe to repeat.
+ */
+@Component
+@Slf4j
+public class AlertOutbox {
+
+    private static final int TRANSACTION_ATTEMPTS = 5;
+
+    @Autowired
+    private AlertOutboxRepository outboxRepository;
+
+    @Autowired
+    private AlertOutboxRelay relay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectProvider<MongoTransactionManager> transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        MongoTransactionManager manager = transactionManager.getIfAvailable();
+        if (manager != null) {
+            transactionTemplate = new TransactionTemplate(manager);
+            // Older servers cannot create collections inside a transaction
+            if (!mongoTemplate.collectionExists(AlertOutboxEntry.class)) {
+                mongoTemplate.createCollection(AlertOutboxEntry.class);
+            }
+        }
+        log.info("Alert outbox writes are {}", manager != null ? "transactional" : "not transactional");
+    }
+
+    /**
+     * Run an alert change and the enqueue calls it makes as one unit, then
+     * let the relay publish the new events
+     */
+    public <T> T write(Supplier<T> change) {
+        T result = transactionTemplate != null ? writeInTransaction(change) : change.get();
+        relay.wake();
+        return result;
+    }
+
+    private <T> T writeInTransaction(Supplier<T> change) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> change.get());
+            } catch (RuntimeException e) {
+                if (attempt >= TRANSACTION_ATTEMPTS || !isTransient(e)) {
+                    throw e;
+                }
+                log.debug("Retrying alert outbox transaction (attempt {}): {}", attempt + 1, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Whether the exception, or the MongoException Spring wrapped in it,
+     * carries the TransientTransactionError label
+     */
+    private static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException
+                    && ((MongoException) cause).hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Queue an event for the patient's alert destinations. Must be called
+     * inside write().
+     */
+    public void enqueue(String patientId, Object event) {
+        insert(patientId, event, null);
+    }
+
+    /**
+     * Queue an event of the patient for the alert queues of specific users
+     * only. Must be called inside write().
+     */
+    public void enqueue(String patientId, Collection<String> recipientIds, Object event) {
+        insert(patientId, event, new ArrayList<>(recipientIds));
+    }
+
+    private void insert(String patientId, Object event, List<String> recipientIds) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize alert event", e);
+        }
+        outboxRepository.insert(new AlertOutboxEntry(new ObjectId().toHexString(), patientId, payload,
+                LocalDateTime.now(), 0, recipientIds));
+    }
+}
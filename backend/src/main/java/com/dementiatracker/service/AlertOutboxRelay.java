@@ -0,0 +1,214 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.AlertOutboxEntry;
+import com.dementiatracker.repository.AlertOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes alert outbox entries on its own thread, oldest first, in
+ * batches of batch-size, deleting each batch once it has been sent.
+ * Delivery is at least once: a crash after sending and before the delete
+ * sends those events again, and clients drop repeats by alert ID.
+ *
+ * A failed send holds back only that patient: their later events wait
+ * behind the failed one, which is retried with exponential backoff, so
+ * every patient's events arrive in the order they were written while other
+ * patients' events keep flowing. An entry that still fails after
+ * max-attempts sends is moved to the "alert_outbox_dead" collection and the
+ * patient's remaining events continue. Leftover entries from a crash are
+ * picked up by the periodic poll.
+ */
+@Component
+@Slf4j
+public class AlertOutboxRelay {
+
+    private static final String DEAD_LETTER_COLLECTION = "alert_outbox_dead";
+
+    @Autowired
+    private AlertOutboxRepository outboxRepository;
+
+    @Autowired
+    private AlertPublisher alertPublisher;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${alert.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${alert.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${alert.outbox.retry-initial-ms:500}")
+    private long retryInitialMs;
+
+    @Value("${alert.outbox.retry-max-ms:30000}")
+    private long retryMaxMs;
+
+    @Value("${alert.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    private ScheduledExecutorService executor;
+
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+
+    // Backoff state, only touched on the relay thread: the whole relay after a
+    // storage failure, and single patients after a failed send
+    private long retryDelayMs;
+
+    private long retryAt;
+
+    private final Map<String, Long> patientRetryAt = new HashMap<>();
+
+    private Counter publishedCounter;
+
+    private Counter failedCounter;
+
+    private Counter deadLetteredCounter;
+
+    private Timer lagTimer;
+
+    @PostConstruct
+    public void start() {
+        publishedCounter = meterRegistry.counter("alert.outbox.events", "outcome", "published");
+        failedCounter = meterRegistry.counter("alert.outbox.events", "outcome", "failed");
+        deadLetteredCounter = meterRegistry.counter("alert.outbox.events", "outcome", "dead_lettered");
+        lagTimer = meterRegistry.timer("alert.outbox.lag");
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "alert-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::drain, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drain soon, without waiting for the next poll. Wakes arriving while a
+     * drain is queued are merged into it.
+     */
+    public void wake() {
+        if (drainQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                drainQueued.set(false);
+                drain();
+            });
+        }
+    }
+
+    private void drain() {
+        long now = System.currentTimeMillis();
+        if (now < retryAt) {
+            return;
+        }
+
+        try {
+            patientRetryAt.values().removeIf(at -> at <= now);
+            Set<String> held = new HashSet<>(patientRetryAt.keySet());
+            List<AlertOutboxEntry> batch;
+            do {
+                batch = held.isEmpty()
+                        ? outboxRepository.findAllByOrderByIdAsc(PageRequest.of(0, batchSize))
+                        : outboxRepository.findByPatientIdNotInOrderByIdAsc(held, PageRequest.of(0, batchSize));
+                publish(batch, held);
+            } while (batch.size() == batchSize);
+            retryDelayMs = 0;
+        } catch (Exception e) {
+            log.error("Alert outbox drain failed: {}", e.getMessage());
+            retryDelayMs = retryDelayMs == 0 ? retryInitialMs : Math.min(retryDelayMs * 2, retryMaxMs);
+            retryAt = System.currentTimeMillis() + retryDelayMs;
+        }
+    }
+
+    /**
+     * Send the batch in order and delete what was sent. A failed send adds
+     * its patient to held, so the rest of that patient's events wait.
+     */
+    private void publish(List<AlertOutboxEntry> batch, Set<String> held) {
+        List<String> published = new ArrayList<>(batch.size());
+        List<AlertOutboxEntry> failed = new ArrayList<>();
+        for (AlertOutboxEntry entry : batch) {
+            if (held.contains(entry.getPatientId())) {
+                continue;
+            }
+            try {
+                byte[] payload = entry.getPayload().getBytes(StandardCharsets.UTF_8);
+                if (entry.getRecipientIds() != null) {
+                    alertPublisher.publishToUsers(entry.getRecipientIds(), payload);
+                } else {
+                    alertPublisher.publish(entry.getPatientId(), payload);
+                }
+            } catch (Exception e) {
+                log.warn("Publishing alert event {} failed (attempt {}): {}", entry.getId(),
+                        entry.getAttempts() + 1, e.getMessage());
+                held.add(entry.getPatientId());
+                failed.add(entry);
+                continue;
+            }
+            published.add(entry.getId());
+            lagTimer.record(Duration.between(entry.getCreatedAt(), LocalDateTime.now()));
+        }
+
+        if (!published.isEmpty()) {
+            outboxRepository.deleteAllById(published);
+            publishedCounter.increment(published.size());
+        }
+        for (AlertOutboxEntry entry : failed) {
+            failedCounter.increment();
+            entry.setAttempts(entry.getAttempts() + 1);
+            if (entry.getAttempts() >= maxAttempts) {
+                deadLetter(entry);
+            } else {
+                outboxRepository.save(entry);
+                patientRetryAt.put(entry.getPatientId(), System.currentTimeMillis() + retryDelay(entry.getAttempts()));
+            }
+        }
+    }
+
+    /**
+     * Park an event that keeps failing so the patient's later events can go out
+     */
+    private void deadLetter(AlertOutboxEntry entry) {
+        mongoTemplate.insert(entry, DEAD_LETTER_COLLECTION);
+        outboxRepository.deleteById(entry.getId());
+        deadLetteredCounter.increment();
+        log.error("Gave up on alert event {} for patient {} after {} attempts, moved to {}", entry.getId(),
+                entry.getPatientId(), entry.getAttempts(), DEAD_LETTER_COLLECTION);
+    }
+
+    private long retryDelay(int attempts) {
+        return Math.min(retryInitialMs << Math.min(attempts - 1, 20), retryMaxMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,53 @@
+package com.dementiatracker.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Collection;
+
+/**
+ * Delivers alert events to the patient's topic and to the alert queue of
+ * every linked caretaker (/user/queue/alerts), so a dashboard needs one
+ * subscription however many patients it monitors. Events arrive already
+ * serialized from the outbox and the same bytes go to every destination.
+ */
+@Component
+public class AlertPublisher {
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private CaretakerLinkIndex caretakerLinkIndex;
+
+    /**
+     * Send a JSON event to the patient's alert destinations
+     */
+    public void publish(String patientId, byte[] payload) {
+        send("/topic/alerts/" + patientId, payload);
+        for (String caretakerId : caretakerLinkIndex.getCaretakerIds(patientId)) {
+            send("/user/" + caretakerId + "/queue/alerts", payload);
+        }
+    }
+
+    /**
+     * Send a JSON event to the alert queues of specific users only
+     */
+    public void publishToUsers(Collection<String> userIds, byte[] payload) {
+        for (String userId : userIds) {
+            send("/user/" + userId + "/queue/alerts", payload);
+        }
+    }
+
+    private void send(String destination, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+}
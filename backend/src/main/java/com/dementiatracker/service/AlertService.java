@@ -1,24 +1,49 @@
 package com.dementiatracker.service;
 
+import com.dementiatracker.dto.AlertCounts;
+import com.dementiatracker.dto.AlertSummary;
+import com.dementiatracker.dto.AlertUpdate;
+import com.dementiatracker.dto.AlertsAcknowledged;
 import com.dementiatracker.model.Alert;
 import com.dementiatracker.model.Location;
 import com.dementiatracker.model.SafeZone;
 import com.dementiatracker.repository.AlertRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class AlertService {
 
+    // Acknowledger recorded when a patient's re-entry closes their exit alerts
+    public static final String REENTRY_ACKNOWLEDGER = "SYSTEM_REENTRY";
+
     @Autowired
     private AlertRepository alertRepository;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private AlertOutbox alertOutbox;
+
+    @Autowired
+    private AlertCounters alertCounters;
+
+    @Autowired
+    private AlertEscalator alertEscalator;
+
+    @Autowired
+    private GeofenceStateTracker geofenceStateTracker;
+
+    @Autowired
+    private AlertCoalescer alertCoalescer;
 
     /**
      * Create and send alert when patient exits safe zone
@@ -31,15 +56,10 @@ public class AlertService {
         alert.setMessage(String.format("Patient has exited safe zone: %s", safeZone.getName()));
         alert.setPatientLatitude(location.getLatitude());
         alert.setPatientLongitude(location.getLongitude());
-        alert.setTriggeredAt(LocalDateTime.now());
+        alert.setTriggeredAt(location.getTimestamp() != null ? location.getTimestamp() : LocalDateTime.now());
         alert.setAcknowledged(false);
 
-        Alert savedAlert = alertRepository.save(alert);
-
-        // Send real-time notification via WebSocket
-        messagingTemplate.convertAndSend("/topic/alerts/" + patientId, savedAlert);
-
-        return savedAlert;
+        return raise(alert);
     }
 
     /**
@@ -53,15 +73,10 @@ public class AlertService {
         alert.setMessage(String.format("Patient has re-entered safe zone: %s", safeZone.getName()));
         alert.setPatientLatitude(location.getLatitude());
         alert.setPatientLongitude(location.getLongitude());
-        alert.setTriggeredAt(LocalDateTime.now());
+        alert.setTriggeredAt(location.getTimestamp() != null ? location.getTimestamp() : LocalDateTime.now());
         alert.setAcknowledged(false);
 
-        Alert savedAlert = alertRepository.save(alert);
-
-        // Send real-time notification via WebSocket
-        messagingTemplate.convertAndSend("/topic/alerts/" + patientId, savedAlert);
-
-        return savedAlert;
+        return raise(alert);
     }
 
     /**
@@ -75,12 +90,74 @@ public class AlertService {
         alert.setTriggeredAt(LocalDateTime.now());
         alert.setAcknowledged(false);
 
-        Alert savedAlert = alertRepository.save(alert);
+        return raise(alert);
+    }
+
+    /**
+     * Create alert when patient has not moved since the given time
+     */
+    public Alert createNoMovementAlert(String patientId, double latitude, double longitude, LocalDateTime since) {
+        Alert alert = new Alert();
+        alert.setPatientId(patientId);
+        alert.setType(Alert.AlertType.NO_MOVEMENT);
+        alert.setMessage(String.format("Patient has not moved since %s",
+                since.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"))));
+        alert.setPatientLatitude(latitude);
+        alert.setPatientLongitude(longitude);
+        alert.setTriggeredAt(LocalDateTime.now());
+        alert.setAcknowledged(false);
+
+        return raise(alert);
+    }
+
+    /**
+     * Store the alert, or fold it into the patient's open alert of the same
+     * type, and queue the notification in the outbox. A folded event is
+     * sent as a compact update of the existing alert.
+     */
+    private Alert raise(Alert alert) {
+        LocalDateTime raisedAt = alert.getTriggeredAt();
+        AlertCoalescer.Outcome outcome = alertOutbox.write(() -> {
+            if (alertCoalescer.applies(alert.getType())) {
+                // Coalescing rewrites the event, so a retried transaction starts again from the event as raised
+                alert.setId(null);
+                alert.setTriggeredAt(raisedAt);
+                AlertCoalescer.Outcome coalesced = alertCoalescer.coalesce(alert);
+                if (coalesced == AlertCoalescer.Outcome.INSERTED) {
+                    alertOutbox.enqueue(alert.getPatientId(), alert);
+                } else {
+                    AlertUpdate update = AlertUpdate.of(alert);
+                    alertOutbox.enqueue(alert.getPatientId(), update);
+                    enqueueForSecondary(alert.getPatientId(), Collections.singletonList(alert.getId()), update);
+                }
+                return coalesced;
+            }
+
+            alert.setLastSeenAt(alert.getTriggeredAt());
+            alertRepository.save(alert);
+            alertOutbox.enqueue(alert.getPatientId(), alert);
+            return AlertCoalescer.Outcome.INSERTED;
+        });
 
-        // Send real-time notification via WebSocket
-        messagingTemplate.convertAndSend("/topic/alerts/" + patientId, savedAlert);
+        if (outcome != AlertCoalescer.Outcome.FOLDED) {
+            alertCounters.opened(alert.getPatientId(), alert.getType());
+            alertEscalator.track(alert);
+        }
+        return alert;
+    }
 
-        return savedAlert;
+    /**
+     * Unacknowledged alert counts of a patient
+     */
+    public AlertCounts getPatientAlertCounts(String patientId) {
+        return alertCounters.getPatientCounts(patientId);
+    }
+
+    /**
+     * Unacknowledged alert counts over all patients linked to a caretaker
+     */
+    public AlertCounts getCaretakerAlertCounts(String caretakerId) {
+        return alertCounters.getCaretakerCounts(caretakerId);
     }
 
     /**
@@ -98,16 +175,108 @@ public class AlertService {
     }
 
     /**
-     * Acknowledge an alert
+     * Get all alerts for a patient as summaries
+     */
+    public List<AlertSummary> getPatientAlertSummaries(String patientId) {
+        return alertRepository.findByPatientIdOrderByTriggeredAtDesc(patientId, AlertSummary.class);
+    }
+
+    /**
+     * Get unacknowledged alerts for a patient as summaries
+     */
+    public List<AlertSummary> getUnacknowledgedAlertSummaries(String patientId) {
+        return alertRepository.findByPatientIdAndAcknowledgedFalseOrderByTriggeredAtDesc(patientId,
+                AlertSummary.class);
+    }
+
+    /**
+     * Acknowledge an alert. Acknowledging an alert that is already
+     * acknowledged returns it unchanged.
      */
     public Alert acknowledgeAlert(String alertId, String caretakerId) {
-        Alert alert = alertRepository.findById(alertId)
-                .orElseThrow(() -> new RuntimeException("Alert not found"));
+        LocalDateTime now = LocalDateTime.now();
+        Alert alert = alertOutbox.write(() -> {
+            Alert acknowledged = alertRepository.acknowledge(alertId, caretakerId, now);
+            if (acknowledged != null) {
+                AlertsAcknowledged event = new AlertsAcknowledged("ACKNOWLEDGED", acknowledged.getPatientId(),
+                        Collections.singletonList(alertId), 1, caretakerId, now);
+                alertOutbox.enqueue(acknowledged.getPatientId(), event);
+                enqueueForSecondary(acknowledged.getPatientId(), event.getAlertIds(), event);
+            }
+            return acknowledged;
+        });
+        if (alert == null) {
+            return alertRepository.findById(alertId)
+                    .orElseThrow(() -> new RuntimeException("Alert not found"));
+        }
+
+        afterAcknowledged(alert);
+        alertCounters.closed(alert.getPatientId(), alert.getType(), 1);
+        return alert;
+    }
+
+    /**
+     * Acknowledge a patient's open alerts, optionally only the given ids and
+     * types, and broadcast a single summary event listing the alerts this
+     * call closed
+     */
+    public AlertsAcknowledged acknowledgeAlerts(String patientId, List<String> alertIds,
+            List<Alert.AlertType> types, String caretakerId) {
+        if (alertIds != null && alertIds.isEmpty()) {
+            throw new RuntimeException("No alerts to acknowledge");
+        }
+
+        // Claim the alerts one conditional update at a time, so the event, the
+        // counters and the callbacks cover exactly the alerts this call closed
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Alert> closed = new LinkedHashMap<>();
+        AlertsAcknowledged result = alertOutbox.write(() -> {
+            closed.clear(); // A retried transaction starts over
+            Alert alert;
+            while ((alert = alertRepository.acknowledgeNext(patientId, alertIds, types, caretakerId, now)) != null) {
+                if (closed.putIfAbsent(alert.getId(), alert) != null) {
+                    break; // Reopened by a concurrent event since we closed it; leave it open
+                }
+            }
+            List<String> ids = new ArrayList<>(closed.keySet());
+            AlertsAcknowledged summary = new AlertsAcknowledged("ACKNOWLEDGED", patientId, ids, ids.size(),
+                    caretakerId, now);
+            if (!ids.isEmpty()) {
+                alertOutbox.enqueue(patientId, summary);
+                enqueueForSecondary(patientId, ids, summary);
+            }
+            return summary;
+        });
+
+        Map<Alert.AlertType, Integer> closedByType = new EnumMap<>(Alert.AlertType.class);
+        for (Alert alert : closed.values()) {
+            alert.setAcknowledged(true);
+            alert.setAcknowledgedByCaretakerId(caretakerId);
+            afterAcknowledged(alert);
+            closedByType.merge(alert.getType(), 1, Integer::sum);
+        }
+        closedByType.forEach((type, count) -> alertCounters.closed(patientId, type, count));
+        return result;
+    }
+
+    /**
+     * Also queue the event for secondary caretakers an escalation reached,
+     * who are not among the patient's own destinations. Must be called
+     * before the escalation is cleared.
+     */
+    private void enqueueForSecondary(String patientId, List<String> alertIds, Object event) {
+        Set<String> recipients = alertEscalator.getSecondaryRecipients(patientId, alertIds);
+        if (!recipients.isEmpty()) {
+            alertOutbox.enqueue(patientId, recipients, event);
+        }
+    }
 
-        alert.setAcknowledged(true);
-        alert.setAcknowledgedAt(LocalDateTime.now());
-        alert.setAcknowledgedByCaretakerId(caretakerId);
+    private void afterAcknowledged(Alert alert) {
+        alertCoalescer.onAcknowledged(alert);
+        alertEscalator.onAcknowledged(alert.getId());
 
-        return alertRepository.save(alert);
+        if (alert.getType() == Alert.AlertType.ZONE_EXIT) {
+            geofenceStateTracker.onExitAlertAcknowledged(alert.getPatientId(), alert.getId());
+        }
     }
 }
@@ -0,0 +1,83 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.User;
+import com.dementiatracker.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * In-memory links between patients' shareable IDs and their caretakers'
+ * user IDs, in both directions, loaded at startup from
+ * User.linkedCaretakerIds and kept current by UserService when links are
+ * added. Secondary caretakers, who only hear about escalated alerts, are
+ * kept separately.
+ */
+@Component
+@Slf4j
+public class CaretakerLinkIndex {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final ConcurrentHashMap<String, Set<String>> caretakersByPatient = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Set<String>> patientsByCaretaker = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Set<String>> secondaryByPatient = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        List<User> patients = userRepository.findPatientLinks();
+        for (User patient : patients) {
+            if (patient.getPatientId() != null) {
+                for (String caretakerId : patient.getLinkedCaretakerIds()) {
+                    link(patient.getPatientId(), caretakerId);
+                }
+                setSecondaryCaretakers(patient.getPatientId(), patient.getSecondaryCaretakerIds());
+            }
+        }
+        log.info("Loaded caretaker links for {} patients", caretakersByPatient.size());
+    }
+
+    public void link(String patientId, String caretakerId) {
+        caretakersByPatient.computeIfAbsent(patientId, id -> new CopyOnWriteArraySet<>()).add(caretakerId);
+        patientsByCaretaker.computeIfAbsent(caretakerId, id -> new CopyOnWriteArraySet<>()).add(patientId);
+    }
+
+    public void setSecondaryCaretakers(String patientId, Set<String> caretakerIds) {
+        if (caretakerIds.isEmpty()) {
+            secondaryByPatient.remove(patientId);
+        } else {
+            secondaryByPatient.put(patientId, new CopyOnWriteArraySet<>(caretakerIds));
+        }
+    }
+
+    /**
+     * User IDs of a patient's secondary caretakers
+     */
+    public Set<String> getSecondaryCaretakerIds(String patientId) {
+        return secondaryByPatient.getOrDefault(patientId, Collections.emptySet());
+    }
+
+    /**
+     * User IDs of the caretakers linked to a patient
+     */
+    public Set<String> getCaretakerIds(String patientId) {
+        return caretakersByPatient.getOrDefault(patientId, Collections.emptySet());
+    }
+
+    /**
+     * Shareable IDs of the patients a caretaker is linked to
+     */
+    public Set<String> getPatientIds(String caretakerId) {
+        return patientsByCaretaker.getOrDefault(caretakerId, Collections.emptySet());
+    }
+}
@@ -0,0 +1,155 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.geo.ZoneIndex;
+import com.dementiatracker.model.Location;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hysteresis for geofence transitions. A patient only counts as having left
+ * once a fix is more than exit-margin (plus accuracy-weight times the GPS
+ * accuracy) outside every zone, and only counts as back once a fix is that
+ * far inside a zone with enter-margin. Fixes less accurate than max-accuracy
+ * never cause a transition, and a qualifying condition must hold for
+ * min-dwell-seconds before it is committed.
+ *
+ * Raw transitions (plain containment) and committed transitions are both
+ * counted. A transition held back until the patient is back on the
+ * committed side, without ever being committed, is counted as suppressed:
+ * an alert or acknowledgement that was never written or broadcast.
+ */
+@Component
+public class GeofenceHysteresis {
+
+    public enum Transition {
+        NONE,
+        EXIT,
+        ENTRY
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${geofence.hysteresis.exit-margin-meters:0}")
+    private double exitMargin;
+
+    @Value("${geofence.hysteresis.enter-margin-meters:0}")
+    private double enterMargin;
+
+    @Value("${geofence.hysteresis.accuracy-weight:0}")
+    private double accuracyWeight;
+
+    @Value("${geofence.hysteresis.max-accuracy-meters:0}")
+    private double maxAccuracy;
+
+    @Value("${geofence.hysteresis.min-dwell-seconds:0}")
+    private long minDwellSeconds;
+
+    private final AtomicLong rawExits = new AtomicLong();
+
+    private final AtomicLong rawEntries = new AtomicLong();
+
+    private final AtomicLong committedExits = new AtomicLong();
+
+    private final AtomicLong committedEntries = new AtomicLong();
+
+    private final AtomicLong suppressedExits = new AtomicLong();
+
+    private final AtomicLong suppressedEntries = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        registerCounter(rawExits, "raw", "exit");
+        registerCounter(rawEntries, "raw", "entry");
+        registerCounter(committedExits, "committed", "exit");
+        registerCounter(committedEntries, "committed", "entry");
+        registerCounter(suppressedExits, "suppressed", "exit");
+        registerCounter(suppressedEntries, "suppressed", "entry");
+    }
+
+    /**
+     * Decide whether a fix commits a transition. Callers must hold the state's monitor.
+     */
+    public Transition evaluate(GeofenceStateTracker.GeofenceState state, ZoneIndex zones, Location location) {
+        double latitude = location.getLatitude();
+        double longitude = location.getLongitude();
+        boolean inside = zones.anyContains(latitude, longitude);
+        boolean outside = state.isOutside();
+
+        // Track what plain containment would have done, for the suppression metrics
+        boolean rawOutside = state.getRawOutside() != null ? state.getRawOutside() : outside;
+        if (rawOutside == inside) {
+            (inside ? rawEntries : rawExits).incrementAndGet();
+        }
+        state.setRawOutside(!inside);
+
+        // A fix on the other side of the committed state holds a transition back. If the patient is
+        // back on the committed side before it commits (which clears the flag), it was suppressed.
+        if (inside == outside) {
+            state.setHeldBack(true);
+        } else if (state.isHeldBack()) {
+            state.setHeldBack(false);
+            (outside ? suppressedEntries : suppressedExits).incrementAndGet();
+        }
+
+        double accuracy = Math.max(0, location.getAccuracy());
+        boolean reliable = maxAccuracy <= 0 || accuracy <= maxAccuracy;
+        double uncertainty = accuracyWeight * accuracy;
+
+        boolean qualifies;
+        if (!outside) {
+            double threshold = exitMargin + uncertainty;
+            qualifies = reliable && !inside
+                    && (threshold <= 0 || zones.minDistanceOutside(latitude, longitude, threshold) > threshold);
+        } else {
+            double threshold = enterMargin + uncertainty;
+            qualifies = reliable && inside
+                    && (threshold <= 0 || zones.maxDepthInside(latitude, longitude) > threshold);
+        }
+
+        if (!qualifies) {
+            state.setPendingSince(null);
+            return Transition.NONE;
+        }
+
+        if (minDwellSeconds > 0) {
+            if (state.getPendingSince() == null) {
+                state.setPendingSince(location.getTimestamp());
+            }
+            Duration dwell = Duration.between(state.getPendingSince(), location.getTimestamp());
+            if (dwell.getSeconds() < minDwellSeconds) {
+                return Transition.NONE;
+            }
+        }
+
+        state.setPendingSince(null);
+        if (outside) {
+            committedEntries.incrementAndGet();
+            return Transition.ENTRY;
+        }
+        committedExits.incrementAndGet();
+        return Transition.EXIT;
+    }
+
+    /**
+     * Transitions held back by hysteresis that never committed (alerts and
+     * acknowledgements that were never written or broadcast)
+     */
+    public long getSuppressedTransitions() {
+        return suppressedExits.get() + suppressedEntries.get();
+    }
+
+    private void registerCounter(AtomicLong count, String decision, String direction) {
+        FunctionCounter.builder("geofence.transitions", count, AtomicLong::get)
+                .tag("decision", decision)
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,118 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.repository.AlertRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory inside/outside state per patient. A patient is "outside" while
+ * they have open (unacknowledged) ZONE_EXIT alerts. The state is rebuilt
+ * from MongoDB at startup and then driven by location fixes and
+ * acknowledgements, so a fix that causes no transition needs no alert query.
+ */
+@Component
+@Slf4j
+public class GeofenceStateTracker {
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    private final ConcurrentHashMap<String, GeofenceState> states = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        List<Alert> openExitAlerts = alertRepository.findByTypeAndAcknowledgedFalse(Alert.AlertType.ZONE_EXIT);
+        for (Alert alert : openExitAlerts) {
+            getState(alert.getPatientId()).markOutside(alert.getId());
+        }
+        log.info("Rebuilt geofence state: {} open exit alerts for {} patients", openExitAlerts.size(), states.size());
+    }
+
+    /**
+     * Get the geofence state of a patient. Callers evaluating transitions
+     * must synchronize on the returned state.
+     */
+    public GeofenceState getState(String patientId) {
+        return states.computeIfAbsent(patientId, id -> new GeofenceState());
+    }
+
+    /**
+     * Forget an exit alert that was acknowledged outside of a re-entry
+     */
+    public void onExitAlertAcknowledged(String patientId, String alertId) {
+        GeofenceState state = states.get(patientId);
+        if (state != null) {
+            synchronized (state) {
+                if (state.openExitAlertIds.remove(alertId) && state.openExitAlertIds.isEmpty()) {
+                    state.heldBack = false;
+                }
+            }
+        }
+    }
+
+    public static class GeofenceState {
+        private final List<String> openExitAlertIds = new ArrayList<>();
+
+        // Plain containment of the last fix, before hysteresis; null until the first fix
+        private Boolean rawOutside;
+
+        // Time of the first fix in the current run of fixes that qualify for a transition
+        private LocalDateTime pendingSince;
+
+        // Plain containment disagrees with the committed state; cleared whenever that state changes
+        private boolean heldBack;
+
+        public boolean isOutside() {
+            return !openExitAlertIds.isEmpty();
+        }
+
+        public void markOutside(String exitAlertId) {
+            openExitAlertIds.add(exitAlertId);
+            pendingSince = null;
+            heldBack = false;
+        }
+
+        /**
+         * Switch to inside and return the exit alerts to acknowledge
+         */
+        public List<String> markInside() {
+            List<String> alertIds = new ArrayList<>(openExitAlertIds);
+            openExitAlertIds.clear();
+            pendingSince = null;
+            heldBack = false;
+            return alertIds;
+        }
+
+        public Boolean getRawOutside() {
+            return rawOutside;
+        }
+
+        public void setRawOutside(Boolean rawOutside) {
+            this.rawOutside = rawOutside;
+        }
+
+        public boolean isHeldBack() {
+            return heldBack;
+        }
+
+        public void setHeldBack(boolean heldBack) {
+            this.heldBack = heldBack;
+        }
+
+        public LocalDateTime getPendingSince() {
+            return pendingSince;
+        }
+
+        public void setPendingSince(LocalDateTime pendingSince) {
+            this.pendingSince = pendingSince;
+        }
+    }
+}
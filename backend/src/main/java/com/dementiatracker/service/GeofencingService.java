@@ -1,19 +1,19 @@
 package com.dementiatracker.service;
 
+import com.dementiatracker.geo.GeoMath;
+import com.dementiatracker.geo.ZoneIndex;
 import com.dementiatracker.model.Location;
 import com.dementiatracker.model.SafeZone;
-import com.dementiatracker.repository.SafeZoneRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class GeofencingService {
 
     @Autowired
-    private SafeZoneRepository safeZoneRepository;
+    private SafeZoneCache safeZoneCache;
 
     /**
      * Calculate distance between two points using Haversine formula
@@ -25,61 +25,27 @@ public class GeofencingService {
      * @return Distance in meters
      */
     public double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int EARTH_RADIUS = 6371000; // Earth's radius in meters
-
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS * c; // Distance in meters
-    }
-
-    /**
-     * Check if a location is within a safe zone
-     * 
-     * @param location Patient's current location
-     * @param safeZone Safe zone to check against
-     * @return true if patient is inside the safe zone, false otherwise
-     */
-    public boolean isWithinSafeZone(Location location, SafeZone safeZone) {
-        double distance = calculateDistance(
-                location.getLatitude(),
-                location.getLongitude(),
-                safeZone.getCenterLatitude(),
-                safeZone.getCenterLongitude());
-
-        return distance <= safeZone.getRadiusInMeters();
+        return GeoMath.distance(lat1, lon1, lat2, lon2);
     }
 
     /**
-     * Check if patient is outside ALL safe zones
+     * Get all active safe zones for a patient
      * 
      * @param patientId Patient ID
-     * @param location  Current location
-     * @return List of safe zones that the patient has exited (empty if still in at
-     *         least one zone)
+     * @return List of active safe zones
      */
-    public List<SafeZone> getViolatedSafeZones(String patientId, Location location) {
-        List<SafeZone> activeSafeZones = safeZoneRepository.findByPatientIdAndActiveTrue(patientId);
-
-        return activeSafeZones.stream()
-                .filter(zone -> !isWithinSafeZone(location, zone))
-                .collect(Collectors.toList());
+    public List<SafeZone> getActiveSafeZones(String patientId) {
+        return safeZoneCache.getActiveSafeZones(patientId);
     }
 
     /**
-     * Get all active safe zones for a patient
+     * Get the spatial index of a patient's active safe zones
      * 
      * @param patientId Patient ID
-     * @return List of active safe zones
+     * @return Index over the active safe zones
      */
-    public List<SafeZone> getActiveSafeZones(String patientId) {
-        return safeZoneRepository.findByPatientIdAndActiveTrue(patientId);
+    public ZoneIndex getZoneIndex(String patientId) {
+        return safeZoneCache.getZoneIndex(patientId);
     }
 
     /**
@@ -90,9 +56,19 @@ public class GeofencingService {
      * @return true if patient is in at least one safe zone
      */
     public boolean isInAnySafeZone(String patientId, Location location) {
-        List<SafeZone> activeSafeZones = safeZoneRepository.findByPatientIdAndActiveTrue(patientId);
+        return isInAnySafeZone(safeZoneCache.getZoneIndex(patientId), location);
+    }
 
-        return activeSafeZones.stream()
-                .anyMatch(zone -> isWithinSafeZone(location, zone));
+    /**
+     * Check if a location is within at least one indexed safe zone.
+     * Only zones whose bounding box covers the location are tested, and an
+     * exact haversine distance is only computed near a zone's boundary.
+     * 
+     * @param zoneIndex Index over the patient's active safe zones
+     * @param location  Current location
+     * @return true if the location is in at least one safe zone
+     */
+    public boolean isInAnySafeZone(ZoneIndex zoneIndex, Location location) {
+        return zoneIndex.anyContains(location.getLatitude(), location.getLongitude());
     }
 }
@@ -0,0 +1,230 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.dto.DownsampledHistory;
+import com.dementiatracker.dto.TrackPoint;
+import com.dementiatracker.geo.FixVisitor;
+import com.dementiatracker.geo.Lttb;
+import com.dementiatracker.geo.Track;
+import com.dementiatracker.repository.LocationStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map-sized location history. A time range is reduced to a target number of
+ * points with LTTB, which keeps the shape of the track.
+ *
+ * Each finished day a request covers completely is reduced once to a few
+ * fixed resolutions. Those levels are kept in an LRU cache, so panning and
+ * zooming over past days does not rescan raw fixes. Partial days at the
+ * edges of the range and the current day are always read raw. A late fix
+ * for a past day (e.g. an offline batch upload) invalidates that day; with
+ * write-behind enabled a read within max-delay-ms of the upload may still
+ * cache the day without it.
+ */
+@Service
+public class HistoryDownsampler {
+
+    // Precomputed resolutions per day, largest first
+    private static final int[] LEVELS = {2048, 512, 128};
+
+    public static final int MAX_POINTS = LEVELS[0];
+
+    @Autowired
+    private LocationStore locationStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${location.downsample.max-range-days:31}")
+    private int maxRangeDays;
+
+    @Value("${location.downsample.cache.max-days:5000}")
+    private int maxCachedDays;
+
+    private Map<String, DayLevels> days;
+
+    // Bumped on every invalidation so a load racing with new fixes is not cached
+    private long invalidations;
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        days = new LinkedHashMap<String, DayLevels>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DayLevels> eldest) {
+                return size() > maxCachedDays;
+            }
+        };
+
+        hitCounter = meterRegistry.counter("location.downsample.cache.requests", "result", "hit");
+        missCounter = meterRegistry.counter("location.downsample.cache.requests", "result", "miss");
+        Gauge.builder("location.downsample.cache.size", this, HistoryDownsampler::cachedDays)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Map zoom level to a point budget: roughly one point per few pixels of a
+     * track spanning the visible map, doubling with each zoom step
+     */
+    public static int pointsForZoom(int zoom) {
+        int points = 1 << Math.max(0, Math.min(zoom, 20) - 4);
+        return Math.max(64, Math.min(points, MAX_POINTS));
+    }
+
+    /**
+     * Fixes strictly between start and end reduced to at most targetPoints points
+     */
+    public DownsampledHistory downsample(String patientId, LocalDateTime start, LocalDateTime end,
+            int targetPoints) {
+        if (!start.isBefore(end)) {
+            throw new RuntimeException("Start must be before end");
+        }
+        if (targetPoints < 3 || targetPoints > MAX_POINTS) {
+            throw new RuntimeException("Points must be between 3 and " + MAX_POINTS);
+        }
+        LocalDate firstDay = start.toLocalDate();
+        LocalDate lastDay = end.toLocalDate();
+        if (firstDay.plusDays(maxRangeDays).isBefore(lastDay)) {
+            throw new RuntimeException("Range must not exceed " + maxRangeDays + " days");
+        }
+
+        // One part per day: cached levels for whole finished days, raw fixes otherwise
+        LocalDate today = LocalDate.now();
+        List<DayLevels> parts = new ArrayList<>();
+        int sourceCount = 0;
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            LocalDateTime dayStart = day.atStartOfDay();
+            LocalDateTime dayEnd = day.plusDays(1).atStartOfDay();
+            boolean wholeDay = start.isBefore(dayStart) && !end.isBefore(dayEnd);
+
+            DayLevels part;
+            if (wholeDay && day.isBefore(today)) {
+                part = cachedDay(patientId, day);
+            } else {
+                LocalDateTime from = start.isBefore(dayStart) ? dayStart.minusNanos(1) : start;
+                LocalDateTime to = end.isBefore(dayEnd) ? end : dayEnd;
+                part = new DayLevels(read(patientId, from, to), false);
+            }
+            parts.add(part);
+            sourceCount += part.rawCount;
+        }
+
+        // Each day gets a share of the budget by its fix count, then one final pass hits the target
+        Track combined = new Track();
+        for (DayLevels part : parts) {
+            int share = sourceCount == 0 ? 0
+                    : (int) Math.ceil((double) targetPoints * part.rawCount / sourceCount);
+            combined.addAll(part.level(share));
+        }
+        Track reduced = combined.select(Lttb.downsample(combined, targetPoints));
+
+        List<TrackPoint> points = new ArrayList<>(reduced.size());
+        for (int i = 0; i < reduced.size(); i++) {
+            points.add(new TrackPoint(reduced.getLatitude(i), reduced.getLongitude(i),
+                    FixVisitor.fromTime(reduced.getTime(i))));
+        }
+        return new DownsampledHistory(points, sourceCount);
+    }
+
+    /**
+     * Drop cached levels for days that just received fixes
+     */
+    public void invalidate(String patientId, Collection<LocalDate> changedDays) {
+        synchronized (this) {
+            for (LocalDate day : changedDays) {
+                days.remove(key(patientId, day));
+            }
+            invalidations++;
+        }
+    }
+
+    public synchronized int cachedDays() {
+        return days.size();
+    }
+
+    private DayLevels cachedDay(String patientId, LocalDate day) {
+        String key = key(patientId, day);
+        long invalidationsAtLoad;
+        synchronized (this) {
+            DayLevels levels = days.get(key);
+            if (levels != null) {
+                hitCounter.increment();
+                return levels;
+            }
+            invalidationsAtLoad = invalidations;
+        }
+
+        missCounter.increment();
+        DayLevels levels = new DayLevels(read(patientId, day.atStartOfDay().minusNanos(1),
+                day.plusDays(1).atStartOfDay()), true);
+        synchronized (this) {
+            if (invalidations == invalidationsAtLoad) {
+                days.put(key, levels);
+            }
+        }
+        return levels;
+    }
+
+    private Track read(String patientId, LocalDateTime from, LocalDateTime to) {
+        Track track = new Track();
+        locationStore.visitRange(patientId, from, to, track::add);
+        return track;
+    }
+
+    private static String key(String patientId, LocalDate day) {
+        return patientId + "|" + day;
+    }
+
+    /**
+     * One day's track at decreasing resolutions
+     */
+    private static class DayLevels {
+
+        private final int rawCount;
+
+        private final Track[] levels;
+
+        DayLevels(Track raw, boolean precompute) {
+            rawCount = raw.size();
+            if (!precompute) {
+                levels = new Track[]{raw};
+                return;
+            }
+            // Each level is reduced from the previous one; raw fixes are not kept
+            levels = new Track[LEVELS.length];
+            Track source = raw;
+            for (int i = 0; i < LEVELS.length; i++) {
+                levels[i] = source.select(Lttb.downsample(source, LEVELS[i]));
+                source = levels[i];
+            }
+        }
+
+        /**
+         * Coarsest track with at least the requested number of points, or the finest available
+         */
+        Track level(int points) {
+            for (int i = levels.length - 1; i >= 0; i--) {
+                if (levels[i].size() >= points) {
+                    return levels[i];
+                }
+            }
+            return levels[0];
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.geo.GeoMath;
+import com.dementiatracker.model.Location;
+import com.dementiatracker.model.User;
+import com.dementiatracker.repository.LocationStore;
+import com.dementiatracker.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Raises NO_MOVEMENT alerts when a patient has not moved more than
+ * min-movement-meters for their threshold. Every patient has one pending
+ * deadline on a timing wheel; a fix that moves the patient re-arms it in
+ * O(1) and a fix that does not leaves it alone, so a patient whose device
+ * stops reporting is caught the same way. No periodic query is needed.
+ *
+ * A deadline falling inside the patient's quiet hours is pushed to the end
+ * of the quiet period. One alert is raised per episode; the next movement
+ * starts a new one. At startup patients are armed from their newest fix,
+ * skipping those already overdue.
+ */
+@Component
+@Slf4j
+public class InactivityMonitor {
+
+    @Autowired
+    private AlertService alertService;
+
+    @Autowired
+    private LocationStore locationStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inactivity.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inactivity.default-threshold-minutes:120}")
+    private int defaultThresholdMinutes;
+
+    @Value("${inactivity.min-movement-meters:50}")
+    private double minMovementMeters;
+
+    @Value("${inactivity.quiet-hours.start:}")
+    private String defaultQuietStart;
+
+    @Value("${inactivity.quiet-hours.end:}")
+    private String defaultQuietEnd;
+
+    @Value("${inactivity.wheel.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${inactivity.wheel.size:4096}")
+    private int wheelSize;
+
+    private final ConcurrentHashMap<String, Watch> watches = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Settings> settings = new ConcurrentHashMap<>();
+
+    private Settings defaults;
+
+    private ExecutorService alertExecutor;
+
+    private TimingWheel wheel;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        defaults = new Settings(defaultThresholdMinutes, QuietHours.parse(defaultQuietStart, defaultQuietEnd));
+        for (User patient : userRepository.findInactivitySettings()) {
+            settings.put(patient.getPatientId(), settingsOf(patient.getInactivityThresholdMinutes(),
+                    patient.getQuietHoursStart(), patient.getQuietHoursEnd()));
+        }
+
+        alertExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inactivity-alerts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        wheel = new TimingWheel("inactivity-timer", tickMillis, wheelSize, alertExecutor);
+        wheel.start();
+        Gauge.builder("inactivity.armed", wheel, TimingWheel::size).register(meterRegistry);
+
+        long now = System.currentTimeMillis();
+        for (Location location : locationStore.findLatestPerPatient()) {
+            Watch watch = new Watch(location);
+            long deadline = watch.anchorTime + settingsFor(location.getPatientId()).thresholdMillis;
+            if (deadline > now) {
+                watch.timeout = wheel.schedule(() -> expire(location.getPatientId(), watch), deadline);
+                watches.put(location.getPatientId(), watch);
+            }
+        }
+        log.info("Inactivity monitor armed for {} patients, default threshold {} minutes",
+                watches.size(), defaultThresholdMinutes);
+    }
+
+    /**
+     * Feed fixes in timestamp order. Only a fix farther than
+     * min-movement-meters from where the patient last moved re-arms their
+     * deadline.
+     */
+    public void onFixes(String patientId, List<Location> locations) {
+        if (!enabled) {
+            return;
+        }
+        Watch current = watches.get(patientId);
+        Location newest = null;
+        for (Location location : locations) {
+            if (current == null || GeoMath.distance(current.anchorLatitude, current.anchorLongitude,
+                    location.getLatitude(), location.getLongitude()) > minMovementMeters) {
+                newest = location;
+            }
+        }
+        if (newest == null) {
+            return;
+        }
+
+        Watch watch = watches.computeIfAbsent(patientId, id -> new Watch(null));
+        synchronized (watch) {
+            long fixTime = toMillis(newest.getTimestamp());
+            if (fixTime < watch.anchorTime) {
+                return; // Late fix, the patient already moved after it
+            }
+            watch.anchor(newest, fixTime);
+            arm(patientId, watch, fixTime + settingsFor(patientId).thresholdMillis);
+        }
+    }
+
+    /**
+     * Change a patient's threshold and quiet hours; a pending deadline is
+     * moved to the new threshold right away
+     */
+    public void updateSettings(String patientId, Integer thresholdMinutes, String quietStart, String quietEnd) {
+        Settings updated = settingsOf(thresholdMinutes, quietStart, quietEnd);
+        if (!enabled) {
+            return;
+        }
+        settings.put(patientId, updated);
+
+        Watch watch = watches.get(patientId);
+        if (watch != null) {
+            synchronized (watch) {
+                if (watch.timeout != null) {
+                    arm(patientId, watch, watch.anchorTime + updated.thresholdMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * Validate settings as given by a client
+     *
+     * @throws RuntimeException if a time is malformed or the threshold is not positive
+     */
+    public static void validate(Integer thresholdMinutes, String quietStart, String quietEnd) {
+        if (thresholdMinutes != null && thresholdMinutes <= 0) {
+            throw new RuntimeException("Inactivity threshold must be positive");
+        }
+        QuietHours.parse(quietStart, quietEnd);
+    }
+
+    private void expire(String patientId, Watch watch) {
+        double latitude;
+        double longitude;
+        LocalDateTime since;
+        synchronized (watch) {
+            if (watch.timeout == null || System.currentTimeMillis() < watch.timeout.getDeadline()) {
+                return; // Re-armed after this timeout was taken off the wheel
+            }
+            QuietHours quiet = settingsFor(patientId).quietHours;
+            LocalDateTime now = LocalDateTime.now();
+            if (quiet != null && quiet.contains(now.toLocalTime())) {
+                arm(patientId, watch, toMillis(quiet.nextEnd(now)));
+                return;
+            }
+            watch.timeout = null;
+            latitude = watch.anchorLatitude;
+            longitude = watch.anchorLongitude;
+            since = LocalDateTime.ofInstant(Instant.ofEpochMilli(watch.anchorTime), ZoneId.systemDefault());
+        }
+
+        try {
+            alertService.createNoMovementAlert(patientId, latitude, longitude, since);
+        } catch (Exception e) {
+            log.error("Failed to raise no-movement alert for patient {}: {}", patientId, e.getMessage());
+        }
+    }
+
+    // Caller holds the watch lock
+    private void arm(String patientId, Watch watch, long deadline) {
+        if (watch.timeout != null) {
+            watch.timeout.cancel();
+        }
+        watch.timeout = wheel.schedule(() -> expire(patientId, watch), deadline);
+    }
+
+    private Settings settingsFor(String patientId) {
+        return settings.getOrDefault(patientId, defaults);
+    }
+
+    private Settings settingsOf(Integer thresholdMinutes, String quietStart, String quietEnd) {
+        validate(thresholdMinutes, quietStart, quietEnd);
+        int minutes = thresholdMinutes != null ? thresholdMinutes : defaultThresholdMinutes;
+        QuietHours quiet = quietStart != null ? QuietHours.parse(quietStart, quietEnd)
+                : defaults != null ? defaults.quietHours : null;
+        return new Settings(minutes, quiet);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (wheel != null) {
+            wheel.stop();
+            alertExecutor.shutdownNow();
+        }
+    }
+
+    private static class Watch {
+        private double anchorLatitude;
+        private double anchorLongitude;
+        private long anchorTime = Long.MIN_VALUE; // When the patient was last seen moving
+        private TimingWheel.Timeout timeout;
+
+        private Watch(Location location) {
+            if (location != null) {
+                anchor(location, toMillis(location.getTimestamp()));
+            }
+        }
+
+        private void anchor(Location location, long time) {
+            anchorLatitude = location.getLatitude();
+            anchorLongitude = location.getLongitude();
+            anchorTime = time;
+        }
+    }
+
+    private static class Settings {
+        private final long thresholdMillis;
+        private final QuietHours quietHours;
+
+        private Settings(int thresholdMinutes, QuietHours quietHours) {
+            this.thresholdMillis = thresholdMinutes * 60_000L;
+            this.quietHours = quietHours;
+        }
+    }
+
+    private static class QuietHours {
+        private final LocalTime start;
+        private final LocalTime end;
+
+        private QuietHours(LocalTime start, LocalTime end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return null if both times are blank
+         */
+        private static QuietHours parse(String start, String end) {
+            boolean noStart = start == null || start.isEmpty();
+            boolean noEnd = end == null || end.isEmpty();
+            if (noStart && noEnd) {
+                return null;
+            }
+            if (noStart || noEnd) {
+                throw new RuntimeException("Quiet hours need both a start and an end");
+            }
+            try {
+                return new QuietHours(LocalTime.parse(start), LocalTime.parse(end));
+            } catch (DateTimeParseException e) {
+                throw new RuntimeException("Quiet hours must be given as HH:mm");
+            }
+        }
+
+        // Periods may wrap past midnight, e.g. 22:00-07:00
+        private boolean contains(LocalTime time) {
+            if (start.isBefore(end)) {
+                return !time.isBefore(start) && time.isBefore(end);
+            }
+            return !time.isBefore(start) || time.isBefore(end);
+        }
+
+        private LocalDateTime nextEnd(LocalDateTime now) {
+            LocalDateTime end = now.toLocalDate().atTime(this.end);
+            return end.isAfter(now) ? end : end.plusDays(1);
+        }
+    }
+}
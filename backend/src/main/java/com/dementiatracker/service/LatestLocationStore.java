@@ -0,0 +1,89 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.Location;
+import com.dementiatracker.repository.LocationStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Newest known fix per patient, served from memory.
+ *
+ * Staleness: an entry is the newest fix ingested through LocationService on
+ * this instance (or found in MongoDB at warm-up), including fixes still in
+ * the write-behind buffer. Older fixes replayed in a batch never replace a
+ * newer entry. A patient with no entry is a cold miss and falls back to
+ * MongoDB once; the result is kept for subsequent lookups.
+ */
+@Component
+@Slf4j
+public class LatestLocationStore {
+
+    @Autowired
+    private LocationStore locationStore;
+
+    @Value("${location.latest.warm-on-startup:true}")
+    private boolean warmOnStartup;
+
+    private final ConcurrentHashMap<String, Location> latest = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void warm() {
+        if (!warmOnStartup) {
+            return;
+        }
+
+        List<Location> locations = locationStore.findLatestPerPatient();
+        locations.forEach(this::update);
+        log.info("Warmed latest location store with {} patients", latest.size());
+    }
+
+    /**
+     * Record a fix, keeping it only if it is newer than the current entry
+     */
+    public void update(Location location) {
+        latest.merge(location.getPatientId(), location,
+                (current, candidate) -> isNewer(candidate, current) ? candidate : current);
+    }
+
+    /**
+     * Get the newest fix for a patient, falling back to MongoDB on a cold miss
+     */
+    public Optional<Location> get(String patientId) {
+        Location location = latest.get(patientId);
+        if (location != null) {
+            return Optional.of(location);
+        }
+
+        Optional<Location> stored = locationStore.findLatest(patientId);
+        stored.ifPresent(this::update);
+        return stored.map(found -> latest.getOrDefault(patientId, found));
+    }
+
+    /**
+     * Get the newest fix for many patients; patients without any fix are omitted
+     */
+    public Map<String, Location> getAll(Collection<String> patientIds) {
+        Map<String, Location> result = new LinkedHashMap<>();
+        for (String patientId : patientIds) {
+            get(patientId).ifPresent(location -> result.put(patientId, location));
+        }
+        return result;
+    }
+
+    private boolean isNewer(Location candidate, Location current) {
+        if (current.getTimestamp() == null) {
+            return true;
+        }
+        return candidate.getTimestamp() != null && !candidate.getTimestamp().isBefore(current.getTimestamp());
+    }
+}
@@ -0,0 +1,172 @@
+package com.dementiatracker.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous location ingest. Fixes are queued on a shard chosen by
+ * patientId and processed by that shard's single worker thread, so fixes
+ * for one patient keep their order without any global lock.
+ */
+@Service
+@Slf4j
+public class LocationIngestService {
+
+    public enum OverflowPolicy {
+        REJECT, // Refuse the new fix when the shard queue is full
+        SHED_OLDEST // Drop the oldest queued fix to make room for the new one
+    }
+
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${location.ingest.shards:4}")
+    private int shardCount;
+
+    @Value("${location.ingest.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${location.ingest.overflow-policy:REJECT}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${location.ingest.shutdown-timeout-seconds:10}")
+    private long shutdownTimeoutSeconds;
+
+    private ThreadPoolExecutor[] shards;
+
+    private Counter acceptedCounter;
+
+    private Counter rejectedCounter;
+
+    private Counter shedCounter;
+
+    private Counter failedCounter;
+
+    private Timer processingTimer;
+
+    @PostConstruct
+    public void start() {
+        acceptedCounter = meterRegistry.counter("location.ingest.fixes", "outcome", "accepted");
+        rejectedCounter = meterRegistry.counter("location.ingest.fixes", "outcome", "rejected");
+        shedCounter = meterRegistry.counter("location.ingest.fixes", "outcome", "shed");
+        failedCounter = meterRegistry.counter("location.ingest.fixes", "outcome", "failed");
+        processingTimer = meterRegistry.timer("location.ingest.processing");
+
+        shards = new ThreadPoolExecutor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String threadName = "location-ingest-" + i;
+            ThreadPoolExecutor shard = new ThreadPoolExecutor(
+                    1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> new Thread(runnable, threadName),
+                    overflowHandler());
+            shards[i] = shard;
+
+            Gauge.builder("location.ingest.queue.depth", shard, s -> s.getQueue().size())
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+
+        log.info("Started async location ingest with {} shards, queue capacity {}, overflow policy {}",
+                shardCount, queueCapacity, overflowPolicy);
+    }
+
+    /**
+     * Queue a location fix for asynchronous processing. The fix keeps the
+     * device timestamp, or the time it was received when there is none,
+     * however long it waits in the queue.
+     *
+     * @return true if the fix was queued, false if it was rejected for backpressure
+     */
+    public boolean submit(String patientId, double latitude, double longitude, double accuracy,
+            LocalDateTime timestamp, String source) {
+        // Validated here because the shard is chosen from the id and failures in the worker are only logged
+        LocalDateTime fixTime = locationService.validateFix(patientId, latitude, longitude, timestamp);
+        ThreadPoolExecutor shard = shards[Math.floorMod(patientId.hashCode(), shards.length)];
+
+        try {
+            shard.execute(() -> process(patientId, latitude, longitude, accuracy, fixTime, source));
+            acceptedCounter.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            return false;
+        }
+    }
+
+    private void process(String patientId, double latitude, double longitude, double accuracy,
+            LocalDateTime fixTime, String source) {
+        processingTimer.record(() -> {
+            try {
+                locationService.updateLocation(patientId, latitude, longitude, accuracy, fixTime, source);
+            } catch (Exception e) {
+                failedCounter.increment();
+                log.error("Async location update failed for patient {}: {}", patientId, e.getMessage());
+            }
+        });
+    }
+
+    private RejectedExecutionHandler overflowHandler() {
+        if (overflowPolicy == OverflowPolicy.SHED_OLDEST) {
+            return (runnable, executor) -> {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("Location ingest is shutting down");
+                }
+                if (executor.getQueue().poll() != null) {
+                    shedCounter.increment();
+                }
+                executor.execute(runnable);
+            };
+        }
+        return new ThreadPoolExecutor.AbortPolicy();
+    }
+
+    /**
+     * Total number of fixes waiting across all shards
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor shard : shards) {
+            depth += shard.getQueue().size();
+        }
+        return depth;
+    }
+
+    /**
+     * Stop accepting fixes and drain what is already queued
+     */
+    @PreDestroy
+    public void stop() {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+        for (ThreadPoolExecutor shard : shards) {
+            try {
+                if (!shard.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                    log.warn("Dropping {} queued location fixes on shutdown", shard.shutdownNow().size());
+                }
+            } catch (InterruptedException e) {
+                shard.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
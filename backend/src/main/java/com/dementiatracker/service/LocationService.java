@@ -1,25 +1,42 @@
 package com.dementiatracker.service;
 
+import com.dementiatracker.dto.LocationPage;
+import com.dementiatracker.dto.LocationUpdateRequest;
+import com.dementiatracker.dto.TrackPoint;
+import com.dementiatracker.geo.FixVisitor;
+import com.dementiatracker.geo.ZoneIndex;
 import com.dementiatracker.model.Alert;
 import com.dementiatracker.model.Location;
 import com.dementiatracker.model.SafeZone;
-import com.dementiatracker.repository.LocationRepository;
+import com.dementiatracker.repository.LocationStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class LocationService {
 
     @Autowired
-    private LocationRepository locationRepository;
+    private LocationStore locationStore;
 
     @Autowired
     private GeofencingService geofencingService;
@@ -27,66 +44,221 @@ public class LocationService {
     @Autowired
     private AlertService alertService;
 
+    @Autowired
+    private GeofenceStateTracker geofenceStateTracker;
+
+    @Autowired
+    private GeofenceHysteresis geofenceHysteresis;
+
     @Autowired
     private ShipdayService shipdayService;
 
+    @Autowired
+    private LocationWriteBuffer locationWriteBuffer;
+
+    @Autowired
+    private LatestLocationStore latestLocationStore;
+
+    @Autowired
+    private TrajectoryCompressor trajectoryCompressor;
+
+    @Autowired
+    private HistoryDownsampler historyDownsampler;
+
+    @Autowired
+    private InactivityMonitor inactivityMonitor;
+
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Value("${location.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${location.history.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${location.max-clock-skew-seconds:60}")
+    private long maxClockSkewSeconds;
+
     /**
      * Update patient location and check geofencing
      */
     public Location updateLocation(String patientId, double latitude, double longitude, String source) {
+        return updateLocation(patientId, latitude, longitude, 0, LocalDateTime.now(), source);
+    }
+
+    /**
+     * Update patient location with GPS accuracy and the device fix time, or
+     * null to use the server time
+     */
+    public Location updateLocation(String patientId, double latitude, double longitude, double accuracy,
+            LocalDateTime timestamp, String source) {
+        timestamp = validateFix(patientId, latitude, longitude, timestamp);
         log.info("Updating location for patient {}: ({}, {}) from {}", patientId, latitude, longitude, source);
         // Save new location
         Location location = new Location();
         location.setPatientId(patientId);
         location.setLatitude(latitude);
         location.setLongitude(longitude);
-        location.setTimestamp(LocalDateTime.now());
+        location.setAccuracy(accuracy);
+        location.setTimestamp(timestamp);
         location.setSource(source);
 
-        Location savedLocation = locationRepository.save(location);
+        List<Location> stored = persist(patientId, Collections.singletonList(location));
+        Location savedLocation = stored.isEmpty() ? location : stored.get(0);
+        latestLocationStore.update(savedLocation);
 
         // Send real-time location update via WebSocket
         messagingTemplate.convertAndSend("/topic/location/" + patientId, savedLocation);
 
         // Check geofencing violations
-        checkGeofencing(patientId, savedLocation);
+        checkGeofencing(patientId, Collections.singletonList(savedLocation));
+        inactivityMonitor.onFixes(patientId, Collections.singletonList(savedLocation));
 
         return savedLocation;
     }
 
     /**
-     * Check if patient has violated any safe zones
+     * Update patient location from a batch of buffered fixes.
+     * The batch is written with one bulk insert, geofencing is evaluated once
+     * in timestamp order, and only the newest position is published.
+     */
+    public List<Location> updateLocations(String patientId, List<LocationUpdateRequest> fixes, String source) {
+        if (fixes == null || fixes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (fixes.size() > maxBatchSize) {
+            throw new RuntimeException("Batch exceeds maximum of " + maxBatchSize + " locations");
+        }
+        log.info("Updating {} buffered locations for patient {} from {}", fixes.size(), patientId, source);
+
+        // Every fix is checked before anything is stored, so a bad one fails the whole batch
+        List<Location> locations = new ArrayList<>(fixes.size());
+        for (int i = 0; i < fixes.size(); i++) {
+            LocationUpdateRequest fix = fixes.get(i);
+            if (fix.getPatientId() != null && !fix.getPatientId().equals(patientId)) {
+                throw new RuntimeException("Location " + i + ": patient id does not match the batch");
+            }
+            LocalDateTime timestamp;
+            try {
+                timestamp = validateFix(patientId, fix.getLatitude(), fix.getLongitude(), fix.getTimestamp());
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Location " + i + ": " + e.getMessage());
+            }
+            Location location = new Location();
+            location.setPatientId(patientId);
+            location.setLatitude(fix.getLatitude());
+            location.setLongitude(fix.getLongitude());
+            location.setAccuracy(fix.getAccuracy());
+            location.setTimestamp(timestamp);
+            location.setSource(source);
+            locations.add(location);
+        }
+        locations.sort(Comparator.comparing(Location::getTimestamp));
+
+        persist(patientId, locations);
+
+        // Only the newest position is relevant to live dashboards
+        Location newest = locations.get(locations.size() - 1);
+        latestLocationStore.update(newest);
+        messagingTemplate.convertAndSend("/topic/location/" + patientId, newest);
+
+        checkGeofencing(patientId, locations);
+        inactivityMonitor.onFixes(patientId, locations);
+
+        return locations;
+    }
+
+    /**
+     * Check a fix before it is stored or queued: a patient id, coordinates in
+     * range, and a fix time no further ahead of the server clock than
+     * max-clock-skew-seconds
+     *
+     * @return the fix time, or the server time when the device sent none
      */
-    private void checkGeofencing(String patientId, Location location) {
-        boolean inAnyZone = geofencingService.isInAnySafeZone(patientId, location);
-        List<SafeZone> activeZones = geofencingService.getActiveSafeZones(patientId);
+    public LocalDateTime validateFix(String patientId, double latitude, double longitude, LocalDateTime timestamp) {
+        if (patientId == null || patientId.isEmpty()) {
+            throw new RuntimeException("Patient id is required");
+        }
+        if (!(latitude >= -90 && latitude <= 90)) {
+            throw new RuntimeException("Latitude must be between -90 and 90");
+        }
+        if (!(longitude >= -180 && longitude <= 180)) {
+            throw new RuntimeException("Longitude must be between -180 and 180");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (timestamp == null) {
+            return now;
+        }
+        if (timestamp.isAfter(now.plusSeconds(maxClockSkewSeconds))) {
+            throw new RuntimeException("Location timestamp is in the future");
+        }
+        return timestamp;
+    }
+
+    /**
+     * Store new locations, either directly or through the write-behind buffer.
+     * Fixes dropped by trajectory compression are not stored at all; every
+     * fix is still published and geofenced by the caller.
+     *
+     * @return The locations that were (or will be) stored
+     */
+    private List<Location> persist(String patientId, List<Location> locations) {
+        List<Location> toStore = trajectoryCompressor.selectForStorage(patientId, locations);
+        if (toStore.isEmpty()) {
+            return toStore;
+        }
+
+        // Late fixes for past days change their precomputed map tracks
+        LocalDate today = LocalDate.now();
+        Set<LocalDate> pastDays = toStore.stream()
+                .map(location -> location.getTimestamp().toLocalDate())
+                .filter(day -> day.isBefore(today))
+                .collect(Collectors.toSet());
+        if (!pastDays.isEmpty()) {
+            historyDownsampler.invalidate(patientId, pastDays);
+        }
+
+        if (locationWriteBuffer.isEnabled()) {
+            locationWriteBuffer.add(toStore);
+            return toStore;
+        }
+        return locationStore.insert(toStore);
+    }
+
+    /**
+     * Check if patient has violated any safe zones.
+     * Locations must be in timestamp order. The patient's in-memory geofence
+     * state and the hysteresis policy decide transitions, so only a committed
+     * exit or re-entry touches alerts.
+     */
+    private void checkGeofencing(String patientId, List<Location> locations) {
+        ZoneIndex activeZones = geofencingService.getZoneIndex(patientId);
+
+        if (activeZones.isEmpty()) {
+            return;
+        }
+
+        GeofenceStateTracker.GeofenceState state = geofenceStateTracker.getState(patientId);
 
-        if (!activeZones.isEmpty()) {
-            if (!inAnyZone) {
-                // Patient is outside of all their safe zones
-                // Check if we already have an unacknowledged exit alert
-                List<Alert> existingAlerts = alertService.getUnacknowledgedAlerts(patientId);
-                boolean alreadyAlerted = existingAlerts.stream()
-                        .anyMatch(a -> a.getType() == Alert.AlertType.ZONE_EXIT);
+        // Concurrent fixes for the same patient must not both see "not yet alerted"
+        synchronized (state) {
+            for (Location location : locations) {
+                GeofenceHysteresis.Transition transition = geofenceHysteresis.evaluate(state, activeZones, location);
 
-                if (!alreadyAlerted) {
+                if (transition == GeofenceHysteresis.Transition.EXIT) {
+                    // Patient has left all of their safe zones
                     // For now, we take the first zone as a reference for the alert
-                    SafeZone zone = activeZones.get(0);
-                    alertService.createZoneExitAlert(patientId, zone, location);
-                }
-            } else {
-                // Patient is inside at least one zone
-                // If they were previously outside, we could send a "back in zone" alert
-                // and acknowledge previous exit alerts
-                List<Alert> unacknowledgedExitAlerts = alertService.getUnacknowledgedAlerts(patientId).stream()
-                        .filter(a -> a.getType() == Alert.AlertType.ZONE_EXIT)
-                        .collect(java.util.stream.Collectors.toList());
-
-                for (Alert alert : unacknowledgedExitAlerts) {
-                    alertService.acknowledgeAlert(alert.getId(), "SYSTEM_REENTRY");
+                    SafeZone zone = activeZones.getZones().get(0);
+                    Alert alert = alertService.createZoneExitAlert(patientId, zone, location);
+                    state.markOutside(alert.getId());
+                } else if (transition == GeofenceHysteresis.Transition.ENTRY) {
+                    // Patient is back inside at least one zone, acknowledge previous exit alerts
+                    List<String> exitAlertIds = state.markInside();
+                    if (!exitAlertIds.isEmpty()) {
+                        alertService.acknowledgeAlerts(patientId, exitAlertIds, null,
+                                AlertService.REENTRY_ACKNOWLEDGER);
+                    }
                 }
             }
         }
@@ -109,20 +281,142 @@ public class LocationService {
      * Get current location for a patient
      */
     public Optional<Location> getCurrentLocation(String patientId) {
-        return locationRepository.findFirstByPatientIdOrderByTimestampDesc(patientId);
+        return latestLocationStore.get(patientId);
+    }
+
+    /**
+     * Get current locations for many patients, keyed by patient ID
+     */
+    public Map<String, Location> getCurrentLocations(Collection<String> patientIds) {
+        return latestLocationStore.getAll(patientIds);
     }
 
     /**
      * Get location history for a patient
      */
     public List<Location> getLocationHistory(String patientId) {
-        return locationRepository.findByPatientIdOrderByTimestampDesc(patientId);
+        return locationStore.findHistory(patientId);
     }
 
     /**
      * Get location history within time range
      */
     public List<Location> getLocationHistory(String patientId, LocalDateTime start, LocalDateTime end) {
-        return locationRepository.findByPatientIdAndTimestampBetween(patientId, start, end);
+        return locationStore.findRange(patientId, start, end);
+    }
+
+    /**
+     * Get one page of location history, newest first
+     *
+     * @param cursor nextCursor of the previous page, or null for the first page
+     */
+    public LocationPage getLocationHistoryPage(String patientId, String cursor, int limit) {
+        String[] after = decodeCursor(cursor);
+        List<Location> locations = locationStore.findHistoryPage(patientId, afterTimestamp(after), afterId(after),
+                checkPageSize(limit) + 1);
+        return toPage(locations, limit);
+    }
+
+    /**
+     * Get one page of location history within time range, oldest first
+     *
+     * @param cursor nextCursor of the previous page, or null for the first page
+     */
+    public LocationPage getLocationHistoryPage(String patientId, LocalDateTime start, LocalDateTime end,
+            String cursor, int limit) {
+        String[] after = decodeCursor(cursor);
+        List<Location> locations = locationStore.findRangePage(patientId, start, end, afterTimestamp(after),
+                afterId(after), checkPageSize(limit) + 1);
+        return toPage(locations, limit);
+    }
+
+    /**
+     * Feed location history to the consumer, newest first, without loading it all
+     */
+    public void streamLocationHistory(String patientId, Consumer<Location> consumer) {
+        locationStore.streamHistory(patientId, consumer);
+    }
+
+    /**
+     * Feed location history within time range to the consumer, oldest first, without loading it all
+     */
+    public void streamLocationHistory(String patientId, LocalDateTime start, LocalDateTime end,
+            Consumer<Location> consumer) {
+        locationStore.streamRange(patientId, start, end, consumer);
+    }
+
+    /**
+     * Feed location history to the visitor, newest first, as bare coordinates and times
+     */
+    public void visitLocationHistory(String patientId, FixVisitor visitor) {
+        locationStore.visitHistory(patientId, visitor);
+    }
+
+    /**
+     * Feed location history within time range to the visitor, oldest first, as bare coordinates and times
+     */
+    public void visitLocationHistory(String patientId, LocalDateTime start, LocalDateTime end, FixVisitor visitor) {
+        locationStore.visitRange(patientId, start, end, visitor);
+    }
+
+    /**
+     * Get map points (coordinates and time only) within time range, oldest first.
+     * Read through the store's projected visit path, so no Location is mapped.
+     */
+    public List<TrackPoint> getHistoryPoints(String patientId, LocalDateTime start, LocalDateTime end) {
+        List<TrackPoint> points = new ArrayList<>();
+        locationStore.visitRange(patientId, start, end, (latitude, longitude, time) ->
+                points.add(new TrackPoint(latitude, longitude, FixVisitor.fromTime(time))));
+        return points;
+    }
+
+    private int checkPageSize(int limit) {
+        if (limit < 1 || limit > maxPageSize) {
+            throw new RuntimeException("Page size must be between 1 and " + maxPageSize);
+        }
+        return limit;
+    }
+
+    // One extra fix is fetched to tell whether another page follows
+    private LocationPage toPage(List<Location> locations, int limit) {
+        if (locations.size() <= limit) {
+            return new LocationPage(locations, null);
+        }
+        List<Location> page = new ArrayList<>(locations.subList(0, limit));
+        Location last = page.get(limit - 1);
+        return new LocationPage(page, encodeCursor(last));
+    }
+
+    /**
+     * Cursors are opaque to clients: the (timestamp, id) of the last fix returned
+     */
+    private static String encodeCursor(Location last) {
+        String key = last.getTimestamp() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = key.split("\\|", 2);
+            LocalDateTime.parse(parts[0]);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new IllegalArgumentException();
+            }
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    private static LocalDateTime afterTimestamp(String[] cursor) {
+        return cursor == null ? null : LocalDateTime.parse(cursor[0]);
+    }
+
+    private static String afterId(String[] cursor) {
+        return cursor == null ? null : cursor[1];
     }
 }
@@ -0,0 +1,213 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.Location;
+import com.dementiatracker.repository.LocationStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for Location documents. Fixes are collected in memory
+ * and written with one bulk insert when either max-batch-size fixes are
+ * pending or max-delay-ms has elapsed since the last flush. Both kinds of
+ * flush run on the buffer's own flusher thread, so request threads never
+ * wait on MongoDB. At most max-pending fixes are held; fixes beyond that
+ * (MongoDB down or slower than ingest) are dropped and counted.
+ *
+ * Durability: a crash loses whatever is pending (reported by the pending
+ * gauge). A graceful shutdown flushes everything.
+ */
+@Component
+@Slf4j
+public class LocationWriteBuffer {
+
+    @Autowired
+    private LocationStore locationStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${location.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${location.write-behind.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${location.write-behind.max-delay-ms:1000}")
+    private long maxDelayMs;
+
+    @Value("${location.write-behind.max-pending:10000}")
+    private int maxPending;
+
+    private final Object lock = new Object();
+
+    private List<Location> pending = new ArrayList<>();
+
+    // Set while a size-triggered flush is queued, so a burst of adds queues only one
+    private boolean flushRequested;
+
+    private ScheduledExecutorService flusher;
+
+    // Batches whose insert failed; retried with idempotent saves since part of them may be stored
+    private List<Location> retry = new ArrayList<>();
+
+    private Timer flushTimer;
+
+    private DistributionSummary batchSizeSummary;
+
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void init() {
+        flushTimer = meterRegistry.timer("location.write-behind.flush");
+        batchSizeSummary = meterRegistry.summary("location.write-behind.batch.size");
+        droppedCounter = meterRegistry.counter("location.write-behind.dropped");
+        Gauge.builder("location.write-behind.pending", this, LocationWriteBuffer::getPendingCount)
+                .register(meterRegistry);
+
+        if (enabled) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "location-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, maxDelayMs, maxDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffer locations for the next group commit. Ids are assigned up front
+     * so the documents published before the flush match what gets stored.
+     * Never writes on the calling thread: a full batch only wakes the flusher.
+     */
+    public void add(List<Location> locations) {
+        for (Location location : locations) {
+            if (location.getId() == null) {
+                location.setId(new ObjectId().toHexString());
+            }
+        }
+
+        int dropped;
+        boolean requestFlush = false;
+        synchronized (lock) {
+            int room = Math.max(0, maxPending - pending.size() - retry.size());
+            int kept = Math.min(room, locations.size());
+            pending.addAll(locations.subList(0, kept));
+            dropped = locations.size() - kept;
+            if (pending.size() >= maxBatchSize && !flushRequested) {
+                flushRequested = true;
+                requestFlush = true;
+            }
+        }
+
+        if (dropped > 0) {
+            droppedCounter.increment(dropped);
+            log.warn("Dropped {} locations, write-behind buffer is full", dropped);
+        }
+        if (requestFlush) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // Shutting down; the final flush picks the fixes up
+            }
+        }
+    }
+
+    /**
+     * Write everything pending in batches of max-batch-size. Runs on the
+     * flusher thread, and on the caller during shutdown.
+     */
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        List<Location> batch;
+        List<Location> retryBatch;
+        synchronized (lock) {
+            batch = pending;
+            retryBatch = retry;
+            pending = new ArrayList<>();
+            retry = new ArrayList<>();
+            flushRequested = false;
+        }
+
+        if (!retryBatch.isEmpty()) {
+            write(retryBatch, true);
+        }
+        for (int from = 0; from < batch.size(); from += maxBatchSize) {
+            write(batch.subList(from, Math.min(from + maxBatchSize, batch.size())), false);
+        }
+    }
+
+    private void write(List<Location> batch, boolean idempotent) {
+        try {
+            flushTimer.record(() -> {
+                if (idempotent) {
+                    locationStore.save(batch);
+                } else {
+                    locationStore.insert(batch);
+                }
+            });
+            batchSizeSummary.record(batch.size());
+        } catch (Exception e) {
+            log.error("Failed to flush {} buffered locations: {}", batch.size(), e.getMessage());
+            synchronized (lock) {
+                int room = Math.max(0, maxPending - pending.size() - retry.size());
+                int kept = Math.min(room, batch.size());
+                retry.addAll(batch.subList(0, kept));
+                if (kept < batch.size()) {
+                    droppedCounter.increment(batch.size() - kept);
+                    log.warn("Dropped {} buffered locations, write-behind buffer is full", batch.size() - kept);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of fixes accepted but not yet persisted (lost on a crash)
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size() + retry.size();
+        }
+    }
+
+    /**
+     * Let a running flush finish, then write the rest on the caller
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("Write-behind flush still running at shutdown");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+}
@@ -0,0 +1,156 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.model.Location;
+import com.dementiatracker.repository.AlertRepository;
+import com.dementiatracker.repository.ArchiveStore;
+import com.dementiatracker.repository.LocationStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves aged data out of MongoDB. Fixes older than locations hot-days and
+ * acknowledged alerts older than alerts hot-days are appended to the
+ * archive and then deleted, in batches of batch-size with a pause between
+ * batches and at most max-batches-per-run per sweep, so a large backlog is
+ * worked off over several sweeps instead of competing with ingest. Open
+ * alerts are never archived.
+ *
+ * Sweeps run on their own thread, not the shared scheduler that flushes
+ * the write-behind buffer.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "retention.enabled", havingValue = "true")
+public class RetentionService {
+
+    @Autowired
+    private LocationStore locationStore;
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private ArchiveStore archiveStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${retention.locations.hot-days:90}")
+    private int locationHotDays;
+
+    @Value("${retention.alerts.hot-days:365}")
+    private int alertHotDays;
+
+    @Value("${retention.archive.enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${retention.batch-size:500}")
+    private int batchSize;
+
+    @Value("${retention.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${retention.batch-pause-ms:100}")
+    private long batchPauseMs;
+
+    @Value("${retention.interval-minutes:60}")
+    private long intervalMinutes;
+
+    private ScheduledExecutorService executor;
+
+    private Counter archivedLocations;
+
+    private Counter archivedAlerts;
+
+    private Timer sweepTimer;
+
+    @PostConstruct
+    public void start() {
+        archivedLocations = meterRegistry.counter("retention.archived", "kind", "location");
+        archivedAlerts = meterRegistry.counter("retention.archived", "kind", "alert");
+        sweepTimer = meterRegistry.timer("retention.sweep");
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "retention-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sweep, 1, intervalMinutes, TimeUnit.MINUTES);
+        log.info("Retention enabled: locations kept {} days, alerts {} days, archive {}",
+                locationHotDays, alertHotDays, archiveEnabled ? "on" : "off");
+    }
+
+    /**
+     * Run one bounded sweep over fixes, then alerts
+     */
+    public void sweep() {
+        sweepTimer.record(() -> {
+            try {
+                LocalDate today = LocalDate.now();
+                int batches = sweepLocations(today.minusDays(locationHotDays).atStartOfDay());
+                sweepAlerts(today.minusDays(alertHotDays).atStartOfDay(), maxBatchesPerRun - batches);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Retention sweep failed, retrying next run: {}", e.getMessage());
+            }
+        });
+    }
+
+    private int sweepLocations(LocalDateTime cutoff) throws InterruptedException {
+        int batches = 0;
+        while (batches < maxBatchesPerRun) {
+            List<Location> batch = locationStore.findOlderThan(cutoff, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            if (archiveEnabled) {
+                archiveStore.appendLocations(batch);
+            }
+            locationStore.delete(batch);
+            archivedLocations.increment(batch.size());
+            batches++;
+            Thread.sleep(batchPauseMs);
+        }
+        return batches;
+    }
+
+    private void sweepAlerts(LocalDateTime cutoff, int maxBatches) throws InterruptedException {
+        PageRequest firstBatch = PageRequest.of(0, batchSize, Sort.by(Sort.Direction.ASC, "triggeredAt"));
+        for (int batches = 0; batches < maxBatches; batches++) {
+            List<Alert> batch = alertRepository.findByAcknowledgedTrueAndTriggeredAtBefore(cutoff, firstBatch);
+            if (batch.isEmpty()) {
+                break;
+            }
+            if (archiveEnabled) {
+                archiveStore.appendAlerts(batch);
+            }
+            alertRepository.deleteAll(batch);
+            archivedAlerts.increment(batch.size());
+            Thread.sleep(batchPauseMs);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,108 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.geo.ZoneIndex;
+import com.dementiatracker.model.SafeZone;
+import com.dementiatracker.repository.SafeZoneRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of active safe zones per patient, held as a spatial
+ * index and used on the location hot path. SafeZoneService invalidates a
+ * patient's entry on every write.
+ */
+@Component
+public class SafeZoneCache {
+
+    @Autowired
+    private SafeZoneRepository safeZoneRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${safezone.cache.max-size:10000}")
+    private int maxSize;
+
+    private Map<String, ZoneIndex> entries;
+
+    // Bumped on every invalidation so a load racing with a zone write is not cached
+    private long invalidations;
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    private Counter evictionCounter;
+
+    @PostConstruct
+    public void init() {
+        entries = new LinkedHashMap<String, ZoneIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ZoneIndex> eldest) {
+                if (size() > maxSize) {
+                    evictionCounter.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        hitCounter = meterRegistry.counter("safezone.cache.requests", "result", "hit");
+        missCounter = meterRegistry.counter("safezone.cache.requests", "result", "miss");
+        evictionCounter = meterRegistry.counter("safezone.cache.evictions");
+        Gauge.builder("safezone.cache.size", this, SafeZoneCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Get active safe zones for a patient
+     */
+    public List<SafeZone> getActiveSafeZones(String patientId) {
+        return getZoneIndex(patientId).getZones();
+    }
+
+    /**
+     * Get the spatial index of a patient's active safe zones, building it from MongoDB on a miss
+     */
+    public ZoneIndex getZoneIndex(String patientId) {
+        long invalidationsAtLoad;
+        synchronized (this) {
+            ZoneIndex index = entries.get(patientId);
+            if (index != null) {
+                hitCounter.increment();
+                return index;
+            }
+            invalidationsAtLoad = invalidations;
+        }
+
+        missCounter.increment();
+        ZoneIndex index = ZoneIndex.build(safeZoneRepository.findByPatientIdAndActiveTrue(patientId));
+
+        synchronized (this) {
+            if (invalidations == invalidationsAtLoad) {
+                entries.put(patientId, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Drop a patient's cached zones after any safe zone write
+     */
+    public synchronized void invalidate(String patientId) {
+        entries.remove(patientId);
+        invalidations++;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
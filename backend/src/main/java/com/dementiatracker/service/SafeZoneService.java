@@ -1,5 +1,7 @@
 package com.dementiatracker.service;
 
+import com.dementiatracker.geo.GeoMath;
+import com.dementiatracker.geo.ZoneShape;
 import com.dementiatracker.model.SafeZone;
 import com.dementiatracker.repository.SafeZoneRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +16,9 @@ public class SafeZoneService {
     @Autowired
     private SafeZoneRepository safeZoneRepository;
 
+    @Autowired
+    private SafeZoneCache safeZoneCache;
+
     /**
      * Create a new safe zone
      */
@@ -21,8 +26,11 @@ public class SafeZoneService {
         safeZone.setCreatedAt(LocalDateTime.now());
         safeZone.setUpdatedAt(LocalDateTime.now());
         safeZone.setActive(true);
+        compile(safeZone);
 
-        return safeZoneRepository.save(safeZone);
+        SafeZone saved = safeZoneRepository.save(safeZone);
+        safeZoneCache.invalidate(saved.getPatientId());
+        return saved;
     }
 
     /**
@@ -50,9 +58,14 @@ public class SafeZoneService {
         zone.setCenterLatitude(updatedZone.getCenterLatitude());
         zone.setCenterLongitude(updatedZone.getCenterLongitude());
         zone.setRadiusInMeters(updatedZone.getRadiusInMeters());
+        zone.setType(updatedZone.getType());
+        zone.setVertices(updatedZone.getVertices());
         zone.setUpdatedAt(LocalDateTime.now());
+        compile(zone);
 
-        return safeZoneRepository.save(zone);
+        SafeZone saved = safeZoneRepository.save(zone);
+        safeZoneCache.invalidate(saved.getPatientId());
+        return saved;
     }
 
     /**
@@ -64,12 +77,52 @@ public class SafeZoneService {
 
         zone.setActive(false);
         safeZoneRepository.save(zone);
+        safeZoneCache.invalidate(zone.getPatientId());
     }
 
     /**
      * Permanently delete safe zone
      */
     public void permanentlyDeleteSafeZone(String zoneId) {
-        safeZoneRepository.deleteById(zoneId);
+        safeZoneRepository.findById(zoneId).ifPresent(zone -> {
+            safeZoneRepository.deleteById(zoneId);
+            safeZoneCache.invalidate(zone.getPatientId());
+        });
+    }
+
+    /**
+     * Validate a zone by compiling its containment structure.
+     * Polygon zones also get their centroid and bounding radius filled in
+     * so circle-based consumers still have a sensible center.
+     */
+    private void compile(SafeZone zone) {
+        if (zone.getType() == null) {
+            zone.setType(SafeZone.ZoneType.CIRCLE);
+        }
+
+        if (zone.getType() == SafeZone.ZoneType.POLYGON) {
+            if (zone.getVertices() == null || zone.getVertices().size() < 3) {
+                throw new RuntimeException("A polygon safe zone needs at least 3 vertices");
+            }
+
+            double latitude = zone.getVertices().stream().mapToDouble(SafeZone.Vertex::getLatitude).average()
+                    .orElse(0);
+            double longitude = zone.getVertices().stream().mapToDouble(SafeZone.Vertex::getLongitude).average()
+                    .orElse(0);
+            double radius = zone.getVertices().stream()
+                    .mapToDouble(v -> GeoMath.distance(latitude, longitude, v.getLatitude(), v.getLongitude()))
+                    .max()
+                    .orElse(0);
+
+            zone.setCenterLatitude(latitude);
+            zone.setCenterLongitude(longitude);
+            zone.setRadiusInMeters(radius);
+        }
+
+        try {
+            ZoneShape.compile(zone);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid safe zone: " + e.getMessage());
+        }
     }
 }
@@ -0,0 +1,224 @@
+package com.dementiatracker.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel: a ring of slots, each a doubly linked list of
+ * timeouts, advanced by one ticker thread every tick-millis. Scheduling and
+ * cancelling are O(1) whatever the number of pending timeouts, and a tick
+ * only visits the timeouts hashed to its slot. Deadlines further away than
+ * one revolution wait in their slot for the remaining number of rounds.
+ *
+ * Timeouts fire up to one tick late. Expired tasks are handed to the given
+ * executor so slow tasks never hold up the ticker.
+ */
+@Slf4j
+public class TimingWheel {
+
+    private final String name;
+
+    private final long tickMillis;
+
+    private final Slot[] wheel;
+
+    private final int mask;
+
+    private final Executor taskExecutor;
+
+    private final Object lock = new Object();
+
+    private final long startTime;
+
+    private long tick; // Next tick to process, guarded by lock
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    /**
+     * @param wheelSize number of slots, rounded up to a power of two
+     */
+    public TimingWheel(String name, long tickMillis, int wheelSize, Executor taskExecutor) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.name = name;
+        this.tickMillis = tickMillis;
+        this.wheel = new Slot[size];
+        this.mask = size - 1;
+        this.taskExecutor = taskExecutor;
+        this.startTime = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Slot();
+        }
+    }
+
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Run the task at (or up to one tick after) the given epoch millis
+     */
+    public Timeout schedule(Runnable task, long deadlineMillis) {
+        Timeout timeout = new Timeout(task, deadlineMillis);
+        synchronized (lock) {
+            long ticks = Math.max((deadlineMillis - startTime + tickMillis - 1) / tickMillis, tick);
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+        return timeout;
+    }
+
+    /**
+     * Number of timeouts waiting to fire
+     */
+    public int size() {
+        synchronized (lock) {
+            int size = 0;
+            for (Slot slot : wheel) {
+                size += slot.size;
+            }
+            return size;
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long wakeAt;
+            synchronized (lock) {
+                wakeAt = startTime + tick * tickMillis;
+            }
+            long sleep = wakeAt - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            List<Timeout> expired;
+            synchronized (lock) {
+                expired = wheel[(int) (tick & mask)].expire();
+                tick++;
+            }
+            for (Timeout timeout : expired) {
+                try {
+                    taskExecutor.execute(timeout.task);
+                } catch (Exception e) {
+                    log.error("Timer {} could not run an expired task: {}", name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    public final class Timeout {
+
+        private final Runnable task;
+
+        private final long deadline;
+
+        private long remainingRounds;
+
+        private Slot slot;
+
+        private Timeout prev;
+
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Remove the timeout if it has not fired yet
+         *
+         * @return true if it was still pending
+         */
+        public boolean cancel() {
+            synchronized (lock) {
+                if (slot == null) {
+                    return false;
+                }
+                slot.remove(this);
+                return true;
+            }
+        }
+    }
+
+    private static final class Slot {
+
+        private Timeout head;
+
+        private Timeout tail;
+
+        private int size;
+
+        private void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+            size++;
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.slot = null;
+            timeout.prev = null;
+            timeout.next = null;
+            size--;
+        }
+
+        private List<Timeout> expire() {
+            List<Timeout> expired = new ArrayList<>();
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    expired.add(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            return expired;
+        }
+    }
+}
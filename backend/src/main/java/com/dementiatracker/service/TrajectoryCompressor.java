@@ -0,0 +1,110 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.geo.GeoMath;
+import com.dementiatracker.model.Location;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming dead-band filter that decides which fixes are persisted. A fix
+ * is stored when it is more than dead-band-meters from the last stored fix
+ * of the patient, or max-interval-seconds after it; otherwise it is only
+ * used live (WebSocket, geofencing, current location). The stored history
+ * therefore never misplaces a dropped fix by more than dead-band-meters.
+ */
+@Component
+public class TrajectoryCompressor {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${location.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${location.compression.dead-band-meters:10}")
+    private double deadBandMeters;
+
+    @Value("${location.compression.max-interval-seconds:300}")
+    private long maxIntervalSeconds;
+
+    // Last stored fix per patient
+    private final ConcurrentHashMap<String, Location> anchors = new ConcurrentHashMap<>();
+
+    private final AtomicLong maxErrorMillimeters = new AtomicLong();
+
+    private Counter storedCounter;
+
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void init() {
+        storedCounter = meterRegistry.counter("location.compression.fixes", "decision", "stored");
+        droppedCounter = meterRegistry.counter("location.compression.fixes", "decision", "dropped");
+        Gauge.builder("location.compression.max-error.meters", maxErrorMillimeters, v -> v.get() / 1000.0)
+                .register(meterRegistry);
+        Gauge.builder("location.compression.ratio", this, TrajectoryCompressor::getStoredRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Select the fixes of one patient that should be persisted
+     *
+     * @param locations Fixes in timestamp order
+     * @return The subset to store, in the same order
+     */
+    public List<Location> selectForStorage(String patientId, List<Location> locations) {
+        if (!enabled) {
+            return locations;
+        }
+
+        List<Location> stored = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            anchors.compute(patientId, (id, anchor) -> {
+                if (anchor == null || shouldStore(anchor, location)) {
+                    stored.add(location);
+                    storedCounter.increment();
+                    return location;
+                }
+                droppedCounter.increment();
+                return anchor;
+            });
+        }
+        return stored;
+    }
+
+    private boolean shouldStore(Location anchor, Location location) {
+        if (anchor.getTimestamp() != null && location.getTimestamp() != null
+                && Duration.between(anchor.getTimestamp(), location.getTimestamp()).getSeconds() >= maxIntervalSeconds) {
+            return true;
+        }
+
+        double distance = GeoMath.distance(anchor.getLatitude(), anchor.getLongitude(),
+                location.getLatitude(), location.getLongitude());
+        if (distance > deadBandMeters) {
+            return true;
+        }
+
+        maxErrorMillimeters.accumulateAndGet(Math.round(distance * 1000), Math::max);
+        return false;
+    }
+
+    /**
+     * Fraction of fixes that were persisted
+     */
+    public double getStoredRatio() {
+        double stored = storedCounter.count();
+        double total = stored + droppedCounter.count();
+        return total == 0 ? 1.0 : stored / total;
+    }
+}
@@ -1,5 +1,6 @@
 package com.dementiatracker.service;
 
+import com.dementiatracker.dto.InactivitySettings;
 import com.dementiatracker.model.User;
 import com.dementiatracker.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,7 +8,9 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -19,6 +22,12 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private CaretakerLinkIndex caretakerLinkIndex;
+
+    @Autowired
+    private InactivityMonitor inactivityMonitor;
+
     /**
      * Register a new user
      */
@@ -67,6 +76,57 @@ public class UserService {
 
         userRepository.save(patient);
         userRepository.save(caretaker);
+
+        caretakerLinkIndex.link(shareablePatientId, caretakerId);
+    }
+
+    /**
+     * Replace the caretakers who are alerted only when a patient's alert
+     * escalates
+     */
+    public User updateSecondaryCaretakers(String shareablePatientId, Set<String> caretakerIds) {
+        User patient = userRepository.findByPatientId(shareablePatientId)
+                .orElseThrow(() -> new RuntimeException("Patient not found"));
+
+        int found = 0;
+        for (User caretaker : userRepository.findAllById(caretakerIds)) {
+            if (caretaker.getRole() != User.Role.CARETAKER) {
+                throw new RuntimeException("User is not a caretaker");
+            }
+            found++;
+        }
+        if (found != caretakerIds.size()) {
+            throw new RuntimeException("Caretaker not found");
+        }
+
+        patient.setSecondaryCaretakerIds(new HashSet<>(caretakerIds));
+        patient.setUpdatedAt(LocalDateTime.now());
+        User saved = userRepository.save(patient);
+
+        caretakerLinkIndex.setSecondaryCaretakers(shareablePatientId, saved.getSecondaryCaretakerIds());
+        return saved;
+    }
+
+    /**
+     * Set a patient's NO_MOVEMENT threshold and quiet hours; null values
+     * fall back to the server defaults
+     */
+    public User updateInactivitySettings(String shareablePatientId, InactivitySettings settings) {
+        InactivityMonitor.validate(settings.getThresholdMinutes(), settings.getQuietHoursStart(),
+                settings.getQuietHoursEnd());
+
+        User patient = userRepository.findByPatientId(shareablePatientId)
+                .orElseThrow(() -> new RuntimeException("Patient not found"));
+
+        patient.setInactivityThresholdMinutes(settings.getThresholdMinutes());
+        patient.setQuietHoursStart(settings.getQuietHoursStart());
+        patient.setQuietHoursEnd(settings.getQuietHoursEnd());
+        patient.setUpdatedAt(LocalDateTime.now());
+        User saved = userRepository.save(patient);
+
+        inactivityMonitor.updateSettings(shareablePatientId, settings.getThresholdMinutes(),
+                settings.getQuietHoursStart(), settings.getQuietHoursEnd());
+        return saved;
     }
 
     /**
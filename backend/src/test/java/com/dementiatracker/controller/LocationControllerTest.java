@@ -0,0 +1,67 @@
+package com.dementiatracker.controller;
+
+import com.dementiatracker.dto.LocationUpdateRequest;
+import com.dementiatracker.service.LocationIngestService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LocationControllerTest {
+
+    private final LocationIngestService ingest = mock(LocationIngestService.class);
+
+    private final LocationUpdateRequest request = new LocationUpdateRequest("p1", 1, 2, 5,
+            LocalDateTime.of(2024, 1, 1, 8, 0), null);
+
+    private LocationController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new LocationController();
+        ReflectionTestUtils.setField(controller, "locationIngestService", ingest);
+    }
+
+    @Test
+    void queuedFixIsAccepted() {
+        when(ingest.submit(anyString(), anyDouble(), anyDouble(), anyDouble(), any(), anyString())).thenReturn(true);
+
+        ResponseEntity<?> response = controller.updateLocationAsync(request);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        verify(ingest).submit("p1", 1, 2, 5, request.getTimestamp(), "MANUAL");
+    }
+
+    @Test
+    void fullQueueAsksClientToRetry() {
+        when(ingest.submit(anyString(), anyDouble(), anyDouble(), anyDouble(), any(), anyString())).thenReturn(false);
+
+        ResponseEntity<?> response = controller.updateLocationAsync(request);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+    }
+
+    @Test
+    void invalidFixIsBadRequest() {
+        when(ingest.submit(anyString(), anyDouble(), anyDouble(), anyDouble(), any(), anyString()))
+                .thenThrow(new RuntimeException("Latitude must be between -90 and 90"));
+
+        ResponseEntity<?> response = controller.updateLocationAsync(request);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).isEqualTo("Latitude must be between -90 and 90");
+    }
+}
@@ -0,0 +1,96 @@
+package com.dementiatracker.geo;
+
+import com.dementiatracker.model.SafeZone;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CircleZone must decide exactly like a plain haversine check, including
+ * zones across the antimeridian and around the poles
+ */
+class CircleZoneTest {
+
+    private static final int POINTS_PER_ZONE = 20000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void matchesHaversineAcrossTheAntimeridian() {
+        assertMatchesHaversine(0, 179.99, 5000);
+        assertMatchesHaversine(0, -179.99, 5000);
+        assertMatchesHaversine(52.1, 180, 800);
+        assertMatchesHaversine(-41.3, -180, 800);
+        assertMatchesHaversine(65.5, 179.9999, 100);
+        assertMatchesHaversine(-17.7, 179.5, 200000);
+        assertMatchesHaversine(0.5, 178, 3000000);
+    }
+
+    @Test
+    void matchesHaversineAroundThePoles() {
+        assertMatchesHaversine(89.99, 0, 5000);
+        assertMatchesHaversine(-89.99, 120, 5000);
+        assertMatchesHaversine(89.9, -179.95, 20000);
+        assertMatchesHaversine(88, 45, 300000);
+        assertMatchesHaversine(-85, -60, 1000000);
+    }
+
+    @Test
+    void matchesHaversineForRandomZones() {
+        for (int i = 0; i < 200; i++) {
+            double latitude = -89 + random.nextDouble() * 178;
+            double longitude = -180 + random.nextDouble() * 360;
+            double radius = Math.pow(10, random.nextDouble() * 6.5); // 1 m to about 3000 km
+            assertMatchesHaversine(latitude, longitude, radius);
+        }
+    }
+
+    @Test
+    void acceptsPointAcrossTheAntimeridian() {
+        CircleZone zone = new CircleZone(circle(0, 179.99, 5000));
+
+        // About 2.2 km east of the center, on the other side of the antimeridian
+        assertThat(GeoMath.distance(0, -179.99, 0, 179.99)).isLessThan(5000);
+        assertThat(zone.contains(0, -179.99)).isTrue();
+    }
+
+    private void assertMatchesHaversine(double latitude, double longitude, double radius) {
+        CircleZone zone = new CircleZone(circle(latitude, longitude, radius));
+        for (int i = 0; i < POINTS_PER_ZONE; i++) {
+            // Half the points land near the boundary, where the kernel switches to haversine
+            double scale = i % 2 == 0 ? random.nextDouble() * 2 : 1 + (random.nextDouble() - 0.5) * 0.02;
+            double[] point = destination(latitude, longitude, radius * scale, random.nextDouble() * 2 * Math.PI);
+
+            boolean expected = GeoMath.distance(point[0], point[1], latitude, longitude) <= radius;
+            assertThat(zone.contains(point[0], point[1]))
+                    .as("zone (%s, %s) r=%s, point (%s, %s)", latitude, longitude, radius, point[0], point[1])
+                    .isEqualTo(expected);
+        }
+    }
+
+    /**
+     * Point at the given distance and bearing, longitude normalized to [-180, 180]
+     */
+    private static double[] destination(double latitude, double longitude, double distance, double bearing) {
+        double angular = distance / GeoMath.EARTH_RADIUS;
+        double lat1 = Math.toRadians(latitude);
+        double lon1 = Math.toRadians(longitude);
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angular)
+                + Math.cos(lat1) * Math.sin(angular) * Math.cos(bearing));
+        double lon2 = lon1 + Math.atan2(Math.sin(bearing) * Math.sin(angular) * Math.cos(lat1),
+                Math.cos(angular) - Math.sin(lat1) * Math.sin(lat2));
+        double lon = Math.toDegrees(lon2);
+        lon = ((lon + 540) % 360) - 180;
+        return new double[] {Math.toDegrees(lat2), lon};
+    }
+
+    private static SafeZone circle(double latitude, double longitude, double radius) {
+        SafeZone zone = new SafeZone();
+        zone.setCenterLatitude(latitude);
+        zone.setCenterLongitude(longitude);
+        zone.setRadiusInMeters(radius);
+        return zone;
+    }
+}
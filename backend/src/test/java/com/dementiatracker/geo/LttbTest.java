@@ -0,0 +1,74 @@
+package com.dementiatracker.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * LTTB keeps both endpoints, returns exactly the target number of points in
+ * ascending order, and keeps excursions over straight stretches
+ */
+class LttbTest {
+
+    private final Random random = new Random(5);
+
+    @Test
+    void keepsEndpointsAndHitsTarget() {
+        for (int trial = 0; trial < 200; trial++) {
+            int n = 3 + random.nextInt(2000);
+            int target = 3 + random.nextInt(n - 2);
+            Track track = randomTrack(n);
+
+            int[] kept = Lttb.downsample(track, target);
+
+            assertThat(kept).hasSize(Math.min(target, n));
+            assertThat(kept[0]).isZero();
+            assertThat(kept[kept.length - 1]).isEqualTo(n - 1);
+            for (int i = 1; i < kept.length; i++) {
+                assertThat(kept[i]).isGreaterThan(kept[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    void shortTrackIsKeptWhole() {
+        Track track = randomTrack(10);
+
+        assertThat(Lttb.downsample(track, 10)).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(Lttb.downsample(track, 50)).hasSize(10);
+        assertThat(Lttb.downsample(randomTrack(2), 3)).containsExactly(0, 1);
+        assertThat(Lttb.downsample(randomTrack(1), 3)).containsExactly(0);
+        assertThat(Lttb.downsample(new Track(), 3)).isEmpty();
+    }
+
+    @Test
+    void targetBelowThreeKeepsEndpoints() {
+        assertThat(Lttb.downsample(randomTrack(100), 2)).containsExactly(0, 99);
+        assertThat(Lttb.downsample(randomTrack(100), 0)).containsExactly(0, 99);
+    }
+
+    @Test
+    void keepsExcursion() {
+        // Straight walk north with one detour far to the east
+        Track track = new Track();
+        for (int i = 0; i < 1000; i++) {
+            track.add(51.0 + i * 1e-5, i == 637 ? 0.01 : 0.0, i * 1000L);
+        }
+
+        assertThat(Lttb.downsample(track, 20)).contains(0, 637, 999);
+    }
+
+    private Track randomTrack(int n) {
+        Track track = new Track();
+        double latitude = -33.9;
+        double longitude = 151.2;
+        for (int i = 0; i < n; i++) {
+            latitude += (random.nextDouble() - 0.5) * 1e-3;
+            longitude += (random.nextDouble() - 0.5) * 1e-3;
+            track.add(latitude, longitude, i * 5000L);
+        }
+        return track;
+    }
+}
@@ -0,0 +1,168 @@
+package com.dementiatracker.geo;
+
+import com.dementiatracker.model.SafeZone;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * PolygonZone must decide exactly like a plain even-odd ray cast, with the
+ * same half-open edges: south and west boundaries inside, north and east
+ * outside, so neighbouring zones never both claim a point
+ */
+class PolygonZoneTest {
+
+    private static final int POINTS_PER_ZONE = 5000;
+
+    private final Random random = new Random(7);
+
+    @Test
+    void matchesRayCastForRandomPolygons() {
+        for (int i = 0; i < 200; i++) {
+            List<SafeZone.Vertex> ring = randomStarPolygon(-60 + random.nextDouble() * 120,
+                    -170 + random.nextDouble() * 340, 3 + random.nextInt(200));
+            PolygonZone zone = new PolygonZone(polygon(ring));
+            GeoBounds bounds = zone.getBounds();
+            double latPad = (bounds.getMaxLatitude() - bounds.getMinLatitude()) * 0.1;
+            double lonPad = (bounds.getMaxLongitude() - bounds.getMinLongitude()) * 0.1;
+            for (int p = 0; p < POINTS_PER_ZONE; p++) {
+                double latitude = bounds.getMinLatitude() - latPad
+                        + random.nextDouble() * (bounds.getMaxLatitude() - bounds.getMinLatitude() + 2 * latPad);
+                double longitude = bounds.getMinLongitude() - lonPad
+                        + random.nextDouble() * (bounds.getMaxLongitude() - bounds.getMinLongitude() + 2 * lonPad);
+                assertThat(zone.contains(latitude, longitude))
+                        .as("polygon %s, point (%s, %s)", ring, latitude, longitude)
+                        .isEqualTo(rayCast(ring, latitude, longitude));
+            }
+        }
+    }
+
+    @Test
+    void edgesAndVerticesAreHalfOpen() {
+        PolygonZone square = new PolygonZone(polygon(ring(0, 0, 0, 2, 2, 2, 2, 0)));
+
+        assertThat(square.contains(1, 1)).isTrue();
+        assertThat(square.contains(0, 1)).as("south edge").isTrue();
+        assertThat(square.contains(1, 0)).as("west edge").isTrue();
+        assertThat(square.contains(2, 1)).as("north edge").isFalse();
+        assertThat(square.contains(1, 2)).as("east edge").isFalse();
+        assertThat(square.contains(0, 0)).as("south-west vertex").isTrue();
+        assertThat(square.contains(0, 2)).as("south-east vertex").isFalse();
+        assertThat(square.contains(2, 0)).as("north-west vertex").isFalse();
+        assertThat(square.contains(2, 2)).as("north-east vertex").isFalse();
+    }
+
+    @Test
+    void rayThroughVertexCountsOnce() {
+        // Diamond: the row through the east and west vertices must not double count them
+        PolygonZone diamond = new PolygonZone(polygon(ring(0, 2, 2, 4, 4, 2, 2, 0)));
+        assertThat(diamond.contains(2, 2)).isTrue();
+        assertThat(diamond.contains(2, 0.5)).isTrue();
+        assertThat(diamond.contains(2, -1)).isFalse();
+        assertThat(diamond.contains(2, 5)).isFalse();
+
+        // Concave notch whose tip sits on the row of the test points
+        PolygonZone notched = new PolygonZone(polygon(ring(0, 0, 0, 4, 4, 4, 2, 2, 4, 0)));
+        assertThat(notched.contains(2, 1)).isTrue();
+        assertThat(notched.contains(2, 3)).isTrue();
+        assertThat(notched.contains(3, 2)).isFalse();
+        assertThat(notched.contains(1, 2)).isTrue();
+    }
+
+    @Test
+    void acceptsClosedRingAndCollinearVertices() {
+        PolygonZone closed = new PolygonZone(polygon(ring(0, 0, 0, 2, 2, 2, 2, 0, 0, 0)));
+        assertThat(closed.contains(1, 1)).isTrue();
+
+        PolygonZone collinear = new PolygonZone(polygon(ring(0, 0, 0, 1, 0, 2, 2, 2, 2, 0)));
+        assertThat(collinear.contains(1, 1)).isTrue();
+        assertThat(collinear.contains(0, 1.5)).isTrue();
+    }
+
+    @Test
+    void rejectsInvalidPolygons() {
+        assertThatThrownBy(() -> new PolygonZone(polygon(ring(0, 0, 1, 1))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("at least 3 vertices");
+        assertThatThrownBy(() -> new PolygonZone(polygon(ring(0, 0, 0, 1, 0, 0))))
+                .hasMessageContaining("at least 3 vertices");
+
+        // Bow tie
+        assertThatThrownBy(() -> new PolygonZone(polygon(ring(0, 0, 2, 2, 2, 0, 0, 2))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("must not cross");
+        // Crossing through the closing edge
+        assertThatThrownBy(() -> new PolygonZone(polygon(ring(0, 0, 0, 2, 2, 2, 2, 0, -1, 1))))
+                .hasMessageContaining("must not cross");
+    }
+
+    @Test
+    void distanceToBoundaryFromInsideAndOutside() {
+        // About 1.1 km square near the equator
+        PolygonZone square = new PolygonZone(polygon(ring(0, 0, 0, 0.01, 0.01, 0.01, 0.01, 0)));
+        double metersPerDegree = GeoMath.EARTH_RADIUS * Math.PI / 180;
+
+        assertThat(square.distanceToBoundary(0.005, 0.005)).isCloseTo(0.005 * metersPerDegree, within(1.0));
+        assertThat(square.distanceToBoundary(0.005, 0.012)).isCloseTo(0.002 * metersPerDegree, within(1.0));
+        assertThat(square.distanceToBoundary(0.011, 0.011))
+                .isCloseTo(Math.hypot(0.001, 0.001) * metersPerDegree, within(1.0));
+    }
+
+    /**
+     * Classic PNPOLY: count edges crossing the row at latitude east of the point
+     */
+    private static boolean rayCast(List<SafeZone.Vertex> ring, double latitude, double longitude) {
+        boolean inside = false;
+        for (int i = 0, j = ring.size() - 1; i < ring.size(); j = i++) {
+            SafeZone.Vertex a = ring.get(i);
+            SafeZone.Vertex b = ring.get(j);
+            if ((a.getLatitude() > latitude) != (b.getLatitude() > latitude)
+                    && longitude < (b.getLongitude() - a.getLongitude()) * (latitude - a.getLatitude())
+                            / (b.getLatitude() - a.getLatitude()) + a.getLongitude()) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Simple, usually concave polygon: vertices at sorted angles and random
+     * distances around a center, up to about 1 km out
+     */
+    private List<SafeZone.Vertex> randomStarPolygon(double latitude, double longitude, int vertices) {
+        double[] angles = new double[vertices];
+        for (int i = 0; i < vertices; i++) {
+            angles[i] = random.nextDouble() * 2 * Math.PI;
+        }
+        Arrays.sort(angles);
+        List<SafeZone.Vertex> ring = new ArrayList<>();
+        for (double angle : angles) {
+            double distance = 0.001 + random.nextDouble() * 0.009;
+            ring.add(new SafeZone.Vertex(latitude + distance * Math.sin(angle),
+                    longitude + distance * Math.cos(angle)));
+        }
+        return ring;
+    }
+
+    private static List<SafeZone.Vertex> ring(double... coordinates) {
+        List<SafeZone.Vertex> ring = new ArrayList<>();
+        for (int i = 0; i < coordinates.length; i += 2) {
+            ring.add(new SafeZone.Vertex(coordinates[i], coordinates[i + 1]));
+        }
+        return ring;
+    }
+
+    private static SafeZone polygon(List<SafeZone.Vertex> ring) {
+        SafeZone zone = new SafeZone();
+        zone.setType(SafeZone.ZoneType.POLYGON);
+        zone.setVertices(ring);
+        return zone;
+    }
+}
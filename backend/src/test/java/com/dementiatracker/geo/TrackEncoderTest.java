@@ -0,0 +1,153 @@
+package com.dementiatracker.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * PolylineEncoder and BinaryTrackEncoder output decodes back to the track,
+ * including negative coordinates, pre-epoch times and deltas spanning the
+ * whole globe
+ */
+class TrackEncoderTest {
+
+    private final Random random = new Random(11);
+
+    @Test
+    void polylineMatchesReferenceEncoding() {
+        // Example from the encoded polyline format documentation
+        PolylineEncoder encoder = new PolylineEncoder();
+        encoder.visit(38.5, -120.2, 0);
+        encoder.visit(40.7, -120.95, 0);
+        encoder.visit(43.252, -126.453, 0);
+
+        assertThat(encoder.getPolyline()).isEqualTo("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+        assertThat(encoder.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void polylineRoundTrip() {
+        List<double[]> track = track();
+        PolylineEncoder encoder = new PolylineEncoder();
+        for (double[] fix : track) {
+            encoder.visit(fix[0], fix[1], (long) fix[2]);
+        }
+
+        long[] coordinates = decodePolyline(encoder.getPolyline(), 2);
+        long[] seconds = decodePolyline(encoder.getTimes(), 1);
+        assertThat(coordinates).hasSize(track.size() * 2);
+        assertThat(seconds).hasSize(track.size());
+        for (int i = 0; i < track.size(); i++) {
+            double[] fix = track.get(i);
+            assertThat(coordinates[2 * i] / 1e5).isCloseTo(fix[0], within(0.5e-5));
+            assertThat(coordinates[2 * i + 1] / 1e5).isCloseTo(fix[1], within(0.5e-5));
+            assertThat(seconds[i]).isEqualTo(Math.floorDiv((long) fix[2], 1000));
+        }
+    }
+
+    @Test
+    void binaryRoundTrip() {
+        List<double[]> track = track();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryTrackEncoder encoder = new BinaryTrackEncoder(bytes);
+        for (double[] fix : track) {
+            encoder.visit(fix[0], fix[1], (long) fix[2]);
+        }
+
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+        assertThat(new byte[] {(byte) in.read(), (byte) in.read(), (byte) in.read(), (byte) in.read()})
+                .containsExactly('D', 'T', 'K', 1);
+        long lat = 0;
+        long lon = 0;
+        long time = 0;
+        for (double[] fix : track) {
+            lat += unzigzag(readVarint(in));
+            lon += unzigzag(readVarint(in));
+            time += unzigzag(readVarint(in));
+            assertThat(lat / 1e6).isCloseTo(fix[0], within(0.5e-6));
+            assertThat(lon / 1e6).isCloseTo(fix[1], within(0.5e-6));
+            assertThat(time).isEqualTo((long) fix[2]);
+        }
+        assertThat(in.read()).as("end of stream").isEqualTo(-1);
+    }
+
+    @Test
+    void fixTimesRoundTripBeforeAndAfterEpoch() {
+        for (LocalDateTime time : new LocalDateTime[] {
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_000_000),
+                LocalDateTime.of(1900, 1, 1, 0, 0),
+                LocalDateTime.of(2024, 2, 29, 13, 45, 7, 123_000_000)}) {
+            assertThat(FixVisitor.fromTime(FixVisitor.toTime(time))).isEqualTo(time);
+        }
+    }
+
+    /**
+     * Random walk with pole-to-pole and antimeridian jumps and times before
+     * the epoch and decades apart
+     */
+    private List<double[]> track() {
+        List<double[]> track = new ArrayList<>();
+        track.add(new double[] {-89.999999, -179.999999, -2_000_000_000_000L});
+        track.add(new double[] {89.999999, 179.999999, 2_000_000_000_000L});
+        track.add(new double[] {-33.868820, 151.209296, -1L});
+        track.add(new double[] {0, 0, 0});
+        double latitude = -45.5;
+        double longitude = -73.25;
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < 1000; i++) {
+            latitude = Math.max(-90, Math.min(90, latitude + (random.nextDouble() - 0.5) * 0.01));
+            longitude = Math.max(-180, Math.min(180, longitude + (random.nextDouble() - 0.5) * 0.01));
+            time += random.nextInt(120_000) - 10_000; // Out-of-order fixes give negative time deltas
+            track.add(new double[] {latitude, longitude, time});
+        }
+        return track;
+    }
+
+    /**
+     * Reference decoder: running sums of zigzagged 5-bit group values, one
+     * sum per interleaved stream (latitude and longitude, or times alone)
+     */
+    private static long[] decodePolyline(String encoded, int streams) {
+        List<Long> values = new ArrayList<>();
+        long[] sums = new long[streams];
+        int index = 0;
+        while (index < encoded.length()) {
+            long result = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = encoded.charAt(index++) - 63;
+                result |= (long) (b & 0x1f) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            int stream = values.size() % streams;
+            sums[stream] += (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+            values.add(sums[stream]);
+        }
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long readVarint(ByteArrayInputStream in) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.read();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,135 @@
+package com.dementiatracker.geo;
+
+import com.dementiatracker.model.SafeZone;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Geofence evaluation cost against zone count: ZoneIndex.anyContains
+ * compared with a haversine check of every zone, over fixes clustered
+ * around the zones. Also counts decisions that differ between the two.
+ * Takes a few minutes, mostly for the full scan over 1000 zones.
+ *
+ * Run with:
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=com.dementiatracker.geo.ZoneIndexBenchmark
+ */
+public class ZoneIndexBenchmark {
+
+    private static final int[] ZONE_COUNTS = {1, 2, 5, 10, 50, 200, 1000};
+
+    private static final int FIXES = 100_000;
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int MEASURED_ROUNDS = 10;
+
+    // Zones are placed within about 20 km of this point, like one patient's neighbourhood
+    private static final double HOME_LATITUDE = 51.5;
+
+    private static final double HOME_LONGITUDE = -0.12;
+
+    public static void main(String[] args) {
+        Random random = new Random(7);
+        System.out.printf("%8s %14s %14s %10s%n", "zones", "scan ns/fix", "index ns/fix", "mismatches");
+
+        for (int count : ZONE_COUNTS) {
+            List<SafeZone> zones = randomZones(random, count);
+            double[][] fixes = fixesAround(random, zones);
+            ZoneIndex index = ZoneIndex.build(zones);
+
+            int mismatches = 0;
+            for (double[] fix : fixes) {
+                if (index.anyContains(fix[0], fix[1]) != scanContains(zones, fix[0], fix[1])) {
+                    mismatches++;
+                }
+            }
+
+            double scan = measure(() -> {
+                int inside = 0;
+                for (double[] fix : fixes) {
+                    inside += scanContains(zones, fix[0], fix[1]) ? 1 : 0;
+                }
+                return inside;
+            });
+            double indexed = measure(() -> {
+                int inside = 0;
+                for (double[] fix : fixes) {
+                    inside += index.anyContains(fix[0], fix[1]) ? 1 : 0;
+                }
+                return inside;
+            });
+
+            System.out.printf("%8d %14.1f %14.1f %10d%n", count, scan, indexed, mismatches);
+        }
+    }
+
+    /**
+     * The check ZoneIndex replaced: haversine against every zone
+     */
+    private static boolean scanContains(List<SafeZone> zones, double latitude, double longitude) {
+        for (SafeZone zone : zones) {
+            if (GeoMath.distance(latitude, longitude, zone.getCenterLatitude(), zone.getCenterLongitude())
+                    <= zone.getRadiusInMeters()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Best average nanoseconds per fix over the measured rounds
+     */
+    private static double measure(Round round) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += round.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += round.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink); // Keeps the results alive
+        }
+        return (double) best / FIXES;
+    }
+
+    private static List<SafeZone> randomZones(Random random, int count) {
+        List<SafeZone> zones = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SafeZone zone = new SafeZone();
+            zone.setId("zone-" + i);
+            zone.setCenterLatitude(HOME_LATITUDE + (random.nextDouble() - 0.5) * 0.36);
+            zone.setCenterLongitude(HOME_LONGITUDE + (random.nextDouble() - 0.5) * 0.58);
+            zone.setRadiusInMeters(50 + random.nextDouble() * 950);
+            zones.add(zone);
+        }
+        return zones;
+    }
+
+    /**
+     * Fixes within twice the radius of a random zone, so about a quarter land inside
+     */
+    private static double[][] fixesAround(Random random, List<SafeZone> zones) {
+        double metersPerDegree = GeoMath.EARTH_RADIUS * Math.PI / 180;
+        double[][] fixes = new double[FIXES][];
+        for (int i = 0; i < FIXES; i++) {
+            SafeZone zone = zones.get(random.nextInt(zones.size()));
+            double reach = 2 * zone.getRadiusInMeters() / metersPerDegree;
+            double latitude = zone.getCenterLatitude() + (random.nextDouble() * 2 - 1) * reach;
+            double longitude = zone.getCenterLongitude()
+                    + (random.nextDouble() * 2 - 1) * reach / Math.cos(Math.toRadians(zone.getCenterLatitude()));
+            fixes[i] = new double[] {latitude, longitude};
+        }
+        return fixes;
+    }
+
+    private interface Round {
+        int run();
+    }
+}
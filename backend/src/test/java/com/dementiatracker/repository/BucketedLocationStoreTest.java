@@ -0,0 +1,224 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.model.Location;
+import com.dementiatracker.model.LocationBucket;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Appends are one upsert per touched bucket ($push, or $addToSet when
+ * idempotent), and reads unpack buckets back into (timestamp, id) order
+ */
+class BucketedLocationStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 8, 0);
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    private final BulkOperations bulk = mock(BulkOperations.class);
+
+    private final BucketedLocationStore store = new BucketedLocationStore();
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(LocationBucket.class))).thenReturn(bulk);
+        when(mongoTemplate.getCollectionName(LocationBucket.class)).thenReturn("location_buckets");
+        ReflectionTestUtils.setField(store, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(store, "bucketMinutes", 60L);
+        ReflectionTestUtils.setField(store, "cursorBatchSize", 16);
+    }
+
+    @Test
+    void insertPushesOneUpsertPerBucket() {
+        Location a = fix("p1", T0.plusMinutes(10));
+        Location b = fix("p1", T0.plusMinutes(5));
+        Location c = fix("p1", T0.plusMinutes(70));
+        Location d = fix("p2", T0.plusMinutes(10));
+        d.setId(null);
+
+        store.insert(Arrays.asList(a, b, c, d));
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(3)).upsert(queries.capture(), updates.capture());
+        verify(bulk).execute();
+        assertThat(d.getId()).matches(ObjectId::isValid);
+
+        assertThat(queries.getAllValues().get(0).getQueryObject())
+                .isEqualTo(new Document("patientId", "p1").append("bucketStart", T0));
+        assertThat(queries.getAllValues().get(1).getQueryObject())
+                .isEqualTo(new Document("patientId", "p1").append("bucketStart", T0.plusHours(1)));
+        assertThat(queries.getAllValues().get(2).getQueryObject())
+                .isEqualTo(new Document("patientId", "p2").append("bucketStart", T0));
+
+        Document first = updates.getAllValues().get(0).getUpdateObject();
+        assertThat(first).containsKey("$push").doesNotContainKey("$addToSet");
+        assertThat(first.get("$min", Document.class).get("firstTimestamp")).isEqualTo(T0.plusMinutes(5));
+        assertThat(first.get("$max", Document.class).get("lastTimestamp")).isEqualTo(T0.plusMinutes(10));
+        assertThat(fixIds(first, "$push")).containsExactly(a.getId(), b.getId());
+    }
+
+    @Test
+    void saveAddsToSet() {
+        Location a = fix("p1", T0.plusMinutes(10));
+        Location b = fix("p1", T0.plusMinutes(20));
+
+        store.save(Arrays.asList(a, b));
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk).upsert(any(Query.class), updates.capture());
+        Document update = updates.getValue().getUpdateObject();
+        assertThat(update).containsKey("$addToSet").doesNotContainKey("$push");
+        assertThat(fixIds(update, "$addToSet")).containsExactly(a.getId(), b.getId());
+    }
+
+    @Test
+    void bucketStartFloorsBeforeEpoch() {
+        assertThat(store.bucketStart(LocalDateTime.of(1969, 12, 31, 23, 59, 59)))
+                .isEqualTo(LocalDateTime.of(1969, 12, 31, 23, 0));
+        assertThat(store.bucketStart(T0.plusMinutes(59))).isEqualTo(T0);
+        assertThat(store.bucketStart(T0.plusMinutes(60))).isEqualTo(T0.plusHours(1));
+    }
+
+    @Test
+    void historyPagesCrossDuplicateTimestampAndBuckets() {
+        // Fixes appended out of order, and three sharing one timestamp, more than fit on a page
+        List<Location> older = Arrays.asList(fix("p1", T0.plusMinutes(50)), fix("p1", T0.plusMinutes(20)),
+                fix("p1", T0.plusMinutes(59)), fix("p1", T0.plusMinutes(59)));
+        List<Location> newer = Arrays.asList(fix("p1", T0.plusMinutes(60)), fix("p1", T0.plusMinutes(60)),
+                fix("p1", T0.plusMinutes(60)), fix("p1", T0.plusMinutes(75)));
+        List<LocationBucket> buckets = Arrays.asList(bucket(T0.plusHours(1), newer), bucket(T0, older));
+        when(mongoTemplate.stream(any(Query.class), eq(LocationBucket.class)))
+                .thenAnswer(call -> iterator(buckets.stream()
+                        .filter(bucket -> matchesHistory(call.getArgument(0), bucket))
+                        .collect(Collectors.toList())));
+
+        List<Location> expected = new ArrayList<>(older);
+        expected.addAll(newer);
+        expected.sort(LocationStore.TIME_ORDER.reversed());
+
+        List<Location> read = new ArrayList<>();
+        Location last = null;
+        do {
+            List<Location> page = store.findHistoryPage("p1", last == null ? null : last.getTimestamp(),
+                    last == null ? null : last.getId(), 2);
+            read.addAll(page);
+            last = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (last != null);
+
+        assertThat(read).extracting(Location::getId)
+                .containsExactlyElementsOf(expected.stream().map(Location::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void visitRangeSortsLateFixesAndExcludesBounds() {
+        Document bucket = new Document("fixes", Arrays.asList(
+                raw(1, T0.plusMinutes(30)), raw(2, T0.plusMinutes(10)), raw(3, T0), raw(4, T0.plusMinutes(20))));
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), anyString()))
+                .thenAnswer(call -> iterator(Arrays.asList(bucket)));
+
+        List<Double> latitudes = new ArrayList<>();
+        store.visitRange("p1", T0, T0.plusMinutes(30), (latitude, longitude, time) -> latitudes.add(latitude));
+
+        assertThat(latitudes).containsExactly(2.0, 4.0);
+    }
+
+    @Test
+    void deletePullsThenRemovesEmptyBucket() {
+        Location a = fix("p1", T0.plusMinutes(10));
+
+        store.delete(Arrays.asList(a));
+
+        ArgumentCaptor<Update> pull = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<Query> remove = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).bulkOps(BulkOperations.BulkMode.ORDERED, LocationBucket.class);
+        verify(bulk).updateOne(any(Query.class), pull.capture());
+        verify(bulk).remove(remove.capture());
+        Document pulled = ((Query) pull.getValue().getUpdateObject().get("$pull", Document.class).get("fixes"))
+                .getQueryObject();
+        assertThat(pulled.get("_id", Document.class).getList("$in", Object.class))
+                .containsExactly(new ObjectId(a.getId()));
+        assertThat(remove.getValue().getQueryObject().get("fixes", Document.class)).isEqualTo(new Document("$size", 0));
+    }
+
+    // Values of the $each modifier under the given operator, as fix ids
+    private static List<String> fixIds(Document update, String operator) {
+        Object value = update.get(operator, Document.class).get("fixes");
+        Object[] each = value instanceof Update.Modifiers
+                ? (Object[]) ((Update.Modifiers) value).getModifiers().iterator().next().getValue()
+                : (Object[]) ((Update.Modifier) value).getValue();
+        return Arrays.stream(each).map(fix -> ((LocationBucket.Fix) fix).getId()).collect(Collectors.toList());
+    }
+
+    private static boolean matchesHistory(Query query, LocationBucket bucket) {
+        Document bound = query.getQueryObject().get("bucketStart", Document.class);
+        return bound == null || !bucket.getBucketStart().isAfter((LocalDateTime) bound.get("$lte"));
+    }
+
+    private static LocationBucket bucket(LocalDateTime start, List<Location> locations) {
+        LocationBucket bucket = new LocationBucket();
+        bucket.setPatientId("p1");
+        bucket.setBucketStart(start);
+        bucket.setFixes(locations.stream()
+                .map(location -> new LocationBucket.Fix(location.getId(), location.getLatitude(),
+                        location.getLongitude(), location.getAccuracy(), location.getTimestamp(),
+                        location.getSource(), location.getDeviceId()))
+                .collect(Collectors.toList()));
+        return bucket;
+    }
+
+    private static Document raw(double latitude, LocalDateTime timestamp) {
+        return new Document("latitude", latitude).append("longitude", 0.0)
+                .append("timestamp", Date.from(timestamp.atZone(ZoneId.systemDefault()).toInstant()));
+    }
+
+    private static <T> CloseableIterator<T> iterator(List<T> items) {
+        Iterator<T> iterator = items.iterator();
+        return new CloseableIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static Location fix(String patientId, LocalDateTime timestamp) {
+        return new Location(new ObjectId().toHexString(), patientId, 51.5, -0.1, 5.0, timestamp, "GPS", "d1");
+    }
+}
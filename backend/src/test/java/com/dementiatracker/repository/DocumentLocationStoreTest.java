@@ -0,0 +1,184 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.model.Location;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keyset pages over fixes that share a timestamp. The built query is run
+ * against an in-memory collection holding ids as ObjectIds, the way they are
+ * stored, so a cursor id compared as a string matches nothing.
+ */
+class DocumentLocationStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 8, 0);
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    private final DocumentLocationStore store = new DocumentLocationStore();
+
+    private final List<Location> stored = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "mongoTemplate", mongoTemplate);
+        when(mongoTemplate.find(any(Query.class), eq(Location.class))).thenAnswer(call -> find(call.getArgument(0)));
+
+        // Five fixes at T0 between single fixes a minute before and after
+        stored.add(fix(T0.minusMinutes(1)));
+        for (int i = 0; i < 5; i++) {
+            stored.add(fix(T0));
+        }
+        stored.add(fix(T0.plusMinutes(1)));
+        stored.add(fix("p2", T0.plusMinutes(1)));
+    }
+
+    @Test
+    void historyPagesCrossDuplicateTimestamp() {
+        List<Location> expected = stored.stream()
+                .filter(location -> location.getPatientId().equals("p1"))
+                .sorted(LocationStore.TIME_ORDER.reversed())
+                .collect(Collectors.toList());
+
+        List<Location> read = new ArrayList<>();
+        Location last = null;
+        do {
+            List<Location> page = store.findHistoryPage("p1", last == null ? null : last.getTimestamp(),
+                    last == null ? null : last.getId(), 2);
+            read.addAll(page);
+            last = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (last != null);
+
+        assertThat(read).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void rangePagesCrossDuplicateTimestamp() {
+        List<Location> expected = stored.stream()
+                .filter(location -> location.getPatientId().equals("p1"))
+                .sorted(LocationStore.TIME_ORDER)
+                .collect(Collectors.toList());
+
+        List<Location> read = new ArrayList<>();
+        Location last = null;
+        do {
+            List<Location> page = store.findRangePage("p1", T0.minusHours(1), T0.plusHours(1),
+                    last == null ? null : last.getTimestamp(), last == null ? null : last.getId(), 3);
+            read.addAll(page);
+            last = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (last != null);
+
+        assertThat(read).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void cursorIdIsComparedAsObjectId() {
+        Location cursor = stored.get(3);
+        store.findHistoryPage("p1", cursor.getTimestamp(), cursor.getId(), 10);
+        store.findHistoryPage("p1", cursor.getTimestamp(), "not-an-object-id", 10);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(queries.capture(), eq(Location.class));
+        Document tie = queries.getAllValues().get(0).getQueryObject().getList("$or", Document.class).get(1);
+        assertThat(tie.get("id", Document.class).get("$lt")).isEqualTo(new ObjectId(cursor.getId()));
+        tie = queries.getAllValues().get(1).getQueryObject().getList("$or", Document.class).get(1);
+        assertThat(tie.get("id", Document.class).get("$lt")).isEqualTo("not-an-object-id");
+    }
+
+    /**
+     * Evaluates the criteria shapes keysetQuery builds: equality, $gt/$lt and
+     * $or, then applies the sort and limit
+     */
+    private List<Location> find(Query query) {
+        Document sort = query.getSortObject();
+        Comparator<Location> order = LocationStore.TIME_ORDER;
+        if (sort.getInteger("timestamp") < 0) {
+            order = order.reversed();
+        }
+        return stored.stream()
+                .filter(location -> matches(location, query.getQueryObject()))
+                .sorted(order)
+                .limit(query.getLimit() > 0 ? query.getLimit() : Long.MAX_VALUE)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean matches(Location location, Document criteria) {
+        for (Map.Entry<String, Object> entry : criteria.entrySet()) {
+            if (entry.getKey().equals("$or")) {
+                boolean any = false;
+                for (Document alternative : criteria.getList("$or", Document.class)) {
+                    any |= matches(location, alternative);
+                }
+                if (!any) {
+                    return false;
+                }
+                continue;
+            }
+
+            Object value = field(location, entry.getKey());
+            if (entry.getValue() instanceof Document) {
+                for (Map.Entry<String, Object> operator : ((Document) entry.getValue()).entrySet()) {
+                    Integer comparison = compare(value, operator.getValue());
+                    boolean holds = comparison != null
+                            && (operator.getKey().equals("$gt") ? comparison > 0 : comparison < 0);
+                    if (!holds) {
+                        return false;
+                    }
+                }
+            } else if (!Integer.valueOf(0).equals(compare(value, entry.getValue()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Stored ids are ObjectIds
+    private static Object field(Location location, String name) {
+        switch (name) {
+            case "id":
+                return new ObjectId(location.getId());
+            case "patientId":
+                return location.getPatientId();
+            default:
+                return location.getTimestamp();
+        }
+    }
+
+    // Null when the types differ: MongoDB does not compare across BSON types in a range condition
+    @SuppressWarnings("unchecked")
+    private static Integer compare(Object stored, Object value) {
+        if (stored.getClass() != value.getClass()) {
+            return null;
+        }
+        return ((Comparable<Object>) stored).compareTo(value);
+    }
+
+    private static Location fix(LocalDateTime timestamp) {
+        return fix("p1", timestamp);
+    }
+
+    private static Location fix(String patientId, LocalDateTime timestamp) {
+        return new Location(new ObjectId().toHexString(), patientId, 51.5, -0.1, 5.0, timestamp, "GPS", "d1");
+    }
+}
@@ -0,0 +1,115 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.model.Location;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Day files read back in TIME_ORDER without duplicates, and a gzip member cut
+ * short by a crash loses only its own records
+ */
+class FileArchiveStoreTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    Path directory;
+
+    private FileArchiveStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = newStore();
+    }
+
+    @Test
+    void readsAppendsInTimeOrderWithoutDuplicates() {
+        Location late = fix(DAY.atTime(18, 0));
+        Location early = fix(DAY.atTime(7, 0));
+        Location nextDay = fix(DAY.plusDays(1).atTime(9, 0));
+
+        store.appendLocations(Arrays.asList(late, nextDay));
+        store.appendLocations(Arrays.asList(early, late)); // Retried after a crash before the hot delete
+
+        assertThat(store.getLocationDays("p1")).containsExactly(DAY, DAY.plusDays(1));
+        assertThat(store.readLocationDay("p1", DAY)).extracting(Location::getId)
+                .containsExactly(early.getId(), late.getId());
+        assertThat(store.readLocationDay("p1", DAY.plusDays(2))).isEmpty();
+        assertThat(store.getLocationDays("p2")).isEmpty();
+    }
+
+    @Test
+    void truncatedMemberIsSkippedThenRepairedOnNextAppend() throws IOException {
+        List<Location> appended = fixes(DAY.atTime(8, 0), 50);
+        store.appendLocations(appended);
+        Path file = directory.resolve("locations").resolve("p1").resolve(DAY + ".ndjson.gz");
+        long firstMember = Files.size(file);
+
+        List<Location> second = fixes(DAY.atTime(12, 0), 500);
+        store.appendLocations(second);
+        appended.addAll(second);
+        byte[] bytes = Files.readAllBytes(file);
+        int cut = (int) (firstMember + (bytes.length - firstMember) / 2);
+        Files.write(file, Arrays.copyOf(bytes, cut)); // Crash in the middle of the second append
+
+        // Whole lines decompressed before the cut are kept, nothing after it
+        List<Location> readable = store.readLocationDay("p1", DAY);
+        assertThat(readable.size()).isBetween(50, 549);
+        assertThat(readable).containsExactlyElementsOf(appended.subList(0, readable.size()));
+
+        // A restarted process checks the tail before its first append to the file
+        store = newStore();
+        List<Location> third = fixes(DAY.atTime(16, 0), 10);
+        store.appendLocations(third);
+
+        List<Location> expected = new ArrayList<>(readable);
+        expected.addAll(third);
+        assertThat(store.readLocationDay("p1", DAY)).containsExactlyElementsOf(expected);
+        assertThat(Files.exists(file.resolveSibling(file.getFileName() + ".tmp"))).isFalse();
+    }
+
+    @Test
+    void patientIdIsMadeSafeForFileName() {
+        Location fix = fix(DAY.atTime(8, 0));
+        fix.setPatientId("../p1");
+
+        store.appendLocations(Arrays.asList(fix));
+
+        assertThat(Files.exists(directory.resolve("locations").resolve("___p1"))).isTrue();
+        assertThat(store.readLocationDay("../p1", DAY)).containsExactly(fix);
+    }
+
+    private FileArchiveStore newStore() {
+        FileArchiveStore archive = new FileArchiveStore();
+        ReflectionTestUtils.setField(archive, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(archive, "directory", directory.toString());
+        return archive;
+    }
+
+    private static List<Location> fixes(LocalDateTime start, int count) {
+        List<Location> fixes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            fixes.add(fix(start.plusSeconds(30L * i)));
+        }
+        return fixes;
+    }
+
+    private static Location fix(LocalDateTime timestamp) {
+        return new Location(new ObjectId().toHexString(), "p1", 51.5, -0.1, 5.0, timestamp, "GPS", "d1");
+    }
+}
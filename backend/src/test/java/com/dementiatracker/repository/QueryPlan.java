@@ -0,0 +1,98 @@
+package com.dementiatracker.repository;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Winning plan of an explain() result reduced to its stage names. Handles
+ * find, update, delete and findAndModify explains, aggregation explains
+ * with a $cursor stage, and slot-based plans (winningPlan.queryPlan).
+ * Rejected plans are ignored.
+ */
+class QueryPlan {
+
+    private static final List<String> INDEX_STAGES = Arrays.asList("IXSCAN", "IDHACK", "DISTINCT_SCAN", "COUNT_SCAN");
+
+    // Stage names of every winning plan in the explain output, outermost first
+    private final List<String> stages = new ArrayList<>();
+
+    // Aggregation stages left outside the query layer, e.g. "$group"
+    private final List<String> pipelineStages = new ArrayList<>();
+
+    private QueryPlan() {
+    }
+
+    static QueryPlan of(Document explain) {
+        QueryPlan plan = new QueryPlan();
+        plan.walk(explain);
+        return plan;
+    }
+
+    List<String> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Some plan reads an index (including _id lookups)
+     */
+    boolean usesIndex() {
+        return stages.stream().anyMatch(stage -> INDEX_STAGES.contains(stage) || stage.startsWith("EXPRESS"));
+    }
+
+    boolean scansCollection() {
+        return stages.contains("COLLSCAN");
+    }
+
+    /**
+     * Results are sorted in memory instead of read in index order. SORT_MERGE
+     * only merges index-ordered inputs and does not block.
+     */
+    boolean sortsInMemory() {
+        return stages.contains("SORT") || pipelineStages.contains("$sort");
+    }
+
+    private void walk(Object node) {
+        if (node instanceof Document) {
+            for (Map.Entry<String, Object> entry : ((Document) node).entrySet()) {
+                if (entry.getKey().equals("winningPlan")) {
+                    collect(entry.getValue());
+                } else if (entry.getKey().equals("stages") && entry.getValue() instanceof List) {
+                    for (Object stage : (List<?>) entry.getValue()) {
+                        Document pipelineStage = (Document) stage;
+                        String name = pipelineStage.keySet().iterator().next();
+                        if (!name.equals("$cursor")) {
+                            pipelineStages.add(name);
+                        }
+                        walk(pipelineStage);
+                    }
+                } else if (!entry.getKey().equals("rejectedPlans")) {
+                    walk(entry.getValue());
+                }
+            }
+        } else if (node instanceof List) {
+            ((List<?>) node).forEach(this::walk);
+        }
+    }
+
+    private void collect(Object node) {
+        if (node instanceof Document) {
+            Object stage = ((Document) node).get("stage");
+            if (stage instanceof String) {
+                stages.add((String) stage);
+            }
+            ((Document) node).values().forEach(this::collect);
+        } else if (node instanceof List) {
+            ((List<?>) node).forEach(this::collect);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pipelineStages.isEmpty() ? stages.toString() : stages + " then " + pipelineStages;
+    }
+}
@@ -0,0 +1,85 @@
+package com.dementiatracker.repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * QueryPlan against explain() output in the shapes MongoDB returns them
+ */
+class QueryPlanTest {
+
+    @Test
+    void indexScanWithRejectedCollectionScan() {
+        QueryPlan plan = QueryPlan.of(Document.parse("{'queryPlanner': {"
+                + "'winningPlan': {'stage': 'FETCH', 'inputStage': {'stage': 'IXSCAN', 'indexName': 'patient_time',"
+                + " 'direction': 'backward'}},"
+                + "'rejectedPlans': [{'stage': 'SORT', 'inputStage': {'stage': 'COLLSCAN'}}]}}"));
+
+        assertThat(plan.getStages()).containsExactly("FETCH", "IXSCAN");
+        assertThat(plan.usesIndex()).isTrue();
+        assertThat(plan.scansCollection()).isFalse();
+        assertThat(plan.sortsInMemory()).isFalse();
+    }
+
+    @Test
+    void collectionScan() {
+        QueryPlan plan = QueryPlan.of(Document.parse("{'queryPlanner': {"
+                + "'winningPlan': {'stage': 'COLLSCAN', 'filter': {'role': {'$eq': 'PATIENT'}}}, 'rejectedPlans': []}}"));
+
+        assertThat(plan.usesIndex()).isFalse();
+        assertThat(plan.scansCollection()).isTrue();
+    }
+
+    @Test
+    void blockingSortOverIndexScan() {
+        QueryPlan plan = QueryPlan.of(Document.parse("{'queryPlanner': {"
+                + "'winningPlan': {'stage': 'SORT', 'sortPattern': {'timestamp': 1}, 'inputStage':"
+                + " {'stage': 'FETCH', 'inputStage': {'stage': 'IXSCAN', 'indexName': 'patient_time'}}}}}"));
+
+        assertThat(plan.usesIndex()).isTrue();
+        assertThat(plan.sortsInMemory()).isTrue();
+    }
+
+    @Test
+    void sortMergeDoesNotBlock() {
+        QueryPlan plan = QueryPlan.of(Document.parse("{'queryPlanner': {"
+                + "'winningPlan': {'stage': 'FETCH', 'inputStage': {'stage': 'SORT_MERGE', 'inputStages': ["
+                + "{'stage': 'IXSCAN', 'indexName': 'patient_time'}, {'stage': 'IXSCAN', 'indexName': 'patient_time'}]}}}}"));
+
+        assertThat(plan.getStages()).containsExactly("FETCH", "SORT_MERGE", "IXSCAN", "IXSCAN");
+        assertThat(plan.sortsInMemory()).isFalse();
+    }
+
+    @Test
+    void slotBasedPlan() {
+        QueryPlan plan = QueryPlan.of(Document.parse("{'explainVersion': '2', 'queryPlanner': {"
+                + "'winningPlan': {'queryPlan': {'stage': 'GROUP', 'inputStage': {'stage': 'IXSCAN',"
+                + " 'indexName': 'acknowledged_triggered'}}, 'slotBasedPlan': {'slots': '$$RESULT=s9',"
+                + " 'stages': '[2] group [s4, s5] [s8 = count()]'}}}}"));
+
+        assertThat(plan.getStages()).containsExactly("GROUP", "IXSCAN");
+        assertThat(plan.usesIndex()).isTrue();
+    }
+
+    @Test
+    void aggregationWithSortOutsideTheQueryLayer() {
+        QueryPlan plan = QueryPlan.of(Document.parse("{'explainVersion': '1', 'stages': ["
+                + "{'$cursor': {'queryPlanner': {'winningPlan': {'stage': 'FETCH', 'inputStage':"
+                + " {'stage': 'IXSCAN', 'indexName': 'type_open'}}}}},"
+                + "{'$sort': {'sortKey': {'lastSeenAt': -1}}}, {'$group': {'_id': '$patientId'}}]}"));
+
+        assertThat(plan.usesIndex()).isTrue();
+        assertThat(plan.sortsInMemory()).isTrue();
+    }
+
+    @Test
+    void updateByIdLookup() {
+        QueryPlan plan = QueryPlan.of(Document.parse("{'queryPlanner': {"
+                + "'winningPlan': {'stage': 'UPDATE', 'inputStage': {'stage': 'IDHACK'}}}}"));
+
+        assertThat(plan.usesIndex()).isTrue();
+        assertThat(plan.scansCollection()).isFalse();
+    }
+}
@@ -0,0 +1,354 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.config.MongoIndexConfig;
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.model.AlertOutboxEntry;
+import com.dementiatracker.model.Location;
+import com.dementiatracker.model.LocationBucket;
+import com.dementiatracker.model.SafeZone;
+import com.dementiatracker.model.User;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs every repository and location store query against a real MongoDB
+ * with the declared indexes, re-sends each command it issued through
+ * explain(), and fails when a winning plan scans the collection, sorts in
+ * memory, or reads no index. Needs Docker; skipped without it.
+ */
+@DataMongoTest
+@Import({MongoIndexConfig.class, RepositoryQueryPlanTest.CommandRecorder.class})
+@Testcontainers(disabledWithoutDocker = true)
+class RepositoryQueryPlanTest {
+
+    @Container
+    static final MongoDBContainer MONGO = new MongoDBContainer(DockerImageName.parse("mongo:6.0"));
+
+    private static final Set<String> EXPLAINABLE = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "find", "aggregate", "count", "distinct", "findAndModify", "update", "delete")));
+
+    // Session and routing fields the driver adds, which explain does not accept
+    private static final List<String> DRIVER_FIELDS = Arrays.asList("$db", "lsid", "$clusterTime", "$readPreference",
+            "txnNumber", "autocommit", "startTransaction", "readConcern", "writeConcern");
+
+    private static final List<BsonDocument> COMMANDS = new CopyOnWriteArrayList<>();
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> MONGO.getReplicaSetUrl("query_plans"));
+    }
+
+    @TestConfiguration
+    static class CommandRecorder {
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer recordCommands() {
+            return settings -> settings.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (EXPLAINABLE.contains(event.getCommandName())) {
+                        COMMANDS.add(event.getCommand().clone());
+                    }
+                }
+            });
+        }
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private SafeZoneRepository safeZoneRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AlertOutboxRepository alertOutboxRepository;
+
+    private final List<String> misses = new ArrayList<>();
+
+    @BeforeEach
+    void clear() {
+        // Removing documents keeps the collections and their indexes
+        for (Class<?> type : Arrays.asList(Location.class, LocationBucket.class, Alert.class, SafeZone.class,
+                User.class, AlertOutboxEntry.class)) {
+            mongoTemplate.remove(new Query(), type);
+        }
+        misses.clear();
+    }
+
+    @AfterEach
+    void assertNoMisses() {
+        assertThat(misses).as("queries without a usable index").isEmpty();
+    }
+
+    @Test
+    void locationQueriesUseIndexes() {
+        LocationStore store = context.getAutowireCapableBeanFactory().createBean(DocumentLocationStore.class);
+        List<Location> fixes = store.insert(fixes("p1", 200));
+        store.insert(fixes("p2", 50));
+        Location cursor = fixes.get(100);
+
+        check("findByPatientIdOrderByTimestampDesc", () -> locationRepository.findByPatientIdOrderByTimestampDesc("p1"));
+        check("findFirstByPatientIdOrderByTimestampDesc",
+                () -> locationRepository.findFirstByPatientIdOrderByTimestampDesc("p1"));
+        check("findByPatientIdAndTimestampBetween",
+                () -> locationRepository.findByPatientIdAndTimestampBetween("p1", NOW.minusHours(1), NOW));
+        check("findLatest", () -> store.findLatest("p1"));
+        check("findLatestPerPatient", store::findLatestPerPatient);
+        check("findHistory", () -> store.findHistory("p1"));
+        check("findRange", () -> store.findRange("p1", NOW.minusHours(1), NOW));
+        check("findHistoryPage", () -> store.findHistoryPage("p1", null, null, 50));
+        check("findHistoryPage after cursor",
+                () -> store.findHistoryPage("p1", cursor.getTimestamp(), cursor.getId(), 50));
+        check("findRangePage", () -> store.findRangePage("p1", NOW.minusHours(1), NOW, null, null, 50));
+        check("findRangePage after cursor", () -> store.findRangePage("p1", NOW.minusHours(1), NOW,
+                cursor.getTimestamp(), cursor.getId(), 50));
+        check("streamHistory", () -> store.streamHistory("p1", location -> { }));
+        check("streamRange", () -> store.streamRange("p1", NOW.minusHours(1), NOW, location -> { }));
+        check("visitHistory", () -> store.visitHistory("p1", (latitude, longitude, time) -> { }));
+        check("visitRange", () -> store.visitRange("p1", NOW.minusHours(1), NOW, (latitude, longitude, time) -> { }));
+        check("findOlderThan", () -> store.findOlderThan(NOW.minusMinutes(30), 20));
+        check("delete", () -> store.delete(fixes.subList(0, 10)));
+    }
+
+    @Test
+    void locationBucketQueriesUseIndexes() {
+        LocationStore store = context.getAutowireCapableBeanFactory().createBean(BucketedLocationStore.class);
+        List<Location> fixes = fixes("p1", 200);
+        check("insert", () -> store.insert(fixes));
+        check("save", () -> store.save(fixes("p2", 50)));
+        Location cursor = fixes.get(100);
+
+        check("findLatest", () -> store.findLatest("p1"));
+        check("findLatestPerPatient", store::findLatestPerPatient);
+        check("findHistory", () -> store.findHistory("p1"));
+        check("findRange", () -> store.findRange("p1", NOW.minusHours(1), NOW));
+        check("findHistoryPage after cursor",
+                () -> store.findHistoryPage("p1", cursor.getTimestamp(), cursor.getId(), 50));
+        check("findRangePage after cursor", () -> store.findRangePage("p1", NOW.minusHours(1), NOW,
+                cursor.getTimestamp(), cursor.getId(), 50));
+        check("streamHistory", () -> store.streamHistory("p1", location -> { }));
+        check("streamRange", () -> store.streamRange("p1", NOW.minusHours(1), NOW, location -> { }));
+        check("visitHistory", () -> store.visitHistory("p1", (latitude, longitude, time) -> { }));
+        check("visitRange", () -> store.visitRange("p1", NOW.minusHours(1), NOW, (latitude, longitude, time) -> { }));
+        check("findOlderThan", () -> store.findOlderThan(NOW.minusMinutes(30), 20));
+        check("delete", () -> store.delete(fixes.subList(0, 10)));
+    }
+
+    @Test
+    void alertQueriesUseIndexes() {
+        List<Alert> alerts = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Alert alert = new Alert();
+            alert.setPatientId(i % 2 == 0 ? "p1" : "p2");
+            alert.setType(Alert.AlertType.values()[i % Alert.AlertType.values().length]);
+            alert.setMessage("alert " + i);
+            alert.setTriggeredAt(NOW.minusMinutes(i));
+            alert.setLastSeenAt(NOW.minusMinutes(i));
+            alert.setAcknowledged(i % 3 == 0);
+            alerts.add(alert);
+        }
+        alertRepository.saveAll(alerts);
+        Alert open = alerts.get(1);
+        List<String> ids = Arrays.asList(alerts.get(2).getId(), alerts.get(4).getId());
+
+        check("findByPatientIdOrderByTriggeredAtDesc", () -> alertRepository.findByPatientIdOrderByTriggeredAtDesc("p1"));
+        check("findByPatientIdAndAcknowledgedFalseOrderByTriggeredAtDesc",
+                () -> alertRepository.findByPatientIdAndAcknowledgedFalseOrderByTriggeredAtDesc("p1"));
+        check("findByPatientIdOrderByTriggeredAtDesc projected",
+                () -> alertRepository.findByPatientIdOrderByTriggeredAtDesc("p1", Alert.class));
+        check("findByPatientIdAndAcknowledgedFalseOrderByTriggeredAtDesc projected",
+                () -> alertRepository.findByPatientIdAndAcknowledgedFalseOrderByTriggeredAtDesc("p1", Alert.class));
+        check("findByTypeAndAcknowledgedFalse",
+                () -> alertRepository.findByTypeAndAcknowledgedFalse(Alert.AlertType.ZONE_EXIT));
+        check("findByTypeInAndAcknowledgedFalse", () -> alertRepository.findByTypeInAndAcknowledgedFalse(
+                EnumSet.of(Alert.AlertType.EMERGENCY, Alert.AlertType.ZONE_EXIT), Alert.class));
+        check("findByTypeNotAndLastSeenAtAfter", () -> alertRepository.findByTypeNotAndLastSeenAtAfter(
+                Alert.AlertType.EMERGENCY, NOW.minusMinutes(10)));
+        check("findByAcknowledgedTrueAndTriggeredAtBefore", () -> alertRepository.findByAcknowledgedTrueAndTriggeredAtBefore(
+                NOW.minusMinutes(30), PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "triggeredAt"))));
+        check("findById", () -> alertRepository.findById(open.getId()));
+        check("recordOccurrence", () -> alertRepository.recordOccurrence(open.getId(), NOW, 1, 2, "SYSTEM_REENTRY"));
+        check("countUnacknowledged", alertRepository::countUnacknowledged);
+        check("acknowledge", () -> alertRepository.acknowledge(open.getId(), "c1", NOW));
+        check("acknowledgeNext", () -> alertRepository.acknowledgeNext("p1", null, null, "c1", NOW));
+        check("acknowledgeNext by ids and types", () -> alertRepository.acknowledgeNext("p1", ids,
+                Collections.singletonList(Alert.AlertType.EMERGENCY), "c1", NOW));
+        check("deleteAll", () -> alertRepository.deleteAll(alerts.subList(0, 5)));
+    }
+
+    @Test
+    void safeZoneQueriesUseIndexes() {
+        List<SafeZone> zones = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            SafeZone zone = new SafeZone();
+            zone.setPatientId(i % 2 == 0 ? "p1" : "p2");
+            zone.setName("zone " + i);
+            zone.setCenterLatitude(51.5);
+            zone.setCenterLongitude(-0.12);
+            zone.setRadiusInMeters(200);
+            zone.setActive(i % 4 != 0);
+            zones.add(zone);
+        }
+        safeZoneRepository.saveAll(zones);
+
+        check("findByPatientId", () -> safeZoneRepository.findByPatientId("p1"));
+        check("findByPatientIdAndActiveTrue", () -> safeZoneRepository.findByPatientIdAndActiveTrue("p1"));
+        check("findById", () -> safeZoneRepository.findById(zones.get(0).getId()));
+        check("deleteById", () -> safeZoneRepository.deleteById(zones.get(0).getId()));
+    }
+
+    @Test
+    void userQueriesUseIndexes() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            User user = new User();
+            user.setUsername("user" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setRole(i % 2 == 0 ? User.Role.PATIENT : User.Role.CARETAKER);
+            if (user.getRole() == User.Role.PATIENT) {
+                user.setPatientId("p" + i);
+                user.getLinkedCaretakerIds().add("c" + i);
+                user.setInactivityThresholdMinutes(i % 4 == 0 ? 90 : null);
+            }
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+
+        check("findByUsername", () -> userRepository.findByUsername("user3"));
+        check("findByEmail", () -> userRepository.findByEmail("user3@example.com"));
+        check("findByPatientId", () -> userRepository.findByPatientId("p4"));
+        check("existsByUsername", () -> userRepository.existsByUsername("user3"));
+        check("existsByEmail", () -> userRepository.existsByEmail("user3@example.com"));
+        check("findPatientLinks", userRepository::findPatientLinks);
+        check("findInactivitySettings", userRepository::findInactivitySettings);
+        check("findById", () -> userRepository.findById(users.get(0).getId()));
+        check("findAllById", () -> userRepository.findAllById(Arrays.asList(users.get(0).getId(),
+                users.get(1).getId())));
+    }
+
+    @Test
+    void alertOutboxQueriesUseIndexes() {
+        List<AlertOutboxEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            entries.add(new AlertOutboxEntry(null, "p1", "{}", NOW, 0, null));
+        }
+        alertOutboxRepository.saveAll(entries);
+
+        check("findAllByOrderByIdAsc", () -> alertOutboxRepository.findAllByOrderByIdAsc(PageRequest.of(0, 10)));
+        check("findByPatientIdNotInOrderByIdAsc", () -> alertOutboxRepository.findByPatientIdNotInOrderByIdAsc(
+                Collections.singleton("p2"), PageRequest.of(0, 10)));
+        check("deleteAllById", () -> alertOutboxRepository.deleteAllById(Arrays.asList(entries.get(0).getId(),
+                entries.get(1).getId())));
+    }
+
+    /**
+     * Run the queries and explain every command they sent
+     */
+    private void check(String name, Runnable queries) {
+        COMMANDS.clear();
+        queries.run();
+        List<BsonDocument> sent = new ArrayList<>(COMMANDS);
+        if (sent.isEmpty()) {
+            misses.add(name + ": sent no query");
+        }
+
+        for (BsonDocument command : sent) {
+            for (BsonDocument statement : statements(command)) {
+                Document explain = mongoTemplate.getDb().runCommand(new BsonDocument("explain", statement)
+                        .append("verbosity", new BsonString("queryPlanner")));
+                QueryPlan plan = QueryPlan.of(explain);
+                if (!plan.usesIndex() || plan.scansCollection() || plan.sortsInMemory()) {
+                    misses.add(name + ": " + plan + " for " + statement.toJson());
+                }
+            }
+        }
+    }
+
+    /**
+     * The command without driver fields, split into one command per
+     * statement since explain takes a single update or delete
+     */
+    private static List<BsonDocument> statements(BsonDocument command) {
+        // Copied field by field: the recorded command may be an immutable raw document
+        BsonDocument clean = new BsonDocument();
+        command.forEach((field, value) -> {
+            if (!DRIVER_FIELDS.contains(field)) {
+                clean.put(field, value);
+            }
+        });
+
+        String batchField = clean.containsKey("updates") ? "updates" : clean.containsKey("deletes") ? "deletes" : null;
+        if (batchField == null) {
+            return Collections.singletonList(clean);
+        }
+
+        List<BsonDocument> statements = new ArrayList<>();
+        for (BsonValue statement : clean.getArray(batchField)) {
+            BsonDocument single = new BsonDocument();
+            clean.forEach(single::put);
+            single.put(batchField, new BsonArray(Collections.singletonList(statement)));
+            statements.add(single);
+        }
+        return statements;
+    }
+
+    private static List<Location> fixes(String patientId, int count) {
+        List<Location> fixes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            fixes.add(new Location(null, patientId, 51.5 + i * 1e-5, -0.12, 5, NOW.minusMinutes(count - i), "MANUAL",
+                    null));
+        }
+        return fixes;
+    }
+}
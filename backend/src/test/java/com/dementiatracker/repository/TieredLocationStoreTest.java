@@ -0,0 +1,141 @@
+package com.dementiatracker.repository;
+
+import com.dementiatracker.model.Location;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reads spanning the hot/archive boundary come back as one ordered history,
+ * with a fix that is archived but still hot returned once
+ */
+class TieredLocationStoreTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    private final LocationStore hot = mock(LocationStore.class);
+
+    private final ArchiveStore archive = mock(ArchiveStore.class);
+
+    private final TieredLocationStore store = new TieredLocationStore();
+
+    private final Location archivedOnly = fix(DAY.atTime(10, 0));
+
+    private final Location overlapping = fix(DAY.atTime(23, 0)); // Archived, hot copy not yet deleted
+
+    private final Location hotSameDay = fix(DAY.atTime(23, 30));
+
+    private final Location hotNextDay = fix(DAY.plusDays(1).atTime(8, 0));
+
+    private final Location hotSameTime = fix(DAY.plusDays(1).atTime(8, 0));
+
+    @BeforeEach
+    void setUp() {
+        List<Location> hotFixes = Arrays.asList(overlapping, hotSameDay, hotNextDay, hotSameTime);
+        when(hot.findHistoryPage(eq("p1"), any(), any(), anyInt())).thenAnswer(call ->
+                page(hotFixes, null, null, call.getArgument(1), call.getArgument(2), call.getArgument(3), true));
+        when(hot.findRangePage(eq("p1"), any(), any(), any(), any(), anyInt())).thenAnswer(call ->
+                page(hotFixes, call.getArgument(1), call.getArgument(2), call.getArgument(3), call.getArgument(4),
+                        call.getArgument(5), false));
+
+        when(archive.getLocationDays("p1")).thenReturn(Collections.singletonList(DAY));
+        when(archive.readLocationDay("p1", DAY)).thenReturn(Arrays.asList(archivedOnly, overlapping));
+
+        ReflectionTestUtils.setField(store, "hot", hot);
+        ReflectionTestUtils.setField(store, "archive", archive);
+        ReflectionTestUtils.setField(store, "pageSize", 2);
+    }
+
+    @Test
+    void rangeMergesArchiveAndHotOnce() {
+        List<Location> range = store.findRange("p1", DAY.atStartOfDay(), DAY.plusDays(2).atStartOfDay());
+
+        assertThat(range).containsExactlyElementsOf(expected(LocationStore.TIME_ORDER));
+    }
+
+    @Test
+    void historyMergesNewestFirst() {
+        assertThat(store.findHistory("p1")).containsExactlyElementsOf(expected(LocationStore.TIME_ORDER.reversed()));
+    }
+
+    @Test
+    void pagesCrossTheBoundary() {
+        List<Location> read = new ArrayList<>();
+        Location last = null;
+        do {
+            List<Location> page = store.findHistoryPage("p1", last == null ? null : last.getTimestamp(),
+                    last == null ? null : last.getId(), 2);
+            read.addAll(page);
+            last = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (last != null);
+
+        assertThat(read).containsExactlyElementsOf(expected(LocationStore.TIME_ORDER.reversed()));
+
+        read.clear();
+        last = null;
+        do {
+            List<Location> page = store.findRangePage("p1", DAY.atTime(12, 0), DAY.plusDays(1).atTime(12, 0),
+                    last == null ? null : last.getTimestamp(), last == null ? null : last.getId(), 1);
+            read.addAll(page);
+            last = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (last != null);
+
+        assertThat(read).containsExactly(overlapping, hotSameDay, hotNextDay, hotSameTime);
+    }
+
+    @Test
+    void rangeWithoutArchivedDaysGoesToHot() {
+        LocalDateTime start = DAY.plusDays(1).atStartOfDay();
+        LocalDateTime end = DAY.plusDays(2).atStartOfDay();
+        when(hot.findRange("p1", start, end)).thenReturn(Arrays.asList(hotNextDay, hotSameTime));
+
+        assertThat(store.findRange("p1", start, end)).containsExactly(hotNextDay, hotSameTime);
+        verify(archive, never()).readLocationDay(any(), any());
+    }
+
+    private List<Location> expected(Comparator<Location> order) {
+        return Arrays.asList(archivedOnly, overlapping, hotSameDay, hotNextDay, hotSameTime).stream()
+                .sorted(order)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Keyset page over the hot fixes, the way the hot stores answer it
+     */
+    private static List<Location> page(List<Location> fixes, LocalDateTime start, LocalDateTime end,
+            LocalDateTime afterTimestamp, String afterId, int limit, boolean descending) {
+        Comparator<Location> order = descending ? LocationStore.TIME_ORDER.reversed() : LocationStore.TIME_ORDER;
+        Location after = new Location();
+        after.setTimestamp(afterTimestamp);
+        after.setId(afterId);
+        return fixes.stream()
+                .filter(fix -> start == null || fix.getTimestamp().isAfter(start) && fix.getTimestamp().isBefore(end))
+                .filter(fix -> afterTimestamp == null || order.compare(fix, after) > 0)
+                .sorted(order)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static Location fix(LocalDateTime timestamp) {
+        return new Location(new ObjectId().toHexString(), "p1", 51.5, -0.1, 5.0, timestamp, "GPS", "d1");
+    }
+}
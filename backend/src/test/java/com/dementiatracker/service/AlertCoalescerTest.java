@@ -0,0 +1,123 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.repository.AlertRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Registry changes made inside a transaction must only land if it commits
+ */
+class AlertCoalescerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final AlertRepository alertRepository = mock(AlertRepository.class);
+
+    private final TransactionTemplate transactions = new TransactionTemplate(new NoOpTransactionManager());
+
+    private AlertCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        when(alertRepository.save(any(Alert.class))).thenAnswer(call -> {
+            Alert alert = call.getArgument(0);
+            alert.setId("a1");
+            return alert;
+        });
+        when(alertRepository.recordOccurrence(eq("a1"), any(), anyDouble(), anyDouble(), anyString()))
+                .thenReturn(new Alert());
+
+        coalescer = new AlertCoalescer();
+        ReflectionTestUtils.setField(coalescer, "alertRepository", alertRepository);
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+        ReflectionTestUtils.setField(coalescer, "windowSeconds", 600L);
+    }
+
+    @Test
+    void committedTransactionUpdatesRegistry() {
+        AlertCoalescer.Outcome inserted = transactions.execute(status -> coalescer.coalesce(event(0)));
+        AlertCoalescer.Outcome folded = transactions.execute(status -> coalescer.coalesce(event(1)));
+        assertThat(inserted).isEqualTo(AlertCoalescer.Outcome.INSERTED);
+        assertThat(folded).isEqualTo(AlertCoalescer.Outcome.FOLDED);
+
+        Alert next = event(2);
+        coalescer.coalesce(next);
+        assertThat(next.getOccurrenceCount()).isEqualTo(3);
+        assertThat(next.getTriggeredAt()).isEqualTo(T0);
+    }
+
+    @Test
+    void rolledBackTransactionLeavesRegistryUnchanged() throws Exception {
+        coalescer.coalesce(event(0));
+
+        assertThatThrownBy(() -> transactions.execute(status -> {
+            coalescer.coalesce(event(1));
+            throw new IllegalStateException("abort");
+        })).isInstanceOf(IllegalStateException.class);
+
+        // Another thread must get the entry, proving the rollback released its lock
+        Alert next = event(2);
+        CompletableFuture.runAsync(() -> coalescer.coalesce(next)).get(5, TimeUnit.SECONDS);
+        assertThat(next.getOccurrenceCount()).isEqualTo(2);
+        assertThat(next.getLastSeenAt()).isEqualTo(T0.plusMinutes(2));
+    }
+
+    @Test
+    void rolledBackInsertIsNotTracked() {
+        assertThatThrownBy(() -> transactions.execute(status -> {
+            coalescer.coalesce(event(0));
+            throw new IllegalStateException("abort");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(coalescer.coalesce(event(1))).isEqualTo(AlertCoalescer.Outcome.INSERTED);
+    }
+
+    private static Alert event(int minute) {
+        Alert alert = new Alert();
+        alert.setPatientId("p1");
+        alert.setType(Alert.AlertType.ZONE_EXIT);
+        alert.setTriggeredAt(T0.plusMinutes(minute));
+        return alert;
+    }
+
+    /**
+     * Runs transaction synchronizations without a database
+     */
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
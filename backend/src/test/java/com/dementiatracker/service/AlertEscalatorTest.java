@@ -0,0 +1,139 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.dto.AlertEscalation;
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.repository.AlertRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Escalations go through the outbox, and secondary caretakers keep getting
+ * the alert's events once an escalation reached them
+ */
+class AlertEscalatorTest {
+
+    private final AlertOutbox alertOutbox = mock(AlertOutbox.class);
+
+    private AlertEscalator escalator;
+
+    @BeforeEach
+    void setUp() {
+        when(alertOutbox.write(any())).thenAnswer(call -> ((Supplier<?>) call.getArgument(0)).get());
+
+        CaretakerLinkIndex links = mock(CaretakerLinkIndex.class);
+        when(links.getCaretakerIds("p1")).thenReturn(Collections.singleton("c1"));
+        when(links.getSecondaryCaretakerIds("p1")).thenReturn(new LinkedHashSet<>(Arrays.asList("c1", "s1")));
+
+        escalator = new AlertEscalator();
+        ReflectionTestUtils.setField(escalator, "alertRepository", mock(AlertRepository.class));
+        ReflectionTestUtils.setField(escalator, "alertOutbox", alertOutbox);
+        ReflectionTestUtils.setField(escalator, "caretakerLinkIndex", links);
+        ReflectionTestUtils.setField(escalator, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(escalator, "enabled", true);
+        ReflectionTestUtils.setField(escalator, "types", new Alert.AlertType[] {Alert.AlertType.ZONE_EXIT});
+        ReflectionTestUtils.setField(escalator, "ladderMinutes", new int[] {5, 15});
+        ReflectionTestUtils.setField(escalator, "secondaryFromStep", 2);
+        ReflectionTestUtils.setField(escalator, "followUpMinutes", 1440L);
+        ReflectionTestUtils.setField(escalator, "tickMillis", 10L);
+        ReflectionTestUtils.setField(escalator, "wheelSize", 512);
+        escalator.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        escalator.stop();
+    }
+
+    @Test
+    void secondaryCaretakersFollowEscalatedAlert() {
+        escalator.track(alert("a1"));
+        assertThat(escalator.getSecondaryRecipients("p1", Collections.singletonList("a1"))).isEmpty();
+
+        escalate("a1");
+        escalate("a1");
+
+        ArgumentCaptor<Collection<String>> recipients = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(alertOutbox, times(2)).enqueue(eq("p1"), recipients.capture(), events.capture());
+        assertThat(recipients.getAllValues().get(0)).containsExactly("c1");
+        assertThat(recipients.getAllValues().get(1)).containsExactly("c1", "s1");
+        assertThat(((AlertEscalation) events.getAllValues().get(1)).isSecondary()).isTrue();
+
+        // Past the last rung, but the secondary caretaker still has the alert listed
+        assertThat(escalator.getSecondaryRecipients("p1", Arrays.asList("a0", "a1"))).containsExactly("s1");
+
+        escalator.onAcknowledged("a1");
+        assertThat(escalator.getSecondaryRecipients("p1", Collections.singletonList("a1"))).isEmpty();
+    }
+
+    @Test
+    void alertsBelowSecondaryStepHaveNoSecondaryRecipients() {
+        escalator.track(alert("a1"));
+        escalate("a1");
+
+        verify(alertOutbox).enqueue(eq("p1"), anyCollection(), any());
+        assertThat(escalator.getSecondaryRecipients("p1", Collections.singletonList("a1"))).isEmpty();
+    }
+
+    @Test
+    void backdatedAlertStartsLadderWhenRaised() throws InterruptedException {
+        Alert alert = alert("a1");
+        alert.setTriggeredAt(LocalDateTime.now().minusHours(2)); // Fix time of an offline upload
+        alert.setLastSeenAt(alert.getTriggeredAt());
+        escalator.track(alert);
+
+        Thread.sleep(300); // Many ticks; every rung would have fired if counted from the fix time
+        verify(alertOutbox, never()).enqueue(any(), anyCollection(), any());
+    }
+
+    @Test
+    void secondaryFollowUpExpires() throws InterruptedException {
+        ReflectionTestUtils.setField(escalator, "followUpMinutes", 0L);
+        escalator.track(alert("a1"));
+        escalate("a1");
+        escalate("a1");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!escalator.getSecondaryRecipients("p1", Collections.singletonList("a1")).isEmpty()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(escalator.getSecondaryRecipients("p1", Collections.singletonList("a1"))).isEmpty();
+    }
+
+    private void escalate(String alertId) {
+        Map<String, ?> escalations = (Map<String, ?>) ReflectionTestUtils.getField(escalator, "escalations");
+        ReflectionTestUtils.invokeMethod(escalator, "escalate", escalations.get(alertId));
+    }
+
+    private static Alert alert(String id) {
+        Alert alert = new Alert();
+        alert.setId(id);
+        alert.setPatientId("p1");
+        alert.setType(Alert.AlertType.ZONE_EXIT);
+        alert.setTriggeredAt(LocalDateTime.now());
+        return alert;
+    }
+}
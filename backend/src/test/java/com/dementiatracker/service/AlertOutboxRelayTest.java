@@ -0,0 +1,133 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.AlertOutboxEntry;
+import com.dementiatracker.repository.AlertOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Failed sends must hold back only their own patient, and give up after
+ * max-attempts
+ */
+class AlertOutboxRelayTest {
+
+    private final List<AlertOutboxEntry> outbox = new ArrayList<>();
+
+    private final List<String> sent = new ArrayList<>();
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    private final AlertPublisher publisher = mock(AlertPublisher.class);
+
+    private AlertOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        AlertOutboxRepository repository = mock(AlertOutboxRepository.class);
+        when(repository.findAllByOrderByIdAsc(any())).thenAnswer(call -> new ArrayList<>(outbox));
+        when(repository.findByPatientIdNotInOrderByIdAsc(anyCollection(), any())).thenAnswer(call -> {
+            Collection<?> held = call.getArgument(0);
+            return outbox.stream().filter(e -> !held.contains(e.getPatientId())).collect(Collectors.toList());
+        });
+        doAnswer(call -> {
+            Collection<?> ids = call.getArgument(0);
+            outbox.removeIf(e -> ids.contains(e.getId()));
+            return null;
+        }).when(repository).deleteAllById(anyCollection());
+        doAnswer(call -> outbox.removeIf(e -> e.getId().equals(call.getArgument(0))))
+                .when(repository).deleteById(any());
+
+        doAnswer(call -> {
+            String payload = new String((byte[]) call.getArgument(1), StandardCharsets.UTF_8);
+            if (payload.startsWith("bad")) {
+                throw new IllegalStateException("broker rejected " + payload);
+            }
+            sent.add(payload);
+            return null;
+        }).when(publisher).publish(any(), any());
+
+        relay = new AlertOutboxRelay();
+        ReflectionTestUtils.setField(relay, "outboxRepository", repository);
+        ReflectionTestUtils.setField(relay, "alertPublisher", publisher);
+        ReflectionTestUtils.setField(relay, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(relay, "batchSize", 200);
+        ReflectionTestUtils.setField(relay, "retryInitialMs", 0L);
+        ReflectionTestUtils.setField(relay, "retryMaxMs", 0L);
+        ReflectionTestUtils.setField(relay, "maxAttempts", 3);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(relay, "publishedCounter", registry.counter("published"));
+        ReflectionTestUtils.setField(relay, "failedCounter", registry.counter("failed"));
+        ReflectionTestUtils.setField(relay, "deadLetteredCounter", registry.counter("dead_lettered"));
+        ReflectionTestUtils.setField(relay, "lagTimer", registry.timer("lag"));
+    }
+
+    @Test
+    void failedSendHoldsBackOnlyItsPatient() {
+        add("1", "p1", "bad-1");
+        add("2", "p2", "b-1");
+        add("3", "p1", "a-2");
+        add("4", "p2", "b-2");
+
+        drain();
+
+        assertThat(sent).containsExactly("b-1", "b-2");
+        assertThat(outbox).extracting(AlertOutboxEntry::getId).containsExactly("1", "3");
+        assertThat(outbox.get(0).getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void entryIsDeadLetteredAfterMaxAttempts() {
+        add("1", "p1", "bad-1");
+        add("2", "p1", "a-2");
+
+        drain();
+        drain();
+        assertThat(sent).isEmpty();
+        drain();
+        verify(mongoTemplate).insert(any(AlertOutboxEntry.class), eq("alert_outbox_dead"));
+
+        drain();
+        assertThat(sent).containsExactly("a-2");
+        assertThat(outbox).isEmpty();
+    }
+
+    @Test
+    void targetedEntryGoesOnlyToItsRecipients() {
+        outbox.add(new AlertOutboxEntry("1", "p1", "esc-1", LocalDateTime.now(), 0, Arrays.asList("c1", "s1")));
+
+        drain();
+
+        verify(publisher).publishToUsers(eq(Arrays.asList("c1", "s1")), any());
+        verify(publisher, never()).publish(any(), any());
+        assertThat(outbox).isEmpty();
+    }
+
+    private void add(String id, String patientId, String payload) {
+        outbox.add(new AlertOutboxEntry(id, patientId, payload, LocalDateTime.now(), 0, null));
+    }
+
+    private void drain() {
+        ReflectionTestUtils.invokeMethod(relay, "drain");
+    }
+}
@@ -0,0 +1,94 @@
+package com.dementiatracker.service;
+
+import com.mongodb.MongoException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Transactions aborted with TransientTransactionError are run again
+ */
+class AlertOutboxTest {
+
+    private AlertOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        outbox = new AlertOutbox();
+        ReflectionTestUtils.setField(outbox, "relay", mock(AlertOutboxRelay.class));
+        ReflectionTestUtils.setField(outbox, "transactionTemplate", new TransactionTemplate(new NoOpTransactionManager()));
+    }
+
+    @Test
+    void retriesTransientTransactionErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+        String result = outbox.write(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw writeConflict();
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void givesUpAfterLastAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThatThrownBy(() -> outbox.write(() -> {
+            attempts.incrementAndGet();
+            throw writeConflict();
+        })).isInstanceOf(UncategorizedMongoDbException.class);
+        assertThat(attempts).hasValue(5);
+    }
+
+    @Test
+    void doesNotRetryOtherErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThatThrownBy(() -> outbox.write(() -> {
+            attempts.incrementAndGet();
+            throw new RuntimeException("Alert not found");
+        })).hasMessage("Alert not found");
+        assertThat(attempts).hasValue(1);
+    }
+
+    private static RuntimeException writeConflict() {
+        MongoException conflict = new MongoException(112, "WriteConflict");
+        conflict.addLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+        return new UncategorizedMongoDbException(conflict.getMessage(), conflict);
+    }
+
+    /**
+     * Runs transaction callbacks without a database
+     */
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.dto.AlertsAcknowledged;
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.repository.AlertRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bulk acknowledgements report and react to exactly the alerts they closed
+ */
+class AlertServiceTest {
+
+    private final AlertRepository alertRepository = mock(AlertRepository.class);
+
+    private final AlertOutbox alertOutbox = mock(AlertOutbox.class);
+
+    private final AlertCounters alertCounters = mock(AlertCounters.class);
+
+    private final AlertEscalator alertEscalator = mock(AlertEscalator.class);
+
+    private final GeofenceStateTracker geofenceStateTracker = mock(GeofenceStateTracker.class);
+
+    private final AlertCoalescer alertCoalescer = mock(AlertCoalescer.class);
+
+    private AlertService alertService;
+
+    @BeforeEach
+    void setUp() {
+        when(alertOutbox.write(any())).thenAnswer(call -> ((Supplier<?>) call.getArgument(0)).get());
+        when(alertEscalator.getSecondaryRecipients(any(), anyCollection())).thenReturn(Collections.emptySet());
+
+        alertService = new AlertService();
+        ReflectionTestUtils.setField(alertService, "alertRepository", alertRepository);
+        ReflectionTestUtils.setField(alertService, "alertOutbox", alertOutbox);
+        ReflectionTestUtils.setField(alertService, "alertCounters", alertCounters);
+        ReflectionTestUtils.setField(alertService, "alertEscalator", alertEscalator);
+        ReflectionTestUtils.setField(alertService, "geofenceStateTracker", geofenceStateTracker);
+        ReflectionTestUtils.setField(alertService, "alertCoalescer", alertCoalescer);
+    }
+
+    @Test
+    void summaryListsOnlyAlertsThisCallClosed() {
+        // a2 was requested too, but another caretaker closed it first
+        when(alertRepository.acknowledgeNext(eq("p1"), any(), any(), eq("c1"), any()))
+                .thenReturn(alert("a1", Alert.AlertType.ZONE_EXIT), alert("a3", Alert.AlertType.NO_MOVEMENT), null);
+
+        AlertsAcknowledged result = alertService.acknowledgeAlerts("p1", Arrays.asList("a1", "a2", "a3"), null, "c1");
+
+        assertThat(result.getAlertIds()).containsExactly("a1", "a3");
+        assertThat(result.getAcknowledgedCount()).isEqualTo(2);
+        verify(alertOutbox).enqueue("p1", result);
+        verify(alertEscalator).onAcknowledged("a1");
+        verify(alertEscalator).onAcknowledged("a3");
+        verify(alertEscalator, never()).onAcknowledged("a2");
+        verify(geofenceStateTracker).onExitAlertAcknowledged("p1", "a1");
+        verify(alertCounters).closed("p1", Alert.AlertType.ZONE_EXIT, 1);
+        verify(alertCounters).closed("p1", Alert.AlertType.NO_MOVEMENT, 1);
+    }
+
+    @Test
+    void nothingLeftToCloseSendsNoEvent() {
+        AlertsAcknowledged result = alertService.acknowledgeAlerts("p1", null, null, "c1");
+
+        assertThat(result.getAlertIds()).isEmpty();
+        assertThat(result.getAcknowledgedCount()).isZero();
+        verify(alertOutbox, never()).enqueue(any(), any());
+        verify(alertEscalator, never()).onAcknowledged(any());
+    }
+
+    private static Alert alert(String id, Alert.AlertType type) {
+        Alert alert = new Alert();
+        alert.setId(id);
+        alert.setPatientId("p1");
+        alert.setType(type);
+        return alert;
+    }
+}
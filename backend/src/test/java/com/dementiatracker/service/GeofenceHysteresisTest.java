@@ -0,0 +1,116 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.geo.GeoMath;
+import com.dementiatracker.geo.ZoneIndex;
+import com.dementiatracker.model.Location;
+import com.dementiatracker.model.SafeZone;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Suppressed transitions are counted where hysteresis holds one back, not
+ * derived from raw and committed totals
+ */
+class GeofenceHysteresisTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final GeofenceStateTracker tracker = new GeofenceStateTracker();
+
+    private final ZoneIndex zones = ZoneIndex.build(Collections.singletonList(zone()));
+
+    private GeofenceHysteresis hysteresis;
+
+    private GeofenceStateTracker.GeofenceState state;
+
+    private int minute;
+
+    @BeforeEach
+    void setUp() {
+        hysteresis = new GeofenceHysteresis();
+        ReflectionTestUtils.setField(hysteresis, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(hysteresis, "exitMargin", 50.0);
+        ReflectionTestUtils.setField(hysteresis, "enterMargin", 20.0);
+        hysteresis.init();
+        state = tracker.getState("p1");
+    }
+
+    @Test
+    void exitWithinMarginIsSuppressed() {
+        assertThat(fix(50)).isEqualTo(GeofenceHysteresis.Transition.NONE);
+        assertThat(fix(120)).isEqualTo(GeofenceHysteresis.Transition.NONE); // Outside, but within the margin
+        assertThat(fix(130)).isEqualTo(GeofenceHysteresis.Transition.NONE);
+        assertThat(hysteresis.getSuppressedTransitions()).isZero(); // Still held back, not yet suppressed
+
+        assertThat(fix(60)).isEqualTo(GeofenceHysteresis.Transition.NONE);
+        assertThat(hysteresis.getSuppressedTransitions()).isEqualTo(1);
+    }
+
+    @Test
+    void committedTransitionIsNotSuppressed() {
+        fix(50);
+        fix(120);
+        assertThat(fix(200)).isEqualTo(GeofenceHysteresis.Transition.EXIT);
+        state.markOutside("a1");
+
+        // Back inside but not deep enough, then out again: the entry was held back
+        assertThat(fix(90)).isEqualTo(GeofenceHysteresis.Transition.NONE);
+        fix(200);
+        assertThat(hysteresis.getSuppressedTransitions()).isEqualTo(1);
+
+        assertThat(fix(10)).isEqualTo(GeofenceHysteresis.Transition.ENTRY);
+        state.markInside();
+        fix(20);
+        assertThat(hysteresis.getSuppressedTransitions()).isEqualTo(1);
+    }
+
+    @Test
+    void acknowledgedExitDoesNotSkewSuppressionCount() {
+        fix(50);
+        assertThat(fix(200)).isEqualTo(GeofenceHysteresis.Transition.EXIT);
+        state.markOutside("a1");
+        fix(90); // Held-back entry in progress
+        tracker.onExitAlertAcknowledged("p1", "a1"); // Caretaker closes the exit: inside without a raw transition
+
+        // Inside now matches the committed state; the ack resolved it, so nothing was suppressed
+        fix(50);
+        assertThat(hysteresis.getSuppressedTransitions()).isZero();
+
+        // Later held-back exits are still counted
+        fix(120);
+        fix(40);
+        fix(130);
+        fix(40);
+        assertThat(hysteresis.getSuppressedTransitions()).isEqualTo(2);
+    }
+
+    /**
+     * Evaluate a fix the given distance north of the zone center (100 m radius)
+     */
+    private GeofenceHysteresis.Transition fix(double meters) {
+        Location location = new Location();
+        location.setLatitude(Math.toDegrees(meters / GeoMath.EARTH_RADIUS));
+        location.setLongitude(0);
+        location.setTimestamp(T0.plusMinutes(minute++));
+        synchronized (state) {
+            return hysteresis.evaluate(state, zones, location);
+        }
+    }
+
+    private static SafeZone zone() {
+        SafeZone zone = new SafeZone();
+        zone.setId("z1");
+        zone.setCenterLatitude(0);
+        zone.setCenterLongitude(0);
+        zone.setRadiusInMeters(100);
+        zone.setActive(true);
+        return zone;
+    }
+}
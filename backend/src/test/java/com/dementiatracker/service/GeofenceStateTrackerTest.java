@@ -0,0 +1,68 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.repository.AlertRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GeofenceStateTrackerTest {
+
+    private final AlertRepository alertRepository = mock(AlertRepository.class);
+
+    private GeofenceStateTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new GeofenceStateTracker();
+        ReflectionTestUtils.setField(tracker, "alertRepository", alertRepository);
+    }
+
+    @Test
+    void rebuildMarksPatientsWithOpenExitAlertsOutside() {
+        when(alertRepository.findByTypeAndAcknowledgedFalse(Alert.AlertType.ZONE_EXIT))
+                .thenReturn(Arrays.asList(exitAlert("a1", "p1"), exitAlert("a2", "p1"), exitAlert("a3", "p2")));
+
+        tracker.rebuild();
+
+        assertThat(tracker.getState("p1").isOutside()).isTrue();
+        assertThat(tracker.getState("p2").isOutside()).isTrue();
+        assertThat(tracker.getState("p3").isOutside()).isFalse();
+        assertThat(tracker.getState("p1").markInside()).containsExactly("a1", "a2");
+        assertThat(tracker.getState("p1").isOutside()).isFalse();
+    }
+
+    @Test
+    void acknowledgingEveryOpenExitAlertMovesPatientInside() {
+        GeofenceStateTracker.GeofenceState state = tracker.getState("p1");
+        state.markOutside("a1");
+        state.markOutside("a2");
+
+        tracker.onExitAlertAcknowledged("p1", "a1");
+        assertThat(state.isOutside()).isTrue();
+
+        tracker.onExitAlertAcknowledged("p1", "a2");
+        assertThat(state.isOutside()).isFalse();
+        assertThat(state.markInside()).isEmpty();
+    }
+
+    @Test
+    void acknowledgementForUnknownPatientIsIgnored() {
+        tracker.onExitAlertAcknowledged("p9", "a1");
+        assertThat(tracker.getState("p9").isOutside()).isFalse();
+    }
+
+    private static Alert exitAlert(String id, String patientId) {
+        Alert alert = new Alert();
+        alert.setId(id);
+        alert.setPatientId(patientId);
+        alert.setType(Alert.AlertType.ZONE_EXIT);
+        return alert;
+    }
+}
@@ -0,0 +1,112 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.dto.DownsampledHistory;
+import com.dementiatracker.dto.TrackPoint;
+import com.dementiatracker.geo.FixVisitor;
+import com.dementiatracker.repository.LocationStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Whole finished days are reduced once and served from the day cache;
+ * partial days are read raw every time
+ */
+class HistoryDownsamplerTest {
+
+    private static final LocalDate DAY = LocalDate.now().minusDays(10);
+
+    private final LocationStore locationStore = mock(LocationStore.class);
+
+    private HistoryDownsampler downsampler;
+
+    @BeforeEach
+    void setUp() {
+        // One fix per minute, walking east, for any requested range
+        doAnswer(call -> {
+            LocalDateTime from = call.getArgument(1);
+            LocalDateTime to = call.getArgument(2);
+            FixVisitor visitor = call.getArgument(3);
+            LocalDateTime minute = from.withSecond(0).withNano(0);
+            for (; minute.isBefore(to); minute = minute.plusMinutes(1)) {
+                if (minute.isAfter(from)) {
+                    double longitude = (FixVisitor.toTime(minute) / 60000 % 100000) * 1e-5;
+                    visitor.visit(51.5, longitude, FixVisitor.toTime(minute));
+                }
+            }
+            return null;
+        }).when(locationStore).visitRange(eq("p1"), any(), any(), any());
+
+        downsampler = new HistoryDownsampler();
+        ReflectionTestUtils.setField(downsampler, "locationStore", locationStore);
+        ReflectionTestUtils.setField(downsampler, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(downsampler, "maxRangeDays", 31);
+        ReflectionTestUtils.setField(downsampler, "maxCachedDays", 100);
+        downsampler.init();
+    }
+
+    @Test
+    void wholeDayIsReadOnce() {
+        LocalDateTime start = DAY.atStartOfDay().minusHours(2);
+        LocalDateTime end = DAY.plusDays(1).atStartOfDay().plusHours(2);
+
+        DownsampledHistory first = downsampler.downsample("p1", start, end, 200);
+        DownsampledHistory second = downsampler.downsample("p1", start, end, 200);
+
+        assertThat(first.getPoints()).hasSize(200);
+        assertThat(first.getSourceCount()).isEqualTo(28 * 60 - 1);
+        assertThat(second).isEqualTo(first);
+        assertThat(downsampler.cachedDays()).isEqualTo(1);
+        // The whole day is loaded once; the partial days at both edges twice
+        verify(locationStore, times(1)).visitRange(eq("p1"), eq(DAY.atStartOfDay().minusNanos(1)),
+                eq(DAY.plusDays(1).atStartOfDay()), any());
+        verify(locationStore, times(2)).visitRange(eq("p1"), eq(start), eq(DAY.atStartOfDay()), any());
+    }
+
+    @Test
+    void endpointsOfRangeAreKept() {
+        LocalDateTime start = DAY.atStartOfDay().minusHours(2);
+        LocalDateTime end = DAY.plusDays(2).atStartOfDay().plusHours(2);
+
+        List<TrackPoint> points = downsampler.downsample("p1", start, end, 100).getPoints();
+
+        assertThat(points).hasSize(100);
+        assertThat(points.get(0).getTimestamp()).isEqualTo(start.plusMinutes(1));
+        assertThat(points.get(points.size() - 1).getTimestamp()).isEqualTo(end.minusMinutes(1));
+    }
+
+    @Test
+    void invalidatedDayIsReloaded() {
+        LocalDateTime start = DAY.atStartOfDay().minusHours(1);
+        LocalDateTime end = DAY.plusDays(1).atStartOfDay();
+        downsampler.downsample("p1", start, end, 100);
+        clearInvocations(locationStore);
+
+        downsampler.invalidate("p1", Collections.singletonList(DAY.minusDays(1)));
+        downsampler.downsample("p1", start, end, 100);
+        verify(locationStore, never()).visitRange(eq("p1"), eq(DAY.atStartOfDay().minusNanos(1)),
+                eq(DAY.plusDays(1).atStartOfDay()), any());
+
+        downsampler.invalidate("p1", Collections.singletonList(DAY));
+        assertThat(downsampler.cachedDays()).isZero();
+        downsampler.downsample("p1", start, end, 100);
+        verify(locationStore).visitRange(eq("p1"), eq(DAY.atStartOfDay().minusNanos(1)),
+                eq(DAY.plusDays(1).atStartOfDay()), any());
+    }
+}
@@ -0,0 +1,120 @@
+package com.dementiatracker.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Backpressure on a full shard queue, and fix times taken on the request
+ * thread
+ */
+class LocationIngestServiceTest {
+
+    private static final LocalDateTime FIX_TIME = LocalDateTime.of(2024, 1, 1, 8, 0);
+
+    private final LocationService locationService = mock(LocationService.class);
+
+    private final List<Double> processed = new CopyOnWriteArrayList<>();
+
+    private final List<LocalDateTime> fixTimes = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch workerBusy = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private LocationIngestService ingest;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        ingest.stop();
+    }
+
+    @Test
+    void rejectRefusesNewFixesWhenQueueIsFull() throws InterruptedException {
+        start(LocationIngestService.OverflowPolicy.REJECT);
+        fillQueue();
+
+        assertThat(submit(4)).isFalse();
+
+        drain();
+        assertThat(processed).containsExactly(1.0, 2.0, 3.0);
+    }
+
+    @Test
+    void shedOldestDropsOldestQueuedFix() throws InterruptedException {
+        start(LocationIngestService.OverflowPolicy.SHED_OLDEST);
+        fillQueue();
+
+        assertThat(submit(4)).isTrue();
+
+        drain();
+        assertThat(processed).containsExactly(1.0, 3.0, 4.0);
+    }
+
+    @Test
+    void fixKeepsTimeItWasSubmittedWith() throws InterruptedException {
+        start(LocationIngestService.OverflowPolicy.REJECT);
+        release.countDown();
+
+        submit(1);
+        drain();
+        assertThat(fixTimes).containsExactly(FIX_TIME);
+    }
+
+    private void start(LocationIngestService.OverflowPolicy policy) {
+        when(locationService.validateFix(anyString(), anyDouble(), anyDouble(), any()))
+                .thenAnswer(call -> call.getArgument(3));
+        doAnswer(call -> {
+            workerBusy.countDown();
+            release.await();
+            processed.add(call.getArgument(1));
+            fixTimes.add(call.getArgument(4));
+            return null;
+        }).when(locationService).updateLocation(anyString(), anyDouble(), anyDouble(), anyDouble(), any(), anyString());
+
+        ingest = new LocationIngestService();
+        ReflectionTestUtils.setField(ingest, "locationService", locationService);
+        ReflectionTestUtils.setField(ingest, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ingest, "shardCount", 1);
+        ReflectionTestUtils.setField(ingest, "queueCapacity", 2);
+        ReflectionTestUtils.setField(ingest, "overflowPolicy", policy);
+        ReflectionTestUtils.setField(ingest, "shutdownTimeoutSeconds", 5L);
+        ingest.start();
+    }
+
+    /**
+     * One fix on the blocked worker, two in the queue
+     */
+    private void fillQueue() throws InterruptedException {
+        assertThat(submit(1)).isTrue();
+        assertThat(workerBusy.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(submit(2)).isTrue();
+        assertThat(submit(3)).isTrue();
+        assertThat(ingest.getQueueDepth()).isEqualTo(2);
+    }
+
+    private boolean submit(double latitude) {
+        return ingest.submit("p1", latitude, 0, 5, FIX_TIME, "MANUAL");
+    }
+
+    private void drain() {
+        release.countDown();
+        ingest.stop();
+    }
+}
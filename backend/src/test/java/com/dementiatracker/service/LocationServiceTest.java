@@ -0,0 +1,207 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.dto.LocationPage;
+import com.dementiatracker.dto.LocationUpdateRequest;
+import com.dementiatracker.geo.GeoMath;
+import com.dementiatracker.geo.ZoneIndex;
+import com.dementiatracker.model.Alert;
+import com.dementiatracker.model.Location;
+import com.dementiatracker.model.SafeZone;
+import com.dementiatracker.repository.AlertRepository;
+import com.dementiatracker.repository.LocationStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class LocationServiceTest {
+
+    private final LocationStore locationStore = mock(LocationStore.class);
+
+    private final TrajectoryCompressor trajectoryCompressor = mock(TrajectoryCompressor.class);
+
+    private final AlertService alertService = mock(AlertService.class);
+
+    private final AlertRepository alertRepository = mock(AlertRepository.class);
+
+    private final GeofenceStateTracker geofenceStateTracker = new GeofenceStateTracker();
+
+    private LocationService locationService;
+
+    private int exitAlerts;
+
+    @BeforeEach
+    void setUp() {
+        GeofencingService geofencingService = mock(GeofencingService.class);
+        when(geofencingService.getZoneIndex("p1")).thenReturn(ZoneIndex.build(Collections.singletonList(zone())));
+        when(alertService.createZoneExitAlert(eq("p1"), any(), any())).thenAnswer(call -> {
+            Alert alert = new Alert();
+            alert.setId("exit-" + ++exitAlerts);
+            return alert;
+        });
+
+        GeofenceHysteresis geofenceHysteresis = new GeofenceHysteresis();
+        ReflectionTestUtils.setField(geofenceHysteresis, "meterRegistry", new SimpleMeterRegistry());
+        geofenceHysteresis.init();
+        ReflectionTestUtils.setField(geofenceStateTracker, "alertRepository", alertRepository);
+
+        locationService = new LocationService();
+        ReflectionTestUtils.setField(locationService, "geofencingService", geofencingService);
+        ReflectionTestUtils.setField(locationService, "alertService", alertService);
+        ReflectionTestUtils.setField(locationService, "geofenceStateTracker", geofenceStateTracker);
+        ReflectionTestUtils.setField(locationService, "geofenceHysteresis", geofenceHysteresis);
+        ReflectionTestUtils.setField(locationService, "locationStore", locationStore);
+        ReflectionTestUtils.setField(locationService, "trajectoryCompressor", trajectoryCompressor);
+        ReflectionTestUtils.setField(locationService, "maxBatchSize", 1000);
+        ReflectionTestUtils.setField(locationService, "maxClockSkewSeconds", 60L);
+        ReflectionTestUtils.setField(locationService, "maxPageSize", 100);
+    }
+
+    @Test
+    void fixTimeDefaultsToServerTime() {
+        LocalDateTime before = LocalDateTime.now();
+        assertThat(locationService.validateFix("p1", 1, 2, null)).isBetween(before, LocalDateTime.now());
+
+        LocalDateTime deviceTime = before.minusHours(3);
+        assertThat(locationService.validateFix("p1", 1, 2, deviceTime)).isEqualTo(deviceTime);
+    }
+
+    @Test
+    void invalidFixesAreRejected() {
+        assertThatThrownBy(() -> locationService.validateFix(null, 1, 2, null)).hasMessage("Patient id is required");
+        assertThatThrownBy(() -> locationService.validateFix("p1", 91, 2, null)).hasMessageContaining("Latitude");
+        assertThatThrownBy(() -> locationService.validateFix("p1", Double.NaN, 2, null)).hasMessageContaining("Latitude");
+        assertThatThrownBy(() -> locationService.validateFix("p1", 1, -180.5, null)).hasMessageContaining("Longitude");
+        assertThatThrownBy(() -> locationService.validateFix("p1", 1, 2, LocalDateTime.now().plusMinutes(5)))
+                .hasMessage("Location timestamp is in the future");
+        assertThat(locationService.validateFix("p1", -90, 180, LocalDateTime.now().plusSeconds(30))).isNotNull();
+    }
+
+    @Test
+    void badBatchElementFailsBeforeAnythingIsStored() {
+        LocalDateTime now = LocalDateTime.now();
+        LocationUpdateRequest good = new LocationUpdateRequest(null, 1, 2, 5, now.minusMinutes(2), null);
+        LocationUpdateRequest bad = new LocationUpdateRequest(null, 1, 200, 5, now.minusMinutes(1), null);
+
+        assertThatThrownBy(() -> locationService.updateLocations("p1", Arrays.asList(good, bad), "MANUAL"))
+                .hasMessage("Location 1: Longitude must be between -180 and 180");
+        assertThatThrownBy(() -> locationService.updateLocations(null, Arrays.asList(good), "MANUAL"))
+                .hasMessage("Location 0: Patient id is required");
+
+        LocationUpdateRequest otherPatient = new LocationUpdateRequest("p2", 1, 2, 5, now, null);
+        assertThatThrownBy(() -> locationService.updateLocations("p1", Arrays.asList(good, otherPatient), "MANUAL"))
+                .hasMessage("Location 1: patient id does not match the batch");
+
+        verifyNoInteractions(locationStore, trajectoryCompressor);
+    }
+
+    @Test
+    void nextCursorResumesAfterLastFixOfPage() {
+        LocalDateTime time = LocalDateTime.of(2024, 3, 1, 8, 0);
+        Location first = new Location("65e1a0000000000000000001", "p1", 1, 2, 5, time, "GPS", null);
+        Location second = new Location("65e1a0000000000000000002", "p1", 1, 2, 5, time, "GPS", null);
+        Location third = new Location("65e1a0000000000000000003", "p1", 1, 2, 5, time, "GPS", null);
+        when(locationStore.findHistoryPage("p1", null, null, 3)).thenReturn(Arrays.asList(third, second, first));
+        when(locationStore.findHistoryPage("p1", time, second.getId(), 3))
+                .thenReturn(Collections.singletonList(first));
+
+        LocationPage page = locationService.getLocationHistoryPage("p1", null, 2);
+        assertThat(page.getLocations()).containsExactly(third, second);
+        assertThat(page.getNextCursor()).isNotNull();
+
+        page = locationService.getLocationHistoryPage("p1", page.getNextCursor(), 2);
+        assertThat(page.getLocations()).containsExactly(first);
+        assertThat(page.getNextCursor()).isNull();
+
+        assertThatThrownBy(() -> locationService.getLocationHistoryPage("p1", "bm90LWEtY3Vyc29y", 2))
+                .hasMessage("Invalid cursor");
+    }
+
+    @Test
+    void exitRaisesOneAlertAndReentryClosesIt() {
+        checkGeofencing(50, 200, 300);
+        verify(alertService, times(1)).createZoneExitAlert(eq("p1"), any(), any());
+
+        checkGeofencing(50);
+        verify(alertService).acknowledgeAlerts("p1", Collections.singletonList("exit-1"), null,
+                AlertService.REENTRY_ACKNOWLEDGER);
+
+        checkGeofencing(60);
+        verify(alertService, times(1)).acknowledgeAlerts(any(), anyList(), any(), any());
+    }
+
+    @Test
+    void restartResumesFromOpenExitAlerts() {
+        Alert open = new Alert();
+        open.setId("a1");
+        open.setPatientId("p1");
+        when(alertRepository.findByTypeAndAcknowledgedFalse(Alert.AlertType.ZONE_EXIT))
+                .thenReturn(Collections.singletonList(open));
+        geofenceStateTracker.rebuild();
+
+        checkGeofencing(200); // Already alerted before the restart
+        verify(alertService, never()).createZoneExitAlert(any(), any(), any());
+
+        checkGeofencing(50);
+        verify(alertService).acknowledgeAlerts("p1", Collections.singletonList("a1"), null,
+                AlertService.REENTRY_ACKNOWLEDGER);
+    }
+
+    @Test
+    void caretakerAcknowledgementEndsExitWithoutReentryAcknowledgement() {
+        checkGeofencing(200);
+        geofenceStateTracker.onExitAlertAcknowledged("p1", "exit-1");
+
+        checkGeofencing(50);
+        verify(alertService, never()).acknowledgeAlerts(any(), anyList(), any(), any());
+
+        // Leaving again after the acknowledgement is a new exit
+        checkGeofencing(200);
+        verify(alertService, times(2)).createZoneExitAlert(eq("p1"), any(), any());
+    }
+
+    /**
+     * Run fixes the given distances north of the zone center (100 m radius) through geofencing
+     */
+    private void checkGeofencing(double... meters) {
+        LocalDateTime time = LocalDateTime.now();
+        List<Location> locations = new ArrayList<>();
+        for (double distance : meters) {
+            Location location = new Location();
+            location.setPatientId("p1");
+            location.setLatitude(Math.toDegrees(distance / GeoMath.EARTH_RADIUS));
+            location.setTimestamp(time);
+            time = time.plusSeconds(30);
+            locations.add(location);
+        }
+        ReflectionTestUtils.invokeMethod(locationService, "checkGeofencing", "p1", locations);
+    }
+
+    private static SafeZone zone() {
+        SafeZone zone = new SafeZone();
+        zone.setId("z1");
+        zone.setCenterLatitude(0);
+        zone.setCenterLongitude(0);
+        zone.setRadiusInMeters(100);
+        zone.setActive(true);
+        return zone;
+    }
+}
@@ -0,0 +1,127 @@
+package com.dementiatracker.service;
+
+import com.dementiatracker.model.Location;
+import com.dementiatracker.repository.LocationStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Size-triggered flushes run on the flusher thread, failed inserts are
+ * retried with idempotent saves, and max-pending bounds what is buffered
+ */
+class LocationWriteBufferTest {
+
+    private final LocationStore locationStore = mock(LocationStore.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LocationWriteBuffer buffer;
+
+    @AfterEach
+    void tearDown() {
+        buffer.shutdown();
+    }
+
+    @Test
+    void fullBatchIsWrittenOnFlusherThread() throws InterruptedException {
+        buffer = buffer(3, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(call -> {
+            threads.add(Thread.currentThread().getName());
+            release.await(5, TimeUnit.SECONDS);
+            return call.getArgument(0);
+        }).when(locationStore).insert(anyList());
+
+        buffer.add(fixes(2));
+        verify(locationStore, never()).insert(anyList());
+
+        // Returns while the insert is still blocked on the flusher thread
+        buffer.add(fixes(2));
+        verify(locationStore, timeout(5000)).insert(anyList());
+        assertThat(threads).containsExactly("location-write-behind");
+        assertThat(release.getCount()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    void failedInsertIsRetriedWithSave() {
+        buffer = buffer(100, 100);
+        List<Location> fixes = fixes(3);
+        doThrow(new RuntimeException("timeout")).when(locationStore).insert(anyList());
+
+        buffer.add(fixes);
+        buffer.flush();
+        assertThat(buffer.getPendingCount()).isEqualTo(3);
+
+        buffer.flush();
+        verify(locationStore).save(fixes);
+        assertThat(buffer.getPendingCount()).isZero();
+    }
+
+    @Test
+    void maxPendingBoundsBufferedFixes() {
+        buffer = buffer(100, 5);
+        doThrow(new RuntimeException("timeout")).when(locationStore).insert(anyList());
+        doThrow(new RuntimeException("timeout")).when(locationStore).save(anyList());
+
+        buffer.add(fixes(3));
+        buffer.flush(); // Insert fails, the three wait for retry
+        buffer.add(fixes(4)); // Only two fit
+        assertThat(buffer.getPendingCount()).isEqualTo(5);
+        assertThat(dropped()).isEqualTo(2);
+
+        buffer.flush(); // Save and insert fail; retries keep within the bound
+        assertThat(buffer.getPendingCount()).isEqualTo(5);
+        assertThat(dropped()).isEqualTo(2);
+
+        buffer.add(fixes(1));
+        assertThat(buffer.getPendingCount()).isEqualTo(5);
+        assertThat(dropped()).isEqualTo(3);
+    }
+
+    private LocationWriteBuffer buffer(int maxBatchSize, int maxPending) {
+        LocationWriteBuffer writeBuffer = new LocationWriteBuffer();
+        ReflectionTestUtils.setField(writeBuffer, "locationStore", locationStore);
+        ReflectionTestUtils.setField(writeBuffer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(writeBuffer, "enabled", true);
+        ReflectionTestUtils.setField(writeBuffer, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(writeBuffer, "maxDelayMs", 60000L);
+        ReflectionTestUtils.setField(writeBuffer, "maxPending", maxPending);
+        writeBuffer.init();
+        return writeBuffer;
+    }
+
+    private double dropped() {
+        return meterRegistry.counter("location.write-behind.dropped").count();
+    }
+
+    private static List<Location> fixes(int count) {
+        List<Location> fixes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Location location = new Location();
+            location.setPatientId("p1");
+            location.setTimestamp(LocalDateTime.now());
+            fixes.add(location);
+        }
+        return fixes;
+    }
+}
@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { useAuth } from '../context/AuthContext';
 import {
     Container,
@@ -37,6 +37,8 @@ const CaretakerDashboard = () => {
     const [patients, setPatients] = useState([]);
     const [safeZones, setSafeZones] = useState([]);
     const [alerts, setAlerts] = useState([]);
+    const alertsRef = useRef(alerts);
+    const [alertCounts, setAlertCounts] = useState({ total: 0, byPatient: {} });
     const [selectedPatient, setSelectedPatient] = useState(null);
     const [openZoneDialog, setOpenZoneDialog] = useState(false);
     const [openLinkDialog, setOpenLinkDialog] = useState(false);
@@ -54,10 +56,14 @@ const CaretakerDashboard = () => {
 
     useEffect(() => {
         loadUserData();
+        loadAlertCounts();
 
         // Connect to WebSocket
         websocketService.connect(() => {
             console.log('WebSocket connected for caretaker');
+
+            // One subscription delivers alerts for every linked patient
+            websocketService.subscribeToCaretakerAlerts(handleAlertEvent);
         });
 
         return () => {
@@ -81,38 +87,71 @@ const CaretakerDashboard = () => {
         }
     }, [selectedPatient]);
 
-    // Separate effect for alerts to cover ALL patients
     useEffect(() => {
-        if (patients.length > 0) {
-            const subs = patients.map(patient => {
-                return websocketService.subscribeToAlerts(patient.id, (alert) => {
-                    setAlerts(prev => {
-                        // Avoid duplicates if alert is already in list
-                        if (prev.some(a => a.id === alert.id)) return prev;
-                        return [alert, ...prev];
-                    });
-                });
-            });
+        alertsRef.current = alerts;
+    }, [alerts]);
 
-            return () => {
-                subs.forEach(sub => sub && sub.unsubscribe());
-            };
+    const loadAlertCounts = async () => {
+        try {
+            setAlertCounts(await alertService.getCaretakerAlertCounts(user.userId));
+        } catch (error) {
+            console.error('Error loading alert counts:', error);
+        }
+    };
+
+    const handleAlertEvent = (alert) => {
+        loadAlertCounts();
+        if (alert.event === 'UPDATED') {
+            handleAlertUpdate(alert.patientId, alert);
+            return;
+        }
+        if (alert.event === 'ACKNOWLEDGED') {
+            setAlerts(prev => prev.filter(a => !alert.alertIds.includes(a.id)));
+            return;
+        }
+        if (alert.event === 'ESCALATED') {
+            // Still unacknowledged; secondary caretakers see the alert for the first time
+            const { event, ...escalated } = alert;
+            setAlerts(prev => (prev.some(a => a.id === alert.id)
+                ? prev.map(a => (a.id === alert.id ? { ...a, escalationStep: alert.escalationStep } : a))
+                : [escalated, ...prev]));
+            return;
+        }
+        setAlerts(prev => {
+            // Avoid duplicates if alert is already in list
+            if (prev.some(a => a.id === alert.id)) return prev;
+            return [alert, ...prev];
+        });
+    };
+
+    // A repeated event was folded into an existing alert; a reopened alert may not be listed yet
+    const handleAlertUpdate = async (patientId, update) => {
+        const { event, ...changes } = update;
+        if (alertsRef.current.some(a => a.id === update.id)) {
+            setAlerts(prev => prev.map(a => (a.id === update.id ? { ...a, ...changes } : a)));
+            return;
         }
-    }, [patients]);
+        try {
+            const summaries = await alertService.getUnacknowledgedAlertSummaries(patientId);
+            const reopened = summaries.find(a => a.id === update.id);
+            if (reopened) {
+                setAlerts(prev => (prev.some(a => a.id === reopened.id) ? prev : [reopened, ...prev]));
+            }
+        } catch (error) {
+            console.error('Error loading updated alert:', error);
+        }
+    };
 
     const loadUserData = async () => {
         try {
             const userData = await userService.getUser(user.userId);
             if (userData.linkedPatientIds && userData.linkedPatientIds.length > 0) {
-                const patientPromises = userData.linkedPatientIds.map(async (patientId) => {
-                    const location = await locationService.getCurrentLocation(patientId).catch(() => null);
-                    return {
-                        id: patientId,
-                        name: `Patient ${patientId.substring(0, 8)}`,
-                        location
-                    };
-                });
-                const patientsData = await Promise.all(patientPromises);
+                const locations = await locationService.getCurrentLocations(userData.linkedPatientIds).catch(() => ({}));
+                const patientsData = userData.linkedPatientIds.map((patientId) => ({
+                    id: patientId,
+                    name: `Patient ${patientId.substring(0, 8)}`,
+                    location: locations[patientId] || null
+                }));
                 setPatients(patientsData);
 
                 if (patientsData.length > 0) {
@@ -128,7 +167,7 @@ const CaretakerDashboard = () => {
         try {
             const [zones, patientAlerts] = await Promise.all([
                 safeZoneService.getActiveSafeZones(patientId),
-                alertService.getUnacknowledgedAlerts(patientId)
+                alertService.getUnacknowledgedAlertSummaries(patientId)
             ]);
 
             setSafeZones(zones);
@@ -146,8 +185,8 @@ const CaretakerDashboard = () => {
 
     const loadLocationHistory = async (patientId) => {
         try {
-            const history = await locationService.getLocationHistory(patientId);
-            setLocationHistory(history.slice(0, 10)); // Show last 10
+            const history = await locationService.getRecentLocations(patientId, 10);
+            setLocationHistory(history); // Show last 10
         } catch (error) {
             console.error('Error loading location history:', error);
         }
@@ -194,6 +233,7 @@ const CaretakerDashboard = () => {
             setOpenLinkDialog(false);
             setLinkPatientId('');
             loadUserData();
+            loadAlertCounts();
         } catch (error) {
             console.error('Error linking patient:', error);
             alert('Failed to link patient. Please check the Patient ID.');
@@ -209,6 +249,21 @@ const CaretakerDashboard = () => {
         }
     };
 
+    const handleAcknowledgeAllAlerts = async () => {
+        const idsByPatient = {};
+        alerts.forEach(alert => {
+            (idsByPatient[alert.patientId] = idsByPatient[alert.patientId] || []).push(alert.id);
+        });
+        try {
+            await Promise.all(Object.entries(idsByPatient).map(([patientId, alertIds]) =>
+                alertService.acknowledgeAlerts(patientId, user.userId, { alertIds })));
+            const acknowledged = Object.values(idsByPatient).flat();
+            setAlerts(prev => prev.filter(a => !acknowledged.includes(a.id)));
+        } catch (error) {
+            console.error('Error acknowledging alerts:', error);
+        }
+    };
+
     return (
         <Box>
             <AppBar position="static">
@@ -217,7 +272,7 @@ const CaretakerDashboard = () => {
                         Caretaker Dashboard
                     </Typography>
                     <IconButton color="inherit" onClick={() => setOpenAlertsDialog(true)}>
-                        <Badge badgeContent={alerts.length} color="error">
+                        <Badge badgeContent={alertCounts.total} color="error">
                             <Notifications />
                         </Badge>
                     </IconButton>
@@ -250,6 +305,10 @@ const CaretakerDashboard = () => {
                                                 primary={patient.name}
                                                 secondary={patient.location ? 'Location available' : 'No location'}
                                             />
+                                            <Badge
+                                                badgeContent={alertCounts.byPatient[patient.id]?.total || 0}
+                                                color="error"
+                                            />
                                         </ListItem>
                                     ))}
                                     {patients.length === 0 && (
@@ -401,8 +460,12 @@ const CaretakerDashboard = () => {
                             {alerts.map((alert) => (
                                 <ListItem key={alert.id}>
                                     <ListItemText
-                                        primary={alert.message}
-                                        secondary={new Date(alert.triggeredAt).toLocaleString()}
+                                        primary={alert.escalationStep
+                                            ? `${alert.message} (unacknowledged, reminder ${alert.escalationStep})`
+                                            : alert.message}
+                                        secondary={alert.occurrenceCount > 1
+                                            ? `${new Date(alert.triggeredAt).toLocaleString()} - repeated ${alert.occurrenceCount} times, last ${new Date(alert.lastSeenAt).toLocaleString()}`
+                                            : new Date(alert.triggeredAt).toLocaleString()}
                                     />
                                     <Button
                                         size="small"
@@ -418,6 +481,9 @@ const CaretakerDashboard = () => {
                     )}
                 </DialogContent>
                 <DialogActions>
+                    {alerts.length > 1 && (
+                        <Button onClick={handleAcknowledgeAllAlerts}>Acknowledge All</Button>
+                    )}
                     <Button onClick={() => setOpenAlertsDialog(false)}>Close</Button>
                 </DialogActions>
             </Dialog>
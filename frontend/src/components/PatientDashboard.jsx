@@ -92,8 +92,8 @@ const PatientDashboard = () => {
 
     const loadLocationHistory = async () => {
         try {
-            const history = await locationService.getLocationHistory(user.patientId);
-            setLocationHistory(history.slice(0, 10)); // Show last 10 locations
+            const history = await locationService.getRecentLocations(user.patientId, 10);
+            setLocationHistory(history); // Show last 10 locations
         } catch (error) {
             console.error('Error loading location history:', error);
         }
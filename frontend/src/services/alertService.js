@@ -11,6 +11,18 @@ export const alertService = {
         return response.data;
     },
 
+    // Lightweight list entries: id, type, message, triggeredAt and acknowledged only
+    async getUnacknowledgedAlertSummaries(patientId) {
+        const response = await api.get(`/alerts/patient/${patientId}/unacknowledged/summary`);
+        return response.data;
+    },
+
+    // Open alert counts for every linked patient, served from server memory
+    async getCaretakerAlertCounts(caretakerId) {
+        const response = await api.get(`/alerts/caretaker/${caretakerId}/counts`);
+        return response.data;
+    },
+
     async acknowledgeAlert(alertId, caretakerId) {
         const response = await api.put(`/alerts/${alertId}/acknowledge`, null, {
             params: { caretakerId }
@@ -18,6 +30,16 @@ export const alertService = {
         return response.data;
     },
 
+    // One update for many alerts; omit alertIds and types to acknowledge all open alerts of the patient
+    async acknowledgeAlerts(patientId, caretakerId, { alertIds, types } = {}) {
+        const response = await api.put(`/alerts/patient/${patientId}/acknowledge`, {
+            caretakerId,
+            alertIds,
+            types
+        });
+        return response.data;
+    },
+
     async triggerEmergencyAlert(patientId) {
         const response = await api.post(`/alerts/emergency/${patientId}`);
         return response.data;
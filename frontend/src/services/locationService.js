@@ -23,15 +23,38 @@ export const locationService = {
         return response.data;
     },
 
+    async getCurrentLocations(patientIds) {
+        const response = await api.get('/locations/current', {
+            params: { patientIds: patientIds.join(',') }
+        });
+        return response.data;
+    },
+
     async getLocationHistory(patientId) {
         const response = await api.get(`/locations/patient/${patientId}/history`);
         return response.data;
     },
 
+    // Newest fixes only, without fetching the whole history
+    async getRecentLocations(patientId, limit = 10) {
+        const response = await api.get(`/locations/patient/${patientId}/history/page`, {
+            params: { limit }
+        });
+        return response.data.locations;
+    },
+
     async getLocationHistoryRange(patientId, start, end) {
         const response = await api.get(`/locations/patient/${patientId}/history/range`, {
             params: { start, end }
         });
         return response.data;
+    },
+
+    // Map-sized track for a time range; pass either a point budget or the map zoom level
+    async getDownsampledHistory(patientId, start, end, { points, zoom } = {}) {
+        const response = await api.get(`/locations/patient/${patientId}/history/downsampled`, {
+            params: { start, end, points, zoom }
+        });
+        return response.data;
     }
 };
@@ -11,8 +11,12 @@ class WebSocketService {
         const backendUrl = import.meta.env.VITE_API_URL || 'http://localhost:8080';
         const socket = new SockJS(`${backendUrl}/ws`);
 
+        const token = localStorage.getItem('token');
+
         this.client = new Client({
             webSocketFactory: () => socket,
+            // Identifies the session so the server can deliver /user/queue messages
+            connectHeaders: token ? { Authorization: `Bearer ${token}` } : {},
             debug: (str) => {
                 console.log('STOMP: ' + str);
             },
@@ -65,6 +69,19 @@ class WebSocketService {
             callback(alert);
         });
     }
+
+    // Alerts of all patients linked to the logged-in caretaker
+    subscribeToCaretakerAlerts(callback) {
+        if (!this.client || !this.connected) {
+            console.error('WebSocket not connected');
+            return null;
+        }
+
+        return this.client.subscribe('/user/queue/alerts', (message) => {
+            const alert = JSON.parse(message.body);
+            callback(alert);
+        });
+    }
 }
 
 export default new WebSocketService();